@@ -0,0 +1,47 @@
+package moviecatalog;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import io.swagger.annotations.ApiResponse;
+import io.swagger.annotations.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import moviecatalog.search.AutocompleteIndex;
+
+/**
+ * Rest Controller completing Movie titles and Director names as they are typed, from memory without database access.
+ *
+ * @author johnathanleif
+ *
+ * */
+@RestController
+@RequestMapping("autocomplete")
+@Api(tags = {"Autocomplete Service"})
+@Tag(name = "Autocomplete Service", description = "Title and Name Completion API")
+public class AutocompleteController {
+
+	@Autowired
+	private AutocompleteIndex autocompleteIndex;
+
+	/**
+	 * GET the completions of a prefix using URI "/autocomplete?prefix={start of title or name}&type={movie|director}"
+	 * At most "limit={N}" completions (default 10), most popular first, see {@link AutocompleteIndex}.
+	 * */
+	@CatalogVersioned
+	@GetMapping
+    @ApiOperation(value = "Complete Movie Titles or Director Names", notes = "Titles (type=movie) or Director Names (type=director) starting with prefix, case and accent insensitive, most popular first.")
+    @ApiResponses(value = {
+    		@ApiResponse(code = 200, message = "Successful Operation.")
+    	})
+	public List<String> autocomplete(@RequestParam String prefix, @RequestParam(defaultValue = "movie") AutocompleteIndex.Type type, @RequestParam(name = KeysetPagination.LIMIT_PARAM, defaultValue = "10") int limit) {
+		return autocompleteIndex.complete(type, prefix, KeysetPagination.firstSlice(limit).getPageSize());
+	}
+
+}
@@ -0,0 +1,57 @@
+package moviecatalog;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import io.swagger.annotations.ApiResponse;
+import io.swagger.annotations.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+
+/**
+ * Rest Controller for the statistics of the second-level entity cache regions, read from their JCache statistics MBeans.
+ * 
+ * @author johnathanleif
+ * 
+ * */
+@RestController
+@RequestMapping("cache-statistics")
+@Api(tags = {"Cache Statistics Service"})
+@Tag(name = "Cache Statistics Service", description = "Entity Cache Statistics API")
+public class CacheStatisticsController {
+	
+	private static final String[] ATTRIBUTES = {"CacheHits", "CacheMisses", "CacheHitPercentage", "CachePuts", "CacheRemovals", "CacheEvictions"};
+	
+	/**
+	 * GET the hit, miss, put, removal and eviction counts of each cache region using URI "/cache-statistics"
+	 * */
+	@GetMapping
+    @ApiOperation(value = "Find Entity Cache Statistics", notes = "Get hits, misses and evictions by cache region (entity or collection).")
+    @ApiResponses(value = {
+    		@ApiResponse(code = 200, message = "Successful Operation.")  
+    	})
+	public Map<String, Map<String, Object>> findCacheStatistics() throws JMException {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		Map<String, Map<String, Object>> regions = new TreeMap<>();
+		for(ObjectName name: server.queryNames(new ObjectName("javax.cache:type=CacheStatistics,*"), null)) {
+			Map<String, Object> statistics = new LinkedHashMap<>();
+			for(String attribute: ATTRIBUTES) {
+				statistics.put(attribute, server.getAttribute(name, attribute));
+			}
+			regions.put(name.getKeyProperty("Cache"), statistics);
+		}
+		return regions;
+	}
+	
+}
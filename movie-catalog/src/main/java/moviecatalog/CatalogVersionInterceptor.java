@@ -0,0 +1,38 @@
+package moviecatalog;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import moviecatalog.cache.CatalogVersion;
+
+/**
+ * Checks the "If-None-Match" header of requests to {@link CatalogVersioned} endpoints against the current {@link CatalogVersion},
+ * answering "304 Not Modified" without running the handler (so without any query or serialisation) if it matches.
+ *
+ * The version is read before the handler queries, so a write committed meanwhile can only make the tag older than the content,
+ * never newer.
+ *
+ * @author johnathanleif
+ *
+ * */
+@Component
+public class CatalogVersionInterceptor implements HandlerInterceptor {
+
+	@Autowired
+	private CatalogVersion catalogVersion;
+
+	@Override
+	public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+		if(handler instanceof HandlerMethod && ((HandlerMethod) handler).hasMethodAnnotation(CatalogVersioned.class)) {
+			return !new ServletWebRequest(request, response).checkNotModified(catalogVersion.entityTag());
+		}
+		return true;
+	}
+
+}
@@ -0,0 +1,24 @@
+package moviecatalog;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+import moviecatalog.cache.CatalogVersion;
+
+/**
+ * Marks a GET endpoint whose response only changes when the catalog does.
+ * Its responses are tagged with the {@link CatalogVersion} and a matching "If-None-Match" request
+ * is answered "304 Not Modified" by the {@link CatalogVersionInterceptor} before the handler runs.
+ *
+ * @author johnathanleif
+ *
+ * */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface CatalogVersioned {
+
+}
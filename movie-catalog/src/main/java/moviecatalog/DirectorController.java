@@ -1,10 +1,19 @@
 package moviecatalog;
 
-import java.util.Optional;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
 
+import javax.persistence.EntityManager;
 import javax.validation.Valid;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -20,10 +29,18 @@ import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiResponse;
 import io.swagger.annotations.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import moviecatalog.cache.CatalogStatistics;
+import moviecatalog.cache.CatalogVersion;
+import moviecatalog.cache.DirectorNameIndex;
+import moviecatalog.cache.ReadCoalescer;
+import moviecatalog.cache.SearchResultCache;
 import moviecatalog.model.Director;
-import moviecatalog.model.Movie;
+import moviecatalog.readmodel.CatalogReadModel;
 import moviecatalog.repository.DirectorRepository;
 import moviecatalog.repository.MovieRepository;
+import moviecatalog.search.AutocompleteIndex;
+import moviecatalog.search.DirectorFuzzyIndex;
+import moviecatalog.search.RelatedMoviesIndex;
 
 /**
  * Rest Controller for CRUD operations on Directors to the catalog.
@@ -43,76 +60,188 @@ public class DirectorController {
 	@Autowired
 	private MovieRepository movieRepository;
 	
+	@Autowired
+	private CatalogVersion catalogVersion;
+	
+	@Autowired
+	private DirectorNameIndex directorNameIndex;
+	
+	@Autowired
+	private DirectorFuzzyIndex directorFuzzyIndex;
+	
+	@Autowired
+	private AutocompleteIndex autocompleteIndex;
+	
+	@Autowired
+	private CatalogReadModel readModel;
+	
+	@Autowired
+	private RelatedMoviesIndex relatedMoviesIndex;
+	
+	@Autowired
+	private CatalogStatistics catalogStatistics;
+
+	@Autowired
+	private SearchResultCache searchResultCache;
+
+	@Autowired
+	private ReadCoalescer readCoalescer;
+	
+	@Autowired
+	private EntityManager entityManager;
+	
 	/**
 	 * GET the list of {@link Director}s using URI "/directors"
+	 * Paged with "after={ID}&limit={N}", see {@link KeysetPagination}.
+	 * Properties selected with "fields=name", see {@link SparseFieldsetsAdvice}.
 	 * */
+	@CatalogVersioned
+	@SparseFieldsets
 	@GetMapping
     @ApiOperation(value = "Find All Movie Directors in the catalog", notes = "Get all Directors.")
     @ApiResponses(value = {
     		@ApiResponse (code = 200, message = "Successful Operation.", response=Director.class)  
     	})
-	public Iterable<Director> findAllDirectors() {
-		return repository.findAll();
+	public ResponseEntity<List<Director>> findAllDirectors(@RequestParam(name = KeysetPagination.AFTER_PARAM, defaultValue = KeysetPagination.FIRST) int after, @RequestParam(name = KeysetPagination.LIMIT_PARAM, defaultValue = KeysetPagination.DEFAULT_LIMIT) int limit) {
+		Pageable slice = KeysetPagination.firstSlice(limit);
+		return KeysetPagination.response(readModel.isEnabled() ? readModel.findDirectors(after, slice)
+				: readCoalescer.read("directors", Arrays.asList(after, slice), () -> detached(repository.findAllByIdGreaterThanOrderById(after, slice))), Director::getId);
 	}
 	
 	/**
 	 * GET the {@link Director} with ID using URI "/directors/{ID}"
+	 * Properties selected with "fields=name", see {@link SparseFieldsetsAdvice}.
 	 * */
+	@SparseFieldsets
 	@GetMapping("/{id}")
     @ApiOperation(value = "Find Movie Director with ID", notes = "Get the Director with ID.")
     @ApiResponses(value = {
     		@ApiResponse (code = 200, message = "Successful Operation.", response=Director.class)  
     	})
-	public Optional<Director> findDirectorById(@PathVariable int id) {
-		return repository.findById(id);
+	public ResponseEntity<Director> findDirectorById(@PathVariable int id) {
+		return EntityTags.response(readModel.isEnabled() ? readModel.findDirectorById(id)
+				: readCoalescer.read("director", Collections.singletonList(id), () -> repository.findById(id).map(found -> {
+					entityManager.detach(found);		//shared with the other callers of the read
+					return found;
+				})));
+	}
+	
+	/**
+	 * GET the {@link Director}s with IDs using URI "/directors?ids={ID},{ID}"
+	 * In the order requested, IDs not found skipped, one query per {@link MultiGet#CHUNK_SIZE} IDs.
+	 * Properties selected with "fields=name", see {@link SparseFieldsetsAdvice}.
+	 * */
+	@CatalogVersioned
+	@SparseFieldsets
+	@GetMapping(params = MultiGet.IDS_PARAM)
+    @ApiOperation(value = "Find Movie Directors with IDs", notes = "Get the Directors with IDs (at most " + MultiGet.MAX_IDS + "), in the order requested.")
+    @ApiResponses(value = {
+    		@ApiResponse (code = 200, message = "Successful Operation.", response=Director.class)  
+    	})
+	public List<Director> findDirectorsByIds(@RequestParam(name = MultiGet.IDS_PARAM) List<Integer> ids) {
+		return MultiGet.findAll(ids, this::findDirectors, Director::getId);
+	}
+	
+	/**
+	 * POST a JSON array of IDs to get their {@link Director}s using URI "/directors/by-ids", for ID lists too long for a URI
+	 * As "/directors?ids={ID},{ID}".
+	 * Properties selected with "fields=name", see {@link SparseFieldsetsAdvice}.
+	 * */
+	@SparseFieldsets
+	@PostMapping(path = "/by-ids")
+    @ApiOperation(value = "Find Movie Directors with IDs (POST)", notes = "Get the Directors with the IDs of the body array (at most " + MultiGet.MAX_IDS + "), in the order requested.")
+    @ApiResponses(value = {
+    		@ApiResponse (code = 200, message = "Successful Operation.", response=Director.class)  
+    	})
+	public List<Director> findDirectorsByIdsPosted(@RequestBody List<Integer> ids) {
+		return findDirectorsByIds(ids);
 	}
 	
 	/**
 	 * GET the list of {@link Director}s by name using URI "/directors/search-name-equals?query={name}"
+	 * Paged with "after={ID}&limit={N}", see {@link KeysetPagination}.
+	 * Properties selected with "fields=name", see {@link SparseFieldsetsAdvice}.
 	 * */
+	@CatalogVersioned
+	@SparseFieldsets
 	@GetMapping(path = "/search-name-equals")
     @ApiOperation(value = "Find Movie Directors by Name", notes = "Director search by exact Name (name equals query).")
     @ApiResponses(value = {
     		@ApiResponse (code = 200, message = "Successful Operation.", response=Director.class)  
     	})
-	public Iterable<Director> findAllDirectorsByName(@RequestParam String query) {
-		return repository.findAllByName(query);
+	public ResponseEntity<List<Director>> findAllDirectorsByName(@RequestParam String query, @RequestParam(name = KeysetPagination.AFTER_PARAM, defaultValue = KeysetPagination.FIRST) int after, @RequestParam(name = KeysetPagination.LIMIT_PARAM, defaultValue = KeysetPagination.DEFAULT_LIMIT) int limit) {
+		if(readModel.isEnabled()) {
+			return findAllDirectorsByIds(directorNameIndex.findIdsByName(query), after, limit);
+		}
+		Pageable slice = KeysetPagination.firstSlice(limit);
+		return KeysetPagination.response(readCoalescer.read("directors-by-name", Arrays.asList(query, after, slice),
+				() -> detached(repository.findAllByNameAndIdGreaterThanOrderById(query, after, slice))), Director::getId);
 	}
 	
 	/**
 	 * GET the list of {@link Director}s by partial name using URI "/directors/search-name-contains?query={partial name}"
+	 * Paged with "after={ID}&limit={N}", see {@link KeysetPagination}.
+	 * Properties selected with "fields=name", see {@link SparseFieldsetsAdvice}.
 	 * */
+	@CatalogVersioned
+	@SparseFieldsets
 	@GetMapping(path = "/search-name-contains")
     @ApiOperation(value = "Find Movie Directors by partial Name", notes = "Director search by partial Name (name contains given query).")
     @ApiResponses(value = {
     		@ApiResponse (code = 200, message = "Successful Operation.", response=Director.class)  
     	})
-	public Iterable<Director> findAllDirectorsByNameContains(@RequestParam String query) {
-		return repository.findAllByNameContains(query);
+	public ResponseEntity<List<Director>> findAllDirectorsByNameContains(@RequestParam String query, @RequestParam(name = KeysetPagination.AFTER_PARAM, defaultValue = KeysetPagination.FIRST) int after, @RequestParam(name = KeysetPagination.LIMIT_PARAM, defaultValue = KeysetPagination.DEFAULT_LIMIT) int limit) {
+		return findAllDirectorsByIds(directorNameIndex.findIdsByNameContaining(query), after, limit);
 	}
 	
 	/**
 	 * GET the list of {@link Director}s by start of name using URI "/directors/search-name-starts-with?query={start of name}"
+	 * Paged with "after={ID}&limit={N}", see {@link KeysetPagination}.
+	 * Properties selected with "fields=name", see {@link SparseFieldsetsAdvice}.
 	 * */
+	@CatalogVersioned
+	@SparseFieldsets
 	@GetMapping(path = "/search-name-starts-with")
     @ApiOperation(value = "Find Movie Directors by start of Name", notes = "Director search by start of Name (name starts with given query).")
     @ApiResponses(value = {
     		@ApiResponse (code = 200, message = "Successful Operation.", response=Director.class)  
     	})
-	public Iterable<Director> findAllDirectorsByNameStartsWith(@RequestParam String query) {
-		return repository.findAllByNameStartsWith(query);
+	public ResponseEntity<List<Director>> findAllDirectorsByNameStartsWith(@RequestParam String query, @RequestParam(name = KeysetPagination.AFTER_PARAM, defaultValue = KeysetPagination.FIRST) int after, @RequestParam(name = KeysetPagination.LIMIT_PARAM, defaultValue = KeysetPagination.DEFAULT_LIMIT) int limit) {
+		return findAllDirectorsByIds(directorNameIndex.findIdsByNameStartingWith(query), after, limit);
 	}
 	
 	/**
 	 * GET the list of {@link Director}s by end of name using URI "/directors/search-name-ends-with?query={end of name}"
+	 * Paged with "after={ID}&limit={N}", see {@link KeysetPagination}.
+	 * Properties selected with "fields=name", see {@link SparseFieldsetsAdvice}.
 	 * */
+	@CatalogVersioned
+	@SparseFieldsets
 	@GetMapping(path = "/search-name-ends-with")
     @ApiOperation(value = "Find Movie Directors by end of Name", notes = "Director search by end of Name (name ends with given query).")
     @ApiResponses(value = {
     		@ApiResponse (code = 200, message = "Successful Operation.", response=Director.class)  
     	})
-	public Iterable<Director> findAllDirectorsByNameEndsWith(@RequestParam String query) {
-		return repository.findAllByNameEndsWith(query);
+	public ResponseEntity<List<Director>> findAllDirectorsByNameEndsWith(@RequestParam String query, @RequestParam(name = KeysetPagination.AFTER_PARAM, defaultValue = KeysetPagination.FIRST) int after, @RequestParam(name = KeysetPagination.LIMIT_PARAM, defaultValue = KeysetPagination.DEFAULT_LIMIT) int limit) {
+		return findAllDirectorsByIds(directorNameIndex.findIdsByNameEndingWith(query), after, limit);
+	}
+	
+	/**
+	 * GET the list of {@link Director}s by misspelt name using URI "/directors/search-fuzzy?query={name}&maxDistance={N}"
+	 * Names within N (default 2, at most {@link DirectorFuzzyIndex#MAX_DISTANCE}) character insertions, deletions or substitutions of the query,
+	 * ignoring case, nearest first. At most "limit={N}" directors (default 20).
+	 * Properties selected with "fields=name", see {@link SparseFieldsetsAdvice}.
+	 * */
+	@CatalogVersioned
+	@SparseFieldsets
+	@GetMapping(path = "/search-fuzzy")
+    @ApiOperation(value = "Find Movie Directors by misspelt Name", notes = "Typo tolerant Director search by Name (within maxDistance edits of query, case insensitive), nearest first.")
+    @ApiResponses(value = {
+    		@ApiResponse (code = 200, message = "Successful Operation.", response=Director.class)  
+    	})
+	public List<Director> findAllDirectorsByNameFuzzy(@RequestParam String query, @RequestParam(defaultValue = "2") int maxDistance, @RequestParam(name = KeysetPagination.LIMIT_PARAM, defaultValue = "20") int limit) {
+		List<Integer> ids = directorFuzzyIndex.search(query, maxDistance, KeysetPagination.firstSlice(limit).getPageSize());
+		return MultiGet.findAll(ids, this::findDirectors, Director::getId);		//directors deleted since searched are skipped
 	}
 	
 	/**
@@ -129,7 +258,15 @@ public class DirectorController {
     		@ApiResponse(code = 200, message = "Successful Operation.", response=Director.class)  
     	})
 	public Director saveNewDirector(@Valid @RequestBody Director director) {
-		return repository.save(director);
+		Director saved = repository.save(director);
+		directorNameIndex.saved(saved);
+		readModel.directorSaved(saved);
+		catalogStatistics.directorSaved(saved);
+		directorFuzzyIndex.saved(saved);
+		autocompleteIndex.directorSaved(saved);
+		searchResultCache.modified(SearchResultCache.Table.DIRECTORS);
+		catalogVersion.modified();
+		return saved;
 	}
 	
 	/**
@@ -144,7 +281,7 @@ public class DirectorController {
     		@ApiResponse (code = 200, message = "Successful Operation.", response=Director.class)  
     	})
 	public Director saveDirector(@Valid @RequestBody Director director, @PathVariable int id) {
-		return repository.findById(id).map(dir -> {
+		Director saved = repository.findById(id).map(dir -> {
 			dir.setId(id);
 			dir.setName(director.getName());
 			return repository.save(dir);
@@ -152,26 +289,68 @@ public class DirectorController {
 			director.setId(id);
 			return repository.save(director);
 		});
+		directorNameIndex.saved(saved);
+		readModel.directorSaved(saved);
+		catalogStatistics.directorSaved(saved);
+		directorFuzzyIndex.saved(saved);
+		autocompleteIndex.directorSaved(saved);
+		searchResultCache.modified(SearchResultCache.Table.DIRECTORS);
+		catalogVersion.modified();
+		return saved;
 	}
 	
 	
 	/**
 	 * DELETE the {@link Director} with ID using URI "/directors/{ID}"
 	 * */
+	@Transactional
 	@DeleteMapping("/{id}")
     @ApiOperation(value = "Delete a Movie Director", notes = "Delete Director by ID.")
     @ApiResponses(value = {
     		@ApiResponse (code = 200, message = "Successful Operation.")  
     	})
 	public void deleteDirector(@PathVariable int id) {
-		Optional<Director> director = repository.findById(id);
-		if(director.isPresent()) {
-			Iterable<Movie> movies = movieRepository.findAllByDirectorsId(id);
-			for(Movie movie: movies) {
-				movie.getDirectors().remove(director.get());		//remove join
-			}
-			repository.deleteById(id);
+		movieRepository.touchMoviesByDirector(id);		//their representations lose the director
+		movieRepository.deleteDirectorJoins(id);		//remove joins in one statement rather than loading every movie
+		if(repository.deleteByIdInBulk(id) == 0) {
+			return;		//no such director, so nothing cached changes
 		}
+		directorNameIndex.deleted(id);		//applied on commit
+		directorFuzzyIndex.deleted(id);
+		autocompleteIndex.directorDeleted(id);
+		readModel.directorDeleted(id);
+		relatedMoviesIndex.directorDeleted(id);
+		catalogStatistics.directorDeleted(id);
+		searchResultCache.modified(SearchResultCache.Table.DIRECTORS);
+		catalogVersion.modified();
 	}
 
+	private ResponseEntity<List<Director>> findAllDirectorsByIds(List<Integer> ids, int after, int limit) {
+		Pageable slice = KeysetPagination.firstSlice(limit);
+		int from = Collections.binarySearch(ids, after + 1);
+		from = from < 0 ? -(from + 1) : from;		//first ID after the cursor
+		int to = Math.min(from + slice.getPageSize(), ids.size());
+		List<Director> directors = new ArrayList<>();
+		findDirectors(ids.subList(from, to)).forEach(directors::add);
+		directors.sort(Comparator.comparing(Director::getId));
+		return KeysetPagination.response(new SliceImpl<>(directors, slice, to < ids.size()), Director::getId);
+	}
+	
+	/**
+	 * @return the directors with the IDs in any order, from the {@link CatalogReadModel} if enabled
+	 * */
+	private Iterable<Director> findDirectors(List<Integer> ids) {
+		return readModel.isEnabled() ? readModel.findDirectorsByIds(ids) : readCoalescer.read("directors-by-ids", ids, () -> detached(repository.findAllById(ids)));
+	}
+	
+	/**
+	 * Detaches directors read by the {@link ReadCoalescer} from the persistence context of the request that read them,
+	 * as the other callers of the read share them.
+	 * @return the directors
+	 * */
+	private <T extends Iterable<Director>> T detached(T directors) {
+		directors.forEach(entityManager::detach);
+		return directors;
+	}
+	
 }
@@ -0,0 +1,64 @@
+package moviecatalog;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.function.Function;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.DigestUtils;
+
+import moviecatalog.model.Versioned;
+
+/**
+ * Conditional GET helpers for single entity endpoints.
+ *
+ * Responses carry a strong "ETag" and a "Last-Modified" header derived from the modification times of the entity
+ * and of every entity embedded in its representation, so a change to any of them changes the tag.
+ * Spring answers a request whose "If-None-Match" or "If-Modified-Since" header matches with "304 Not Modified", without writing the body.
+ * List and search endpoints are tagged by the catalog version instead, see {@link CatalogVersioned}.
+ *
+ * @author johnathanleif
+ *
+ * */
+public final class EntityTags {
+
+	private EntityTags() {
+	}
+
+	/**
+	 * Builds the response for an entity whose representation embeds no other entities.
+	 * @return the entity, if found, with its validators
+	 * */
+	public static <T extends Versioned> ResponseEntity<T> response(Optional<T> entity) {
+		return response(entity, found -> Collections.emptyList());
+	}
+
+	/**
+	 * Builds the response for an entity and the given entities embedded in its representation, in a stable order.
+	 * @return the entity, if found, with its validators
+	 * */
+	public static <T extends Versioned> ResponseEntity<T> response(Optional<T> entity, Function<T, Collection<? extends Versioned>> embedded) {
+		if(!entity.isPresent()) {
+			return ResponseEntity.ok().body(null);
+		}
+		StringBuilder versions = new StringBuilder();
+		Instant lastModified = append(versions, entity.get(), Instant.EPOCH);
+		for(Versioned versioned: embedded.apply(entity.get())) {
+			lastModified = append(versions, versioned, lastModified);
+		}
+		return ResponseEntity.ok()
+				.eTag(DigestUtils.md5DigestAsHex(versions.toString().getBytes(StandardCharsets.UTF_8)))
+				.lastModified(lastModified)
+				.body(entity.get());
+	}
+
+	private static Instant append(StringBuilder versions, Versioned versioned, Instant lastModified) {
+		Instant updatedAt = versioned.getUpdatedAt();
+		versions.append(versioned.getId()).append('@').append(updatedAt).append(';');
+		return updatedAt != null && updatedAt.isAfter(lastModified) ? updatedAt : lastModified;
+	}
+
+}
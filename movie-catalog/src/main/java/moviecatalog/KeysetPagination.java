@@ -0,0 +1,74 @@
+package moviecatalog;
+
+import java.util.List;
+import java.util.function.ToIntFunction;
+
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+/**
+ * Keyset (cursor) pagination helpers shared by the list and search endpoints.
+ *
+ * Pages are requested with "after={ID}&limit={N}", where the cursor is the ID of the last entity of the previous page,
+ * so every page is a bounded index range scan however deep into the catalog it is.
+ * The cursor for the following page is returned as an RFC 8288 "Link" header with rel="next", omitted on the last page.
+ *
+ * @author johnathanleif
+ *
+ * */
+public final class KeysetPagination {
+
+	public static final String AFTER_PARAM = "after";
+	public static final String LIMIT_PARAM = "limit";
+
+	/** Cursor value requesting the first page. */
+	public static final String FIRST = "0";
+	public static final String DEFAULT_LIMIT = "100";
+	public static final int MAX_LIMIT = 1000;
+
+	private KeysetPagination() {
+	}
+
+	/**
+	 * Returns a request for the first slice of at most limit entities, the limit being clamped to [1, {@link #MAX_LIMIT}].
+	 * Ordering is given by the repository query so the keyset predicate and the sort always agree.
+	 * @return the page request
+	 * */
+	public static Pageable firstSlice(int limit) {
+		return PageRequest.of(0, Math.max(1, Math.min(limit, MAX_LIMIT)));
+	}
+
+	/**
+	 * Builds the response for a slice with a rel="next" Link header holding the cursor for the following slice.
+	 * @return the slice content with its pagination headers
+	 * */
+	public static <T> ResponseEntity<List<T>> response(Slice<T> slice, ToIntFunction<T> cursor) {
+		return response(slice, cursor, null, null);
+	}
+
+	/**
+	 * Builds the response for a slice ordered by a sort key before the ID, the rel="next" Link header holding both the
+	 * cursor ID and its sort key (as sortParam) so the following slice can be found even once the cursor entity is deleted.
+	 * @return the slice content with its pagination headers
+	 * */
+	public static <T> ResponseEntity<List<T>> response(Slice<T> slice, ToIntFunction<T> cursor, String sortParam, ToIntFunction<T> sortKey) {
+		ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+		if(slice.hasNext() && slice.hasContent()) {
+			List<T> content = slice.getContent();
+			T last = content.get(content.size() - 1);
+			ServletUriComponentsBuilder next = ServletUriComponentsBuilder.fromCurrentRequest();
+			next.replaceQueryParam(AFTER_PARAM, cursor.applyAsInt(last));
+			if(sortParam != null) {
+				next.replaceQueryParam(sortParam, sortKey.applyAsInt(last));
+			}
+			next.replaceQueryParam(LIMIT_PARAM, slice.getSize());
+			response.header(HttpHeaders.LINK, "<" + next.toUriString() + ">; rel=\"next\"");
+		}
+		return response.body(slice.getContent());
+	}
+
+}
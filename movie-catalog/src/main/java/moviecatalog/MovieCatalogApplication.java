@@ -1,19 +1,32 @@
 package moviecatalog;
 
 import org.springframework.boot.SpringApplication;
+import org.springframework.boot.WebApplicationType;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 /**
  * Movie Catalog Spring Boot Application
  * 
+ * Runs the REST service, or with "--import={file}" imports the file into the catalog and exits (see {@link MovieImportRunner}).
+ * Scheduling runs the periodic recount of the {@link moviecatalog.cache.CatalogStatistics}.
+ * 
  * @author johnathanleif
  *
  */
 @SpringBootApplication
+@EnableScheduling
 public class MovieCatalogApplication {
 	
 	public static void main(String args[]) {
-		SpringApplication.run(MovieCatalogApplication.class, args);
+		SpringApplication application = new SpringApplication(MovieCatalogApplication.class);
+		if(MovieImportRunner.isImport(args)) {
+			application.setWebApplicationType(WebApplicationType.NONE);
+			ConfigurableApplicationContext context = application.run(args);
+			System.exit(SpringApplication.exit(context));
+		}
+		application.run(args);
 	}
 	
 }
@@ -1,16 +1,37 @@
 package moviecatalog;
 
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.BiFunction;
 
+import javax.persistence.EntityManager;
+import javax.servlet.http.HttpServletRequest;
 import javax.validation.Valid;
 
+import org.hibernate.Hibernate;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.validation.FieldError;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -20,22 +41,44 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiResponse;
 import io.swagger.annotations.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import moviecatalog.cache.CatalogStatistics;
+import moviecatalog.cache.CatalogVersion;
+import moviecatalog.cache.DirectorNameIndex;
+import moviecatalog.cache.RatingCache;
+import moviecatalog.cache.ReadCoalescer;
+import moviecatalog.cache.SearchResultCache;
 import moviecatalog.model.Director;
 import moviecatalog.model.Movie;
+import moviecatalog.model.MovieSummary;
 import moviecatalog.model.Rating;
+import moviecatalog.model.Versioned;
+import moviecatalog.readmodel.CatalogReadModel;
 import moviecatalog.repository.DirectorRepository;
 import moviecatalog.repository.MovieRepository;
 import moviecatalog.repository.RatingRepository;
+import moviecatalog.search.AutocompleteIndex;
+import moviecatalog.search.DirectorFuzzyIndex;
+import moviecatalog.search.RatingBitmapIndex;
+import moviecatalog.search.RelatedMoviesIndex;
+import moviecatalog.search.TitleSearchIndex;
+import moviecatalog.service.ImportFormat;
+import moviecatalog.service.ImportReport;
+import moviecatalog.service.MovieExportService;
+import moviecatalog.service.MovieImportService;
+import moviecatalog.service.MovieQuery;
+import moviecatalog.service.MovieQueryService;
 
 /**
  * Rest Controller for CRUD operations on Movies to the catalog.
@@ -49,23 +92,86 @@ import moviecatalog.repository.RatingRepository;
 @Tag(name = "Movie Service", description = "Movie List API")
 public class MovieController {
 
+	private static final Set<SearchResultCache.Table> BY_DIRECTORS = EnumSet.of(SearchResultCache.Table.MOVIES, SearchResultCache.Table.DIRECTORS);
+	private static final Set<SearchResultCache.Table> BY_RATING = EnumSet.of(SearchResultCache.Table.MOVIES, SearchResultCache.Table.RATINGS);
+	private static final Set<SearchResultCache.Table> BY_RATING_AND_DIRECTORS = EnumSet.allOf(SearchResultCache.Table.class);
+
 	@Autowired
 	private MovieRepository movieRepository;	
 	@Autowired
 	private RatingRepository ratingRepository;
 	@Autowired
 	private DirectorRepository directorRepository;
+	@Autowired
+	private MovieExportService movieExportService;
+	@Autowired
+	private RatingCache ratingCache;
+	@Autowired
+	private CatalogVersion catalogVersion;
+	@Autowired
+	private DirectorNameIndex directorNameIndex;
+	@Autowired
+	private MovieImportService movieImportService;
+	@Autowired
+	private MovieQueryService movieQueryService;
+	@Autowired
+	private TitleSearchIndex titleSearchIndex;
+	@Autowired
+	private DirectorFuzzyIndex directorFuzzyIndex;
+	@Autowired
+	private AutocompleteIndex autocompleteIndex;
+	@Autowired
+	private RatingBitmapIndex ratingBitmapIndex;
+	@Autowired
+	private RelatedMoviesIndex relatedMoviesIndex;
+	@Autowired
+	private CatalogStatistics catalogStatistics;
+	@Autowired
+	private CatalogReadModel readModel;
+	@Autowired
+	private SearchResultCache searchResultCache;
+	@Autowired
+	private ReadCoalescer readCoalescer;
+	@Autowired
+	private EntityManager entityManager;
 	
 	/**
 	 * GET the list of {@link Movie}s using URI "/movies"
+	 * Paged with "after={ID}&limit={N}", see {@link KeysetPagination}.
+	 * Properties selected with "fields=title,rating.symbol,directors.name", see {@link SparseFieldsetsAdvice}.
 	 * */
+	@CatalogVersioned
+	@SparseFieldsets
 	@GetMapping
     @ApiOperation(value = "Find All Movies in the catalog", notes = "Get all Movies.")
+    @ApiResponses(value = {
+    		@ApiResponse (code = 200, message = "Successful Operation.", response=MovieSummary.class )  
+    	})
+	public ResponseEntity<List<MovieSummary>> findAllMovies(@RequestParam(name = KeysetPagination.AFTER_PARAM, defaultValue = KeysetPagination.FIRST) int after, @RequestParam(name = KeysetPagination.LIMIT_PARAM, defaultValue = KeysetPagination.DEFAULT_LIMIT) int limit, @RequestParam(name = SparseFieldsetsAdvice.PARAM, required = false) List<String> fields) {
+		Pageable slice = KeysetPagination.firstSlice(limit);
+		Set<String> properties = SparseFieldsetsAdvice.properties(fields);
+		return KeysetPagination.response(readCoalescer.read("movies", Arrays.asList(after, slice, properties), () -> movieQueryService.findAll(after, slice, properties)), MovieSummary::getId);
+	}
+	
+	/**
+	 * GET every {@link Movie} in the catalog as newline-delimited JSON using URI "/movies/export"
+	 * Streamed in constant memory, gzip compressed when the request accepts it.
+	 * */
+	@CatalogVersioned
+	@GetMapping(path = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @ApiOperation(value = "Export all Movies in the catalog", notes = "Stream all Movies as newline-delimited JSON (gzip compressed if accepted).")
     @ApiResponses(value = {
     		@ApiResponse (code = 200, message = "Successful Operation.", response=Movie.class )  
     	})
-	public Iterable<Movie> findAllMovies() {
-		return movieRepository.findAll();
+	public ResponseEntity<StreamingResponseBody> exportMovies(@RequestHeader(name = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+		boolean gzip = acceptEncoding != null && acceptEncoding.contains("gzip");
+		ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+				.contentType(MediaType.APPLICATION_NDJSON)
+				.header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+		if(gzip) {
+			response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+		}
+		return response.body(output -> movieExportService.export(output, gzip));
 	}
 	
 	/**
@@ -76,113 +182,270 @@ public class MovieController {
     @ApiResponses(value = {
     		@ApiResponse (code = 200, message = "Successful Operation.", response=Movie.class )  
     	})
-	public Optional<Movie> findMovieById(@PathVariable int id) {
-		return movieRepository.findById(id);
+	public ResponseEntity<Movie> findMovieById(@PathVariable int id) {
+		Optional<Movie> movie = readCoalescer.read("movie", Collections.singletonList(id), () -> movieRepository.findById(id).map(this::detached));
+		return EntityTags.response(movie, MovieController::embeddedEntities);
+	}
+	
+	/**
+	 * GET the {@link Movie}s with IDs using URI "/movies?ids={ID},{ID}"
+	 * In the order requested, IDs not found skipped, with their Ratings and Directors fetched in one query per {@link MultiGet#CHUNK_SIZE} IDs.
+	 * */
+	@CatalogVersioned
+	@GetMapping(params = MultiGet.IDS_PARAM)
+    @ApiOperation(value = "Find Movies with IDs", notes = "Get the Movies with IDs (at most " + MultiGet.MAX_IDS + "), in the order requested.")
+    @ApiResponses(value = {
+    		@ApiResponse (code = 200, message = "Successful Operation.", response=Movie.class )  
+    	})
+	public List<Movie> findMoviesByIds(@RequestParam(name = MultiGet.IDS_PARAM) List<Integer> ids) {
+		return MultiGet.findAll(ids, chunk -> readCoalescer.read("movies-by-ids", chunk, () -> {
+			List<Movie> movies = movieRepository.findDistinctByIdIn(chunk);
+			movies.forEach(this::detached);
+			return movies;
+		}), Movie::getId);
+	}
+	
+	/**
+	 * POST a JSON array of IDs to get their {@link Movie}s using URI "/movies/by-ids", for ID lists too long for a URI
+	 * As "/movies?ids={ID},{ID}".
+	 * */
+	@PostMapping(path = "/by-ids")
+    @ApiOperation(value = "Find Movies with IDs (POST)", notes = "Get the Movies with the IDs of the body array (at most " + MultiGet.MAX_IDS + "), in the order requested.")
+    @ApiResponses(value = {
+    		@ApiResponse (code = 200, message = "Successful Operation.", response=Movie.class )  
+    	})
+	public List<Movie> findMoviesByIdsPosted(@RequestBody List<Integer> ids) {
+		return findMoviesByIds(ids);
 	}
 	
 	/**
 	 * GET the list of {@link Movie}s by Directors by ID using URI "/movies/search-director-id?query={id}"
+	 * Paged with "after={ID}&limit={N}", see {@link KeysetPagination}.
+	 * Properties selected with "fields=title,rating.symbol,directors.name", see {@link SparseFieldsetsAdvice}.
 	 * */
+	@CatalogVersioned
+	@SparseFieldsets
 	@GetMapping(path = "/search-director-id")
     @ApiOperation(value = "Find Movies by Director ID", notes = "Movie search by Director ID.")
     @ApiResponses(value = {
-    		@ApiResponse (code = 200, message = "Successful Operation.", response=Movie.class )  
+    		@ApiResponse (code = 200, message = "Successful Operation.", response=MovieSummary.class )  
     	})
-	public Iterable<Movie> findAllMoviesByDirectorName(@RequestParam int query) {
-		return movieRepository.findAllByDirectorsId(query);
+	public ResponseEntity<List<MovieSummary>> findAllMoviesByDirectorName(@RequestParam int query, @RequestParam(name = KeysetPagination.AFTER_PARAM, defaultValue = KeysetPagination.FIRST) int after, @RequestParam(name = KeysetPagination.LIMIT_PARAM, defaultValue = KeysetPagination.DEFAULT_LIMIT) int limit, @RequestParam(name = SparseFieldsetsAdvice.PARAM, required = false) List<String> fields) {
+		Pageable slice = KeysetPagination.firstSlice(limit);
+		Set<String> properties = SparseFieldsetsAdvice.properties(fields);
+		return KeysetPagination.response(readCoalescer.read("movies-by-director-id", Arrays.asList(query, after, slice, properties),
+				() -> movieQueryService.findAllByDirectorIds(Collections.singletonList(query), after, slice, properties)), MovieSummary::getId);
 	}
 	
 	/**
 	 * GET the list of {@link Movie}s by Directors by name using URI "/movies/search-director-name?query={name}"
+	 * Paged with "after={ID}&limit={N}", see {@link KeysetPagination}.
+	 * Properties selected with "fields=title,rating.symbol,directors.name", see {@link SparseFieldsetsAdvice}.
 	 * */
+	@CatalogVersioned
+	@SparseFieldsets
 	@GetMapping(path = "/search-director-name")
     @ApiOperation(value = "Find Movies by Directors Name", notes = "Movie search by Director exact Name (name equals query).")
     @ApiResponses(value = {
-    		@ApiResponse (code = 200, message = "Successful Operation.", response=Movie.class )  
+    		@ApiResponse (code = 200, message = "Successful Operation.", response=MovieSummary.class )  
     	})
-	public Iterable<Movie> findAllMoviesByDirectorName(@RequestParam("director-name") String query) {
-		Iterable<Director> directors = directorRepository.findAllByNameContains(query);
-		return movieRepository.findAllByDirectorsIn(directors);
+	public ResponseEntity<List<MovieSummary>> findAllMoviesByDirectorName(@RequestParam("director-name") String query, @RequestParam(name = KeysetPagination.AFTER_PARAM, defaultValue = KeysetPagination.FIRST) int after, @RequestParam(name = KeysetPagination.LIMIT_PARAM, defaultValue = KeysetPagination.DEFAULT_LIMIT) int limit, @RequestParam(name = SparseFieldsetsAdvice.PARAM, required = false) List<String> fields) {
+		return findAllMoviesBySearch(BY_DIRECTORS, "director-name", query, after, limit, fields,
+				(size, properties) -> findAllMoviesByDirectorIds(directorNameIndex.findIdsByName(query), after, size, properties));
 	}
 	
 	/**
 	 * GET the list of {@link Movie}s by Directors by partial name using URI "/movies/search-director-name-contains?query={partial name}"
+	 * Paged with "after={ID}&limit={N}", see {@link KeysetPagination}.
+	 * Properties selected with "fields=title,rating.symbol,directors.name", see {@link SparseFieldsetsAdvice}.
 	 * */
+	@CatalogVersioned
+	@SparseFieldsets
 	@GetMapping(path = "/search-director-name-contains")
     @ApiOperation(value = "Find Movies by Directors partial Name", notes = "Movie search by Director partial Name (name contains given query).")
     @ApiResponses(value = {
-    		@ApiResponse (code = 200, message = "Successful Operation.", response=Movie.class )  
+    		@ApiResponse (code = 200, message = "Successful Operation.", response=MovieSummary.class )  
     	})
-	public Iterable<Movie> findAllMoviesByDirectorNameContains(@RequestParam String query) {
-		Iterable<Director> directors = directorRepository.findAllByNameContains(query);
-		return movieRepository.findAllByDirectorsIn(directors);
+	public ResponseEntity<List<MovieSummary>> findAllMoviesByDirectorNameContains(@RequestParam String query, @RequestParam(name = KeysetPagination.AFTER_PARAM, defaultValue = KeysetPagination.FIRST) int after, @RequestParam(name = KeysetPagination.LIMIT_PARAM, defaultValue = KeysetPagination.DEFAULT_LIMIT) int limit, @RequestParam(name = SparseFieldsetsAdvice.PARAM, required = false) List<String> fields) {
+		return findAllMoviesBySearch(BY_DIRECTORS, "director-name-contains", query, after, limit, fields,
+				(size, properties) -> findAllMoviesByDirectorIds(directorNameIndex.findIdsByNameContaining(query), after, size, properties));
 	}
 	
 	/**
 	 * GET the list of {@link Movie}s by Directors by start of name using URI "/movies/search-director-name-starts-with?query={start of name}"
+	 * Paged with "after={ID}&limit={N}", see {@link KeysetPagination}.
+	 * Properties selected with "fields=title,rating.symbol,directors.name", see {@link SparseFieldsetsAdvice}.
 	 * */
+	@CatalogVersioned
+	@SparseFieldsets
 	@GetMapping(path = "/search-director-name-starts-with")
     @ApiOperation(value = "Find Movies by Directors start of Name", notes = "Movie search by Director start of Name (name starts with given query).")
     @ApiResponses(value = {
-    		@ApiResponse (code = 200, message = "Successful Operation.", response=Movie.class )  
+    		@ApiResponse (code = 200, message = "Successful Operation.", response=MovieSummary.class )  
     	})
-	public Iterable<Movie> findAllMoviesByDirectorNameStartsWith(@RequestParam String query) {
-		Iterable<Director> directors = directorRepository.findAllByNameContains(query);
-		return movieRepository.findAllByDirectorsIn(directors);
+	public ResponseEntity<List<MovieSummary>> findAllMoviesByDirectorNameStartsWith(@RequestParam String query, @RequestParam(name = KeysetPagination.AFTER_PARAM, defaultValue = KeysetPagination.FIRST) int after, @RequestParam(name = KeysetPagination.LIMIT_PARAM, defaultValue = KeysetPagination.DEFAULT_LIMIT) int limit, @RequestParam(name = SparseFieldsetsAdvice.PARAM, required = false) List<String> fields) {
+		return findAllMoviesBySearch(BY_DIRECTORS, "director-name-starts-with", query, after, limit, fields,
+				(size, properties) -> findAllMoviesByDirectorIds(directorNameIndex.findIdsByNameStartingWith(query), after, size, properties));
 	}
 	
 	/**
 	 * GET the list of {@link Movie}s by Directors by end of name using URI "/movies/search-director-name-ends-with?query={end of name}"
+	 * Paged with "after={ID}&limit={N}", see {@link KeysetPagination}.
+	 * Properties selected with "fields=title,rating.symbol,directors.name", see {@link SparseFieldsetsAdvice}.
 	 * */
+	@CatalogVersioned
+	@SparseFieldsets
 	@GetMapping(path = "/search-director-name-ends-with")
     @ApiOperation(value = "Find Movies by Directors end of Name", notes = "Movie search by Director end of Name (name ends with given query).")
     @ApiResponses(value = {
-    		@ApiResponse (code = 200, message = "Successful Operation.", response=Movie.class )  
+    		@ApiResponse (code = 200, message = "Successful Operation.", response=MovieSummary.class )  
     	})
-	public Iterable<Movie> findAllMoviesByDirectorNameEndsWith(@RequestParam String query) {
-		Iterable<Director> directors = directorRepository.findAllByNameContains(query);
-		return movieRepository.findAllByDirectorsIn(directors);
+	public ResponseEntity<List<MovieSummary>> findAllMoviesByDirectorNameEndsWith(@RequestParam String query, @RequestParam(name = KeysetPagination.AFTER_PARAM, defaultValue = KeysetPagination.FIRST) int after, @RequestParam(name = KeysetPagination.LIMIT_PARAM, defaultValue = KeysetPagination.DEFAULT_LIMIT) int limit, @RequestParam(name = SparseFieldsetsAdvice.PARAM, required = false) List<String> fields) {
+		return findAllMoviesBySearch(BY_DIRECTORS, "director-name-ends-with", query, after, limit, fields,
+				(size, properties) -> findAllMoviesByDirectorIds(directorNameIndex.findIdsByNameEndingWith(query), after, size, properties));
 	}
 	
 	/**
 	 * GET the list of {@link Movie}s by Ratings by ID using URI "/movies/search?rating-id={ID}"
+	 * Paged with "after={ID}&limit={N}", see {@link KeysetPagination}.
+	 * Properties selected with "fields=title,rating.symbol,directors.name", see {@link SparseFieldsetsAdvice}.
 	 * */
+	@CatalogVersioned
+	@SparseFieldsets
 	@GetMapping(path = "/search-rating-id")
     @ApiOperation(value = "Find Movies by Rating ID", notes = "Movie search by Rating ID.")
     @ApiResponses(value = {
-    		@ApiResponse (code = 200, message = "Successful Operation.", response=Movie.class )  
+    		@ApiResponse (code = 200, message = "Successful Operation.", response=MovieSummary.class )  
     	})
-	public Iterable<Movie> findAllMoviesByRatingId(@RequestParam int query) {
-		return movieRepository.findAllByRatingId(query);
+	public ResponseEntity<List<MovieSummary>> findAllMoviesByRatingId(@RequestParam int query, @RequestParam(name = KeysetPagination.AFTER_PARAM, defaultValue = KeysetPagination.FIRST) int after, @RequestParam(name = KeysetPagination.LIMIT_PARAM, defaultValue = KeysetPagination.DEFAULT_LIMIT) int limit, @RequestParam(name = SparseFieldsetsAdvice.PARAM, required = false) List<String> fields) {
+		Pageable slice = KeysetPagination.firstSlice(limit);
+		Set<String> properties = SparseFieldsetsAdvice.properties(fields);
+		return KeysetPagination.response(readCoalescer.read("movies-by-rating-id", Arrays.asList(query, after, slice, properties),
+				() -> movieQueryService.findAllByRatingId(query, after, slice, properties)), MovieSummary::getId);
 	}
 	
 	/**
 	 * GET the list of {@link Movie}s by Ratings by symbol using URI "/movies/search-rating?query={symbol}"
+	 * Paged with "after={ID}&limit={N}", see {@link KeysetPagination}.
+	 * Properties selected with "fields=title,rating.symbol,directors.name", see {@link SparseFieldsetsAdvice}.
 	 * */
+	@CatalogVersioned
+	@SparseFieldsets
 	@GetMapping(path = "/search-rating")
     @ApiOperation(value = "Find Movies by Rating", notes = "Movie search by Rating Symbol (PG, 12A, 15, etc.).")
     @ApiResponses(value = {
-    		@ApiResponse (code = 200, message = "Successful Operation.", response=Movie.class )  
+    		@ApiResponse (code = 200, message = "Successful Operation.", response=MovieSummary.class )  
     	})
-	public Iterable<Movie> findAllMoviesByRatingSymbol(@RequestParam String query) {
-		return movieRepository.findAllByRatingSymbol(query);
+	public ResponseEntity<List<MovieSummary>> findAllMoviesByRatingSymbol(@RequestParam String query, @RequestParam(name = KeysetPagination.AFTER_PARAM, defaultValue = KeysetPagination.FIRST) int after, @RequestParam(name = KeysetPagination.LIMIT_PARAM, defaultValue = KeysetPagination.DEFAULT_LIMIT) int limit, @RequestParam(name = SparseFieldsetsAdvice.PARAM, required = false) List<String> fields) {
+		return findAllMoviesBySearch(BY_RATING, "rating", query, after, limit, fields, (size, properties) -> {
+			MovieQuery rated = new MovieQuery();
+			rated.setRatingSymbol(query);
+			return movieQueryService.findAll(rated, after, size, properties);
+		});
 	}
 	
 	/**
-	 * GET the list of {@link Movie}s above Rating by symbol using URI "/movies/search-rated-above?query={symbol}"
+	 * GET the list of {@link Movie}s above Rating by symbol using URI "/movies/search-rated-above?rated-above={symbol}"
+	 * Optionally only movies by any of the Directors with "director-id={ID}" (repeatable).
+	 * Paged with "after={ID}&limit={N}", see {@link KeysetPagination}.
+	 * Properties selected with "fields=title,rating.symbol,directors.name", see {@link SparseFieldsetsAdvice}.
 	 * */
+	@CatalogVersioned
+	@SparseFieldsets
 	@GetMapping(path = "/search-rated-above")
-    @ApiOperation(value = "Find Movies above Rating", notes = "Movie search above Rating with Symbol (PG, 12A, 15, etc.).")
+    @ApiOperation(value = "Find Movies above Rating", notes = "Movie search above Rating with Symbol (PG, 12A, 15, etc.), optionally by Director IDs.")
     @ApiResponses(value = {
-    		@ApiResponse (code = 200, message = "Successful Operation.", response=Movie.class )  
+    		@ApiResponse (code = 200, message = "Successful Operation.", response=MovieSummary.class )  
+    	})
+	public ResponseEntity<List<MovieSummary>> findAllMoviesByRatingGreaterThan(@RequestParam("rated-above") String query, @RequestParam(name = "director-id", required = false) List<Integer> directorIds, @RequestParam(name = KeysetPagination.AFTER_PARAM, defaultValue = KeysetPagination.FIRST) int after, @RequestParam(name = KeysetPagination.LIMIT_PARAM, defaultValue = KeysetPagination.DEFAULT_LIMIT) int limit, @RequestParam(name = SparseFieldsetsAdvice.PARAM, required = false) List<String> fields) {
+		List<Integer> directors = directorIds == null || directorIds.isEmpty() ? null : new ArrayList<>(new TreeSet<>(directorIds));		//any of them, in any order
+		return findAllMoviesBySearch(directors == null ? BY_RATING : BY_RATING_AND_DIRECTORS, "rated-above", Arrays.asList(query, directors), after, limit, fields, (size, properties) -> {
+			Optional<Rating> rating = ratingCache.findBySymbol(query);
+			return rating.isPresent() ? movieQueryService.findAllByIds(ratingBitmapIndex.findIdsRatedAbove(rating.get().getAgeLimit(), moviesByDirectors(directors), after, size), properties)
+					: Collections.<MovieSummary>emptyList();
+		});
+	}
+	
+	/**
+	 * GET the list of {@link Movie}s suitable for a viewer of an age, rated with age limits up to it, using URI "/movies/search-suitable-for-age?age={age}"
+	 * Optionally only movies by any of the Directors with "director-id={ID}" (repeatable).
+	 * Paged with "after={ID}&limit={N}", see {@link KeysetPagination}.
+	 * Properties selected with "fields=title,rating.symbol,directors.name", see {@link SparseFieldsetsAdvice}.
+	 * */
+	@CatalogVersioned
+	@SparseFieldsets
+	@GetMapping(path = "/search-suitable-for-age")
+    @ApiOperation(value = "Find Movies suitable for Age", notes = "Movie search for Ratings with Age Limit not above age, optionally by Director IDs. Movies without Rating are excluded.")
+    @ApiResponses(value = {
+    		@ApiResponse (code = 200, message = "Successful Operation.", response=MovieSummary.class )  
+    	})
+	public ResponseEntity<List<MovieSummary>> findAllMoviesSuitableForAge(@RequestParam int age, @RequestParam(name = "director-id", required = false) List<Integer> directorIds, @RequestParam(name = KeysetPagination.AFTER_PARAM, defaultValue = KeysetPagination.FIRST) int after, @RequestParam(name = KeysetPagination.LIMIT_PARAM, defaultValue = KeysetPagination.DEFAULT_LIMIT) int limit, @RequestParam(name = SparseFieldsetsAdvice.PARAM, required = false) List<String> fields) {
+		Pageable slice = KeysetPagination.firstSlice(limit);
+		return findAllMoviesByIds(ratingBitmapIndex.findIdsSuitableForAge(age, moviesByDirectors(directorIds), after, slice.getPageSize() + 1), slice, fields);
+	}
+	
+	/**
+	 * GET the list of {@link Movie}s matching every given filter using URI
+	 * "/movies/query?director-id={ID}&director-name={partial name}&rating-id={ID}&rating={symbol}&min-age={age}&max-age={age}&title={words}"
+	 * Director IDs are repeatable (any of them), the director name is matched like "/search-director-name-contains",
+	 * the age range bounds the Rating age limit inclusively and every title word must occur in the title, ignoring case.
+	 * Answered by a single query, see {@link MovieQueryService}.
+	 * Paged with "after={ID}&limit={N}", see {@link KeysetPagination}.
+	 * Properties selected with "fields=title,rating.symbol,directors.name", see {@link SparseFieldsetsAdvice}.
+	 * */
+	@CatalogVersioned
+	@SparseFieldsets
+	@GetMapping(path = "/query")
+    @ApiOperation(value = "Find Movies by combined filters", notes = "Movie search by any combination of Director IDs, partial Director Name, Rating ID or Symbol, Age Limit range and Title words.")
+    @ApiResponses(value = {
+    		@ApiResponse (code = 200, message = "Successful Operation.", response=MovieSummary.class )  
     	})
-	public Iterable<Movie> findAllMoviesByRatingGreaterThan(@RequestParam("rated-above") String query) {
-		Optional<Rating> rating = ratingRepository.findBySymbol(query);
-		if(rating.isPresent()) {
-			return movieRepository.findAllByRatingAgeLimitGreaterThan(rating.get().getAgeLimit());
-		} else {
-			return Collections.emptySet();
+	public ResponseEntity<List<MovieSummary>> queryMovies(@RequestParam(name = "director-id", required = false) List<Integer> directorIds, @RequestParam(name = "director-name", required = false) String directorName,
+			@RequestParam(name = "rating-id", required = false) Integer ratingId, @RequestParam(name = "rating", required = false) String ratingSymbol,
+			@RequestParam(name = "min-age", required = false) Integer minAge, @RequestParam(name = "max-age", required = false) Integer maxAge, @RequestParam(required = false) String title,
+			@RequestParam(name = KeysetPagination.AFTER_PARAM, defaultValue = KeysetPagination.FIRST) int after, @RequestParam(name = KeysetPagination.LIMIT_PARAM, defaultValue = KeysetPagination.DEFAULT_LIMIT) int limit, @RequestParam(name = SparseFieldsetsAdvice.PARAM, required = false) List<String> fields) {
+		MovieQuery query = new MovieQuery(directorIds, directorName, ratingId, ratingSymbol, minAge, maxAge, title);
+		Pageable slice = KeysetPagination.firstSlice(limit);
+		Set<String> properties = SparseFieldsetsAdvice.properties(fields);
+		return KeysetPagination.response(readCoalescer.read("movie-query", Arrays.asList(query, after, slice, properties),
+				() -> movieQueryService.query(query, after, slice, properties)), MovieSummary::getId);
+	}
+	
+	/**
+	 * GET the list of {@link Movie}s with titles best matching the words of a query using URI "/movies/search?q={words}"
+	 * Ranked by relevance (BM25, see {@link TitleSearchIndex}), at most "limit={N}" movies (default 20).
+	 * Properties selected with "fields=title,rating.symbol,directors.name", see {@link SparseFieldsetsAdvice}.
+	 * */
+	@CatalogVersioned
+	@SparseFieldsets
+	@GetMapping(path = "/search")
+    @ApiOperation(value = "Search Movies by Title", notes = "Ranked full text search of Movie Titles, case and accent insensitive, best match first.")
+    @ApiResponses(value = {
+    		@ApiResponse (code = 200, message = "Successful Operation.", response=MovieSummary.class )  
+    	})
+	public List<MovieSummary> searchMovies(@RequestParam String q, @RequestParam(name = KeysetPagination.LIMIT_PARAM, defaultValue = "20") int limit, @RequestParam(name = SparseFieldsetsAdvice.PARAM, required = false) List<String> fields) {
+		return movieQueryService.findAllByIds(titleSearchIndex.search(q, KeysetPagination.firstSlice(limit).getPageSize()), SparseFieldsetsAdvice.properties(fields));		//movies deleted since searched are skipped
+	}
+	
+	/**
+	 * GET the list of {@link Movie}s related to the {@link Movie} with ID using URI "/movies/{ID}/related"
+	 * Ranked by shared directors, co-directed movies weighing less per director, and the same rating preferred, see {@link RelatedMoviesIndex}.
+	 * At most "limit={N}" movies (default 20), the movie itself excluded.
+	 * Properties selected with "fields=title,rating.symbol,directors.name", see {@link SparseFieldsetsAdvice}.
+	 * */
+	@CatalogVersioned
+	@SparseFieldsets
+	@GetMapping(path = "/{id}/related")
+    @ApiOperation(value = "Find Movies related to Movie with ID", notes = "Movies sharing Directors with the Movie, most shared first, the same Rating preferred.")
+    @ApiResponses(value = {
+    		@ApiResponse (code = 200, message = "Successful Operation.", response=MovieSummary.class )  
+    	})
+	public ResponseEntity<List<MovieSummary>> findRelatedMovies(@PathVariable int id, @RequestParam(name = KeysetPagination.LIMIT_PARAM, defaultValue = "20") int limit, @RequestParam(name = SparseFieldsetsAdvice.PARAM, required = false) List<String> fields) {
+		List<Integer> ids = relatedMoviesIndex.findRelatedIds(id, KeysetPagination.firstSlice(limit).getPageSize());
+		if(ids == null) {
+			return ResponseEntity.notFound().build();
 		}
+		return ResponseEntity.ok(movieQueryService.findAllByIds(ids, SparseFieldsetsAdvice.properties(fields)));		//movies deleted since ranked are skipped
 	}
 	
 	/**
@@ -194,10 +457,12 @@ public class MovieController {
 	 * for movies with new Ratings and Directors (or a combination).
 	 * 
 	 * If given IDs for Ratings or Directors does not exist an they are ignored. Ratings or Directors with existing IDs will not be updated from this request.
+	 * New Directors are matched to existing Directors by name, and only one Director is created per new name.
 	 * 
 	 * Movie ID is generated even if ID included as a property.
 	 * 
 	 * */
+	@Transactional
 	@PostMapping
     @ApiOperation(value = "Save new Movie.", notes = "Save a new Movie with Title, Rating (strictly new (without ID) or existing), and/or Directors (strictly new (without ID) or existing) (ID will be generated).")
     @ApiResponses(value = {
@@ -207,7 +472,36 @@ public class MovieController {
 		mergeJoinedEntities(movie);			//spring handling entity cascading inconsistently for PUT and POST so do manually
 		persistNewJoinedEntities(movie);
 		
-		return movieRepository.save(movie);
+		Movie saved = movieRepository.save(movie);
+		titleSearchIndex.saved(saved);
+		autocompleteIndex.saved(saved);
+		ratingBitmapIndex.saved(saved);
+		relatedMoviesIndex.saved(saved);
+		readModel.saved(saved);
+		catalogStatistics.movieSaved(null, saved);
+		searchResultCache.modified(SearchResultCache.Table.MOVIES);		//new ratings and directors only change searches through their movies
+		catalogVersion.modified();		//applied on commit
+		return saved;
+	}
+	
+	/**
+	 * POST a file of {@link Movie}s to bulk import using URI "/movies/import" with a "text/csv" body of form:
+	 * 
+	 * 		title,rating,age_limit,directors
+	 * 		Title,SYMBOL,18,Director Name;Named Director
+	 * or an "application/x-ndjson" body with one movie per line in the form of {@link #saveNewMovie(Movie)} (directors by name).
+	 * 
+	 * Ratings and Directors are matched by symbol and name, new ones are created.
+	 * 
+	 * */
+	@PostMapping(path = "/import", consumes = {"text/csv", MediaType.APPLICATION_NDJSON_VALUE})
+    @ApiOperation(value = "Bulk import Movies", notes = "Import Movies from a CSV (title,rating,age_limit,directors) or NDJSON body, creating Ratings and Directors by symbol and name if not found.")
+    @ApiResponses(value = {
+    		@ApiResponse(code = 200, message = "Successful Operation.", response=ImportReport.class)  
+    	})
+	public ImportReport importMovies(HttpServletRequest request) throws IOException {
+		Reader body = new InputStreamReader(request.getInputStream(), StandardCharsets.UTF_8);
+		return movieImportService.importMovies(body, ImportFormat.of(request.getContentType()));
 	}
 	
 	/**
@@ -219,66 +513,196 @@ public class MovieController {
 	 * for movies with new Ratings and Directors (or a combination).
 	 * 
 	 * If given IDs for Ratings or Directors does not exist they are ignored. Ratings or Directors with existing IDs will not be updated from this request.
+	 * New Directors are matched to existing Directors by name, and only one Director is created per new name.
 	 * 
 	 * */
+	@Transactional
 	@PutMapping("/{id}")
     @ApiOperation(value = "Update a Movie", notes = "Save existing Movie by ID with Title, Rating (strictly new (without ID) or existing), and/or Directors (strictly new (without ID) or existing) (new Movie created with generated ID if not found).")
     @ApiResponses(value = {
     		@ApiResponse(code = 200, message = "Successful Operation.", response=Movie.class)  
     	})
 	public Movie saveMovie(@Valid @RequestBody Movie movie, @PathVariable int id) {
+		CatalogStatistics.Counted previous = movieRepository.findById(id).map(CatalogStatistics.Counted::of).orElse(null);		//before the merge overwrites it
 		mergeJoinedEntities(movie);			//spring handling entity cascading inconsistently for PUT and POST so do manually
 		persistNewJoinedEntities(movie);
 
 		movie.setId(id);		
-		return movieRepository.save(movie);
+		Movie saved = movieRepository.save(movie);
+		titleSearchIndex.saved(saved);
+		autocompleteIndex.saved(saved);
+		ratingBitmapIndex.saved(saved);
+		relatedMoviesIndex.saved(saved);
+		readModel.saved(saved);
+		catalogStatistics.movieSaved(previous, saved);
+		searchResultCache.modified(SearchResultCache.Table.MOVIES);
+		catalogVersion.modified();
+		return saved;
 	}
 	
 	/**
 	 * DELETE the {@link Movie} with ID using URI "/movies/{ID}"
 	 * */
+	@Transactional
 	@DeleteMapping("/{id}")
     @ApiOperation(value = "Delete a Movie", notes = "Delete Movie by ID.")
     @ApiResponses(value = {
     		@ApiResponse(code = 200, message = "Successful Operation.")  
     	})
 	public void deleteMovie(@PathVariable int id) {
+		CatalogStatistics.Counted previous = movieRepository.findById(id).map(CatalogStatistics.Counted::of).orElse(null);		//loaded for the delete anyway
 		movieRepository.deleteById(id);
+		titleSearchIndex.deleted(id);
+		autocompleteIndex.deleted(id);
+		ratingBitmapIndex.deleted(id);
+		relatedMoviesIndex.deleted(id);
+		readModel.deleted(id);
+		catalogStatistics.movieDeleted(previous);
+		searchResultCache.modified(SearchResultCache.Table.MOVIES);
+		catalogVersion.modified();
+	}
+	
+	/**
+	 * Searches with the {@link SearchResultCache}, keyed by the search name, query, cursor, limit and properties.
+	 * The cached summaries also depend on the ratings and directors tables when their rating symbol or director names are returned.
+	 * @param search finds at most the given number of movies with the given properties, ascending by ID, on a cache miss
+	 * @return the slice of movies found
+	 * */
+	private ResponseEntity<List<MovieSummary>> findAllMoviesBySearch(Set<SearchResultCache.Table> tables, String name, Object query, int after, int limit, List<String> fields,
+			BiFunction<Integer, Set<String>, List<MovieSummary>> search) {
+		Pageable slice = KeysetPagination.firstSlice(limit);
+		Set<String> properties = SparseFieldsetsAdvice.properties(fields);
+		Set<SearchResultCache.Table> read = EnumSet.copyOf(tables);
+		if(MovieSummary.selected(properties, MovieSummary.RATING_SYMBOL)) {
+			read.add(SearchResultCache.Table.RATINGS);
+		}
+		if(MovieSummary.selected(properties, MovieSummary.DIRECTOR_NAMES)) {
+			read.add(SearchResultCache.Table.DIRECTORS);
+		}
+		List<Object> key = Arrays.asList(name, query, after, slice.getPageSize(), properties);
+		List<MovieSummary> movies = searchResultCache.find(read, key,
+				() -> readCoalescer.read("movie-search", key, () -> search.apply(slice.getPageSize() + 1, properties)));
+		boolean hasNext = movies.size() > slice.getPageSize();
+		return KeysetPagination.response(new SliceImpl<>(hasNext ? movies.subList(0, slice.getPageSize()) : movies, slice, hasNext), MovieSummary::getId);
+	}
+	
+	/**
+	 * Loads the rating and directors of a movie read by the {@link ReadCoalescer} and detaches all three from the persistence
+	 * context of the request that read them, as the other callers of the read share them.
+	 * @return the movie
+	 * */
+	private Movie detached(Movie movie) {
+		Hibernate.initialize(movie.getRating());
+		Hibernate.initialize(movie.getDirectors());		//from the second-level cache on a hit
+		entityManager.detach(movie);
+		if(movie.getRating() != null) {
+			entityManager.detach(movie.getRating());
+		}
+		movie.getDirectors().forEach(entityManager::detach);
+		return movie;
+	}
+	
+	private List<MovieSummary> findAllMoviesByDirectorIds(List<Integer> directorIds, int after, int limit, Set<String> properties) {
+		if(directorIds.isEmpty()) {
+			return Collections.emptyList();
+		}
+		MovieQuery directed = new MovieQuery();
+		directed.setDirectorIds(directorIds);
+		return movieQueryService.findAll(directed, after, limit, properties);
+	}
+	
+	/**
+	 * @return a slice of the movies with the given ascending IDs, one more ID than the slice size meaning there is a next slice
+	 * */
+	private ResponseEntity<List<MovieSummary>> findAllMoviesByIds(List<Integer> ids, Pageable slice, List<String> fields) {
+		boolean hasNext = ids.size() > slice.getPageSize();
+		List<MovieSummary> movies = movieQueryService.findAllByIds(hasNext ? ids.subList(0, slice.getPageSize()) : ids, SparseFieldsetsAdvice.properties(fields));
+		return KeysetPagination.response(new SliceImpl<>(movies, slice, hasNext), MovieSummary::getId);
+	}
+	
+	/**
+	 * @return the IDs of the movies of any of the directors, null for no director filter
+	 * */
+	private BitSet moviesByDirectors(List<Integer> directorIds) {
+		if(directorIds == null || directorIds.isEmpty()) {
+			return null;
+		}
+		if(readModel.isEnabled()) {
+			return readModel.findMovieIdsByDirectorIds(directorIds);
+		}
+		BitSet movies = new BitSet();
+		for(Integer id: readCoalescer.read("movie-ids-by-director-ids", directorIds, () -> movieRepository.findIdsByDirectorIdIn(directorIds))) {
+			movies.set(id);
+		}
+		return movies;
+	}
+	
+	private static List<Versioned> embeddedEntities(Movie movie) {
+		List<Versioned> embedded = new ArrayList<>();
+		if(movie.getRating() != null) {
+			embedded.add(movie.getRating());
+		}
+		if(movie.getDirectors() != null) {
+			List<Director> directors = new ArrayList<>(movie.getDirectors());
+			directors.sort(Comparator.comparing(Director::getId));
+			embedded.addAll(directors);
+		}
+		return embedded;
 	}
 	
 	private void persistNewJoinedEntities(final Movie movie) {
 		if(movie.getRating() != null && movie.getRating().getId() == null) {
-			ratingRepository.save(movie.getRating());
+			Rating saved = ratingRepository.save(movie.getRating());
+			ratingCache.saved(saved);
+			ratingBitmapIndex.ratingSaved(saved);
+			readModel.ratingSaved(saved);
+			catalogStatistics.ratingSaved(saved);
 		}
 		if(movie.getDirectors() != null) {
+			List<Director> newDirectors = new ArrayList<>();
 			for(Director dir: movie.getDirectors()) {
 				if(dir.getId() == null) {
-					directorRepository.save(dir);
+					newDirectors.add(dir);
 				}
-			} 
+			}
+			Iterable<Director> saved = directorRepository.saveAll(newDirectors);		//inserted in one JDBC batch when the transaction flushes
+			directorNameIndex.savedAll(saved);
+			directorFuzzyIndex.savedAll(saved);
+			autocompleteIndex.directorsSaved(saved);
+			readModel.directorsSaved(saved);
+			catalogStatistics.directorsSaved(saved);
 		}
 	}
 	
 	private void mergeJoinedEntities(final Movie movie) {
 		if(movie.getRating() != null && movie.getRating().getId() != null) {
-			Optional<Rating> rating = ratingRepository.findById(movie.getRating().getId());
+			Optional<Rating> rating = ratingCache.findById(movie.getRating().getId());
 			if(rating.isPresent()) {
 				movie.setRating(rating.get());
 			}
 		}
 		if(movie.getDirectors() != null) {
-			Set<Director> directors = new HashSet<>();
+			Set<Integer> ids = new HashSet<>();
+			Map<String, Director> newDirectors = new HashMap<>();
 			for(Director dir: movie.getDirectors()) {
 				if(dir.getId() != null) {
-					Optional<Director> director = directorRepository.findById(dir.getId());
-					if(director.isPresent()) {
-						directors.add(director.get());
-					}
+					ids.add(dir.getId());
 				} else {
-					directors.add(dir);		//keep new directors without IDs for persistance
+					newDirectors.putIfAbsent(dir.getName(), dir);		//one new director per name
+				}
+			}
+			Set<Director> directors = new HashSet<>();
+			directorRepository.findAllById(ids).forEach(directors::add);		//IDs not found are ignored
+			if(!newDirectors.isEmpty()) {
+				Map<String, Director> namedDirectors = new HashMap<>();
+				for(Director dir: directorRepository.findAllByNameInOrderById(newDirectors.keySet())) {
+					namedDirectors.putIfAbsent(dir.getName(), dir);
+				}
+				for(Director dir: newDirectors.values()) {
+					directors.add(namedDirectors.getOrDefault(dir.getName(), dir));		//keep new directors without IDs for persistance
 				}
 			}
-			movie.setDirectors(directors);		//alternative to using a proper iterator to remove during loop
+			movie.setDirectors(directors);
 		}
 	}
 	
@@ -0,0 +1,56 @@
+package moviecatalog;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+import moviecatalog.service.ImportFormat;
+import moviecatalog.service.MovieImportService;
+
+/**
+ * Command line bulk import, run as:
+ * 
+ * 		java -jar movie-catalog.jar --import={file}
+ * 
+ * with the format given by the file extension (".csv", otherwise NDJSON), see {@link ImportFormat}.
+ * The application exits once the file is imported.
+ * 
+ * @author johnathanleif
+ *
+ * */
+@Component
+public class MovieImportRunner implements ApplicationRunner {
+
+	public static final String IMPORT_OPTION = "import";
+	
+	@Autowired
+	private MovieImportService movieImportService;
+	
+	@Override
+	public void run(ApplicationArguments args) throws IOException {
+		if(args.containsOption(IMPORT_OPTION)) {
+			for(String file: args.getOptionValues(IMPORT_OPTION)) {
+				movieImportService.importMovies(Files.newBufferedReader(Paths.get(file), StandardCharsets.UTF_8), ImportFormat.of(file));
+			}
+		}
+	}
+	
+	/**
+	 * @return true if the command line arguments request an import
+	 * */
+	public static boolean isImport(String... args) {
+		for(String arg: args) {
+			if(arg.startsWith("--" + IMPORT_OPTION + "=")) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+}
@@ -0,0 +1,62 @@
+package moviecatalog;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Multi-get helpers shared by the endpoints fetching many entities by ID in one request, "GET ?ids={ID},{ID}" or a POST of an ID array.
+ *
+ * IDs are looked up in chunks of at most {@link #CHUNK_SIZE} so no "IN" list grows past what databases accept or plan caches
+ * can reuse, and the entities are returned in the order their IDs were first requested. IDs not found are skipped.
+ *
+ * @author johnathanleif
+ *
+ * */
+public final class MultiGet {
+
+	public static final String IDS_PARAM = "ids";
+	public static final int MAX_IDS = 5000;
+	public static final int CHUNK_SIZE = 500;
+
+	private MultiGet() {
+	}
+
+	/**
+	 * Finds the entities with the given IDs, chunk by chunk.
+	 * @param finder finds the entities with the IDs of a chunk in any order
+	 * @return the entities found, in the order of the IDs, duplicate IDs answered once
+	 * @throws ResponseStatusException "400 Bad Request" for more than {@link #MAX_IDS} distinct IDs
+	 * */
+	public static <T> List<T> findAll(List<Integer> ids, Function<List<Integer>, Iterable<T>> finder, ToIntFunction<T> id) {
+		Set<Integer> distinct = new LinkedHashSet<>(ids);
+		distinct.remove(null);
+		if(distinct.size() > MAX_IDS) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "At most " + MAX_IDS + " IDs per request.");
+		}
+		List<Integer> ordered = new ArrayList<>(distinct);
+		Map<Integer, T> found = new HashMap<>();
+		for(int from = 0; from < ordered.size(); from += CHUNK_SIZE) {
+			for(T entity: finder.apply(ordered.subList(from, Math.min(from + CHUNK_SIZE, ordered.size())))) {
+				found.put(id.applyAsInt(entity), entity);
+			}
+		}
+		List<T> entities = new ArrayList<>(found.size());
+		for(Integer requested: ordered) {
+			T entity = found.get(requested);
+			if(entity != null) {
+				entities.add(entity);
+			}
+		}
+		return entities;
+	}
+
+}
@@ -1,13 +1,18 @@
 package moviecatalog;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 
 import javax.validation.Valid;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.validation.FieldError;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -21,16 +26,23 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
 
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiResponse;
 import io.swagger.annotations.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import moviecatalog.cache.CatalogStatistics;
+import moviecatalog.cache.CatalogVersion;
+import moviecatalog.cache.RatingCache;
+import moviecatalog.cache.SearchResultCache;
 import moviecatalog.model.Rating;
-import moviecatalog.model.Movie;
+import moviecatalog.readmodel.CatalogReadModel;
 import moviecatalog.repository.MovieRepository;
 import moviecatalog.repository.RatingRepository;
+import moviecatalog.search.RatingBitmapIndex;
+import moviecatalog.search.RelatedMoviesIndex;
 
 /**
  * Rest Controller for CRUD operations on Ratings in the catalog.
@@ -44,46 +56,127 @@ import moviecatalog.repository.RatingRepository;
 @Tag(name = "Rating Service", description = "Rating List API")
 public class RatingController {
 	
+	private static final String AFTER_AGE_LIMIT_PARAM = "after-age-limit";
+	
 	@Autowired
 	private RatingRepository repository;
 	
 	@Autowired
 	private MovieRepository movieRepository;
 	
+	@Autowired
+	private RatingCache ratingCache;
+	
+	@Autowired
+	private CatalogVersion catalogVersion;
+	
+	@Autowired
+	private RatingBitmapIndex ratingBitmapIndex;
+	
+	@Autowired
+	private CatalogReadModel readModel;
+	
+	@Autowired
+	private RelatedMoviesIndex relatedMoviesIndex;
+	
+	@Autowired
+	private CatalogStatistics catalogStatistics;
+	
+	@Autowired
+	private SearchResultCache searchResultCache;
+	
 	/**
 	 * GET the list of {@link Rating}s using URI "/ratings"
+	 * Ordered by age limit, then ID, and paged with "after={ID}&after-age-limit={age limit}&limit={N}", see {@link KeysetPagination}.
+	 * The age limit of the cursor may be left out while the cursor rating exists, an unknown cursor without it is a 400 Bad Request.
+	 * Properties selected with "fields=symbol,ageLimit", see {@link SparseFieldsetsAdvice}.
 	 * */
+	@CatalogVersioned
+	@SparseFieldsets
 	@GetMapping
     @ApiOperation(value = "Find All Movie Ratings in the catalog", notes = "Get all Ratings.")
     @ApiResponses(value = {
     		@ApiResponse(code = 200, message = "Successful Operation.", response=Rating.class)  
     	})
-	public Iterable<Rating> findAllRatings() {
-		return repository.findAllByOrderByAgeLimit();
+	public ResponseEntity<List<Rating>> findAllRatings(@RequestParam(name = KeysetPagination.AFTER_PARAM, defaultValue = KeysetPagination.FIRST) int after, @RequestParam(name = AFTER_AGE_LIMIT_PARAM, required = false) Integer afterAgeLimit, @RequestParam(name = KeysetPagination.LIMIT_PARAM, defaultValue = KeysetPagination.DEFAULT_LIMIT) int limit) {
+		Pageable slice = KeysetPagination.firstSlice(limit);
+		List<Rating> ratings = ratingCache.findAllOrderByAgeLimit();
+		int from = 0;
+		if(after > 0) {
+			int ageLimit = afterAgeLimit != null ? afterAgeLimit : ratingCache.findById(after).map(Rating::getAgeLimit)
+					.orElseThrow(() -> new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unknown cursor, " + AFTER_AGE_LIMIT_PARAM + " required."));
+			while(from < ratings.size() && (ratings.get(from).getAgeLimit() < ageLimit
+					|| (ratings.get(from).getAgeLimit() == ageLimit && ratings.get(from).getId() <= after))) {
+				from++;
+			}
+		}
+		int to = Math.min(from + slice.getPageSize(), ratings.size());
+		return KeysetPagination.response(new SliceImpl<>(ratings.subList(from, to), slice, to < ratings.size()), Rating::getId, AFTER_AGE_LIMIT_PARAM, Rating::getAgeLimit);
 	}
 	
 	/**
 	 * GET the {@link Rating} with ID using URI "/ratings/{ID}"
+	 * Properties selected with "fields=symbol,ageLimit", see {@link SparseFieldsetsAdvice}.
 	 * */
+	@SparseFieldsets
 	@GetMapping("/{id}")
     @ApiOperation(value = "Find Movie Rating with ID", notes = "Get the Rating with ID.")
     @ApiResponses(value = {
     		@ApiResponse(code = 200, message = "Successful Operation.", response=Rating.class)  
     	})
-	public Optional<Rating> findRatingById(@PathVariable int id) {
-		return repository.findById(id);
+	public ResponseEntity<Rating> findRatingById(@PathVariable int id) {
+		return EntityTags.response(ratingCache.findById(id));
+	}
+	
+	/**
+	 * GET the {@link Rating}s with IDs using URI "/ratings?ids={ID},{ID}"
+	 * In the order requested, IDs not found skipped, answered from the {@link RatingCache} without a query.
+	 * Properties selected with "fields=symbol,ageLimit", see {@link SparseFieldsetsAdvice}.
+	 * */
+	@CatalogVersioned
+	@SparseFieldsets
+	@GetMapping(params = MultiGet.IDS_PARAM)
+    @ApiOperation(value = "Find Movie Ratings with IDs", notes = "Get the Ratings with IDs (at most " + MultiGet.MAX_IDS + "), in the order requested.")
+    @ApiResponses(value = {
+    		@ApiResponse(code = 200, message = "Successful Operation.", response=Rating.class)  
+    	})
+	public List<Rating> findRatingsByIds(@RequestParam(name = MultiGet.IDS_PARAM) List<Integer> ids) {
+		return MultiGet.findAll(ids, chunk -> {
+			List<Rating> ratings = new ArrayList<>(chunk.size());
+			for(Integer id: chunk) {
+				ratingCache.findById(id).ifPresent(ratings::add);
+			}
+			return ratings;
+		}, Rating::getId);
+	}
+	
+	/**
+	 * POST a JSON array of IDs to get their {@link Rating}s using URI "/ratings/by-ids", for ID lists too long for a URI
+	 * As "/ratings?ids={ID},{ID}".
+	 * Properties selected with "fields=symbol,ageLimit", see {@link SparseFieldsetsAdvice}.
+	 * */
+	@SparseFieldsets
+	@PostMapping(path = "/by-ids")
+    @ApiOperation(value = "Find Movie Ratings with IDs (POST)", notes = "Get the Ratings with the IDs of the body array (at most " + MultiGet.MAX_IDS + "), in the order requested.")
+    @ApiResponses(value = {
+    		@ApiResponse(code = 200, message = "Successful Operation.", response=Rating.class)  
+    	})
+	public List<Rating> findRatingsByIdsPosted(@RequestBody List<Integer> ids) {
+		return findRatingsByIds(ids);
 	}
 	
 	/**
 	 * GET the list of {@link Rating}s by symbol using URI "/ratings/search?symbol={symbol}"
+	 * Properties selected with "fields=symbol,ageLimit", see {@link SparseFieldsetsAdvice}.
 	 * */
+	@SparseFieldsets
 	@GetMapping(path = "/search-symbol")
     @ApiOperation(value = "Find Movie Rating with Symbol", notes = "Get the Rating with the Symbol (PG, 12A, 15, etc.).")
     @ApiResponses(value = {
     		@ApiResponse(code = 200, message = "Successful Operation.", response=Rating.class)  
     	})
-	public Optional<Rating> findRatingBySymbol(@RequestParam String symbol) {
-		return repository.findBySymbol(symbol);
+	public ResponseEntity<Rating> findRatingBySymbol(@RequestParam String symbol) {
+		return EntityTags.response(ratingCache.findBySymbol(symbol));
 	}
 	
 	/**
@@ -100,7 +193,14 @@ public class RatingController {
     		@ApiResponse(code = 200, message = "Successful Operation.", response=Rating.class)  
     	})
 	public Rating saveNewRating(@Valid @RequestBody Rating rating) {
-		return repository.save(rating);
+		Rating saved = repository.save(rating);
+		ratingCache.saved(saved);
+		ratingBitmapIndex.ratingSaved(saved);
+		readModel.ratingSaved(saved);
+		catalogStatistics.ratingSaved(saved);
+		searchResultCache.modified(SearchResultCache.Table.RATINGS);
+		catalogVersion.modified();
+		return saved;
 	}
 	
 	/**
@@ -115,7 +215,7 @@ public class RatingController {
     		@ApiResponse(code = 200, message = "Successful Operation.", response=Rating.class)  
     	})
 	public Rating saveRating(@Valid @RequestBody Rating rating, @PathVariable int id) {
-		return repository.findById(id).map(rat -> {
+		Rating saved = repository.findById(id).map(rat -> {
 			rat.setId(id);
 			rat.setSymbol(rating.getSymbol());
 			rat.setAgeLimit(rating.getAgeLimit());
@@ -124,25 +224,36 @@ public class RatingController {
 			rating.setId(id);
 			return repository.save(rating);
 		});
+		ratingCache.saved(saved);
+		ratingBitmapIndex.ratingSaved(saved);
+		readModel.ratingSaved(saved);
+		catalogStatistics.ratingSaved(saved);
+		searchResultCache.modified(SearchResultCache.Table.RATINGS);
+		catalogVersion.modified();
+		return saved;
 	}
 	
 	/**
 	 * DELETE the {@link Rating} with ID using URI "/ratings/{ID}"
 	 * */
+	@Transactional
 	@DeleteMapping("/{id}")
     @ApiOperation(value = "Delete a Movie Rating", notes = "Delete Rating by ID.")
     @ApiResponses(value = {
     		@ApiResponse(code = 200, message = "Successful Operation.")  
     	})
 	public void deleteRating(@PathVariable int id) {
-		Optional<Rating> rating = repository.findById(id);
-		if(rating.isPresent()) {
-			Iterable<Movie> movies = movieRepository.findAllByRatingId(id);
-			for(Movie movie: movies) {
-				movie.setRating(null);		//remove join
-			}
-			repository.delete(rating.get());
+		movieRepository.clearRating(id);		//remove joins in one statement rather than loading every movie
+		if(repository.deleteByIdInBulk(id) == 0) {
+			return;		//no such rating, so nothing cached changes
 		}
+		ratingCache.deleted(id);		//applied on commit
+		ratingBitmapIndex.ratingDeleted(id);
+		readModel.ratingDeleted(id);
+		relatedMoviesIndex.ratingDeleted(id);
+		catalogStatistics.ratingDeleted(id);
+		searchResultCache.modified(SearchResultCache.Table.RATINGS);
+		catalogVersion.modified();
 	}
 	
 	@ResponseStatus(HttpStatus.BAD_REQUEST)
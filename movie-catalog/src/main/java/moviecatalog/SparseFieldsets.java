@@ -0,0 +1,21 @@
+package moviecatalog;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a GET endpoint accepting "fields={property},{property}" to only serialise the given properties (and the ID) of the
+ * entities or summaries it returns, see {@link SparseFieldsetsAdvice}.
+ *
+ * @author johnathanleif
+ *
+ * */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface SparseFieldsets {
+
+}
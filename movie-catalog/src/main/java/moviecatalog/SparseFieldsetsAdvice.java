@@ -0,0 +1,86 @@
+package moviecatalog;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.json.MappingJacksonValue;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.AbstractMappingJacksonResponseBodyAdvice;
+
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+
+import moviecatalog.model.MovieSummary;
+
+/**
+ * Serialises only the properties named by "fields={property},{property}" (and always the ID) in the responses of
+ * {@link SparseFieldsets} endpoints, with the Jackson filter "fields" of the returned classes. Unknown names are ignored.
+ *
+ * Movie endpoints also pass the fields to their query so columns, joins and queries nobody asked for are skipped,
+ * see {@link #properties(Collection)}; this only drops the properties left unset from the JSON.
+ *
+ * @author johnathanleif
+ *
+ * */
+@ControllerAdvice
+public class SparseFieldsetsAdvice extends AbstractMappingJacksonResponseBodyAdvice {
+
+	public static final String PARAM = "fields";
+
+	private static final String FILTER = "fields";
+	private static final String ID = "id";
+
+	/**
+	 * Movie summary properties by the paths of the full {@link moviecatalog.model.Movie} representation they are taken from.
+	 * */
+	private static final Map<String, String> PATHS = new HashMap<>();
+	static {
+		PATHS.put("rating.symbol", MovieSummary.RATING_SYMBOL);
+		PATHS.put("directors.name", MovieSummary.DIRECTOR_NAMES);
+	}
+
+	/**
+	 * Resolves the values of a "fields" parameter, each a property name or a comma separated list of them, to property names.
+	 * @return the names of the properties to serialise including the ID, null for all of them if no fields are given
+	 * */
+	public static Set<String> properties(Collection<String> fields) {
+		if(fields == null || fields.isEmpty()) {
+			return null;
+		}
+		Set<String> properties = new HashSet<>();
+		properties.add(ID);
+		for(String field: fields) {
+			for(String name: field.split(",")) {
+				properties.add(PATHS.getOrDefault(name.trim(), name.trim()));
+			}
+		}
+		return properties;
+	}
+
+	@Override
+	public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+		return super.supports(returnType, converterType) && returnType.hasMethodAnnotation(SparseFieldsets.class);
+	}
+
+	@Override
+	protected void beforeBodyWriteInternal(MappingJacksonValue bodyContainer, MediaType contentType, MethodParameter returnType,
+			ServerHttpRequest request, ServerHttpResponse response) {
+		String[] fields = ((ServletServerHttpRequest) request).getServletRequest().getParameterValues(PARAM);
+		Set<String> properties = properties(fields == null ? Collections.emptyList() : Arrays.asList(fields));
+		if(properties != null) {
+			bodyContainer.setFilters(new SimpleFilterProvider().addFilter(FILTER, SimpleBeanPropertyFilter.filterOutAllExcept(properties)));
+		}
+	}
+
+}
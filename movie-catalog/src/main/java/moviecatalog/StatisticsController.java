@@ -0,0 +1,81 @@
+package moviecatalog;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import io.swagger.annotations.ApiResponse;
+import io.swagger.annotations.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import moviecatalog.cache.CatalogStatistics;
+import moviecatalog.cache.ReadCoalescer;
+import moviecatalog.model.CatalogStats;
+import moviecatalog.model.CoalescedReadStats;
+
+/**
+ * Rest Controller for the statistics of the catalog, read from the counters of {@link CatalogStatistics}
+ * without counting the database, and of the database reads coalesced by {@link ReadCoalescer}.
+ *
+ * @author johnathanleif
+ *
+ * */
+@RestController
+@RequestMapping("stats")
+@Api(tags = {"Statistics Service"})
+@Tag(name = "Statistics Service", description = "Catalog Statistics API")
+public class StatisticsController {
+
+	private static final int MAX_TOP = 100;
+
+	@Autowired
+	private CatalogStatistics catalogStatistics;
+
+	@Autowired
+	private ReadCoalescer readCoalescer;
+
+	/**
+	 * GET the catalog totals, movies by rating and the "top={N}" directors of the most movies (default 10, at most 100) using URI "/stats"
+	 * */
+	@GetMapping
+    @ApiOperation(value = "Find Catalog Statistics", notes = "Get the number of Movies, Directors and Ratings, Movies by Rating and the Directors of the most Movies.")
+    @ApiResponses(value = {
+    		@ApiResponse(code = 200, message = "Successful Operation.", response=CatalogStats.class)
+    	})
+	public CatalogStats findStats(@RequestParam(defaultValue = "10") int top) {
+		return catalogStatistics.getStats(Math.max(0, Math.min(top, MAX_TOP)));
+	}
+
+	/**
+	 * GET the number of movies of the Director with ID using URI "/stats/directors/{ID}"
+	 * */
+	@GetMapping("/directors/{id}")
+    @ApiOperation(value = "Find Movie Director Statistics", notes = "Get the number of Movies of the Director with ID.")
+    @ApiResponses(value = {
+    		@ApiResponse(code = 200, message = "Successful Operation.", response=CatalogStats.DirectorCount.class)
+    	})
+	public ResponseEntity<CatalogStats.DirectorCount> findDirectorStats(@PathVariable int id) {
+		return ResponseEntity.of(catalogStatistics.getDirectorStats(id));
+	}
+
+	/**
+	 * GET how often each database read was run and how many concurrent callers shared its executions using URI "/stats/reads"
+	 * See {@link ReadCoalescer}.
+	 * */
+	@GetMapping("/reads")
+    @ApiOperation(value = "Find coalesced Read Statistics", notes = "Get the executions of each database read and the callers answered by another caller's execution.")
+    @ApiResponses(value = {
+    		@ApiResponse(code = 200, message = "Successful Operation.", response=CoalescedReadStats.class)
+    	})
+	public List<CoalescedReadStats> findReadStats() {
+		return readCoalescer.getStats();
+	}
+
+}
@@ -0,0 +1,71 @@
+package moviecatalog;
+
+import java.util.Locale;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jackson.Jackson2ObjectMapperBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.format.FormatterRegistry;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+import moviecatalog.search.AutocompleteIndex;
+
+/**
+ * Spring MVC configuration: the {@link CatalogVersionInterceptor}, the CBOR and Smile message converters negotiated next to JSON,
+ * the default filter of {@link SparseFieldsets} and request parameter conversions.
+ *
+ * @author johnathanleif
+ *
+ * */
+@Configuration
+public class WebConfiguration implements WebMvcConfigurer {
+
+	@Autowired
+	private CatalogVersionInterceptor catalogVersionInterceptor;
+
+	@Override
+	public void addInterceptors(InterceptorRegistry registry) {
+		registry.addInterceptor(catalogVersionInterceptor);
+	}
+
+	/**
+	 * Serialises every property of classes with a "fields" {@link com.fasterxml.jackson.annotation.JsonFilter} unless a
+	 * {@link SparseFieldsets} response sets its own filter.
+	 * */
+	@Bean
+	public Jackson2ObjectMapperBuilderCustomizer serializeAllFields() {
+		return builder -> builder.filters(new SimpleFilterProvider().setDefaultFilter(SimpleBeanPropertyFilter.serializeAll()));
+	}
+
+	/**
+	 * Serves and reads "application/cbor" next to JSON, with the same Jackson configuration.
+	 * */
+	@Bean
+	public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+		return new MappingJackson2CborHttpMessageConverter(builder.factory(new CBORFactory()).build());
+	}
+
+	/**
+	 * Serves and reads "application/x-jackson-smile" next to JSON, with the same Jackson configuration.
+	 * */
+	@Bean
+	public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+		return new MappingJackson2SmileHttpMessageConverter(builder.factory(new SmileFactory()).build());
+	}
+
+	@Override
+	public void addFormatters(FormatterRegistry registry) {
+		registry.addConverter(String.class, AutocompleteIndex.Type.class, type -> AutocompleteIndex.Type.valueOf(type.toUpperCase(Locale.ROOT)));		//"type=movie"
+	}
+
+}
@@ -0,0 +1,33 @@
+package moviecatalog.cache;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Defers in-memory changes mirroring database writes until the writing transaction commits.
+ *
+ * @author johnathanleif
+ *
+ * */
+public final class AfterCommit {
+
+	private AfterCommit() {
+	}
+
+	/**
+	 * Runs the action once the current transaction commits (never if it rolls back), or immediately outside a transaction.
+	 * */
+	public static void execute(Runnable action) {
+		if(TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+				@Override
+				public void afterCommit() {
+					action.run();
+				}
+			});
+		} else {
+			action.run();
+		}
+	}
+
+}
@@ -0,0 +1,414 @@
+package moviecatalog.cache;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+
+import javax.annotation.PostConstruct;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import moviecatalog.model.CatalogStats;
+import moviecatalog.model.Director;
+import moviecatalog.model.Movie;
+import moviecatalog.model.Rating;
+import moviecatalog.repository.DirectorRepository;
+import moviecatalog.repository.MovieRepository;
+import moviecatalog.repository.RatingRepository;
+
+/**
+ * In-memory counts of the catalog: totals, movies by {@link Rating} and by {@link Director}, and the directors of the most movies.
+ *
+ * Each write adjusts the counters of the rating and directors it touches once its transaction commits, so reads cost
+ * the same however big the catalog is. Directors are also bucketed by their movie count, a count changing by one moving
+ * a director to the next bucket, so the top directors are read from the fullest buckets down without sorting.
+ *
+ * The counters are recounted with GROUP BY queries at startup, after imports and every moviecatalog.stats.reconcile-interval
+ * (default 10 minutes), correcting any drift. The queries may or may not see a write committing while they run, so writes are
+ * counted from just before their transaction commits and a recount is only kept if no write was committing when it started
+ * and none started committing until it ended. Otherwise it is run again after a growing pause, at most {@value #MAX_RECOUNTS}
+ * times in all, and the current counters are kept if writes never paused. Writes made outside a transaction have already
+ * committed when they are applied, so they must leave the counters the same if the recount saw them (directors and ratings saved).
+ *
+ * @author johnathanleif
+ *
+ * */
+@Component
+public class CatalogStatistics {
+
+	private static final Logger log = LoggerFactory.getLogger(CatalogStatistics.class);
+
+	private static final int MAX_RECOUNTS = 3;
+	private static final long RECOUNT_PAUSE_MILLIS = 50;		//doubled before each further recount
+
+	@Autowired
+	private MovieRepository movieRepository;
+
+	@Autowired
+	private DirectorRepository directorRepository;
+
+	@Autowired
+	private RatingRepository ratingRepository;
+
+	@Autowired
+	private RatingCache ratingCache;
+
+	private Counters counters = new Counters();		//guarded by this
+	private long writes = 0;		//writes that started committing, guarded by this
+	private int committing = 0;		//writes started committing but not yet applied or rolled back, guarded by this
+	private final Object recounting = new Object();
+
+	/**
+	 * Recounts everything from the database, replacing the current counters unless writes were applied during every recount.
+	 * */
+	@PostConstruct
+	@Scheduled(fixedDelayString = "${moviecatalog.stats.reconcile-interval:PT10M}", initialDelayString = "${moviecatalog.stats.reconcile-interval:PT10M}")
+	public void reload() {
+		synchronized(recounting) {
+			long start = System.nanoTime();
+			for(int recount = 1; recount <= MAX_RECOUNTS; recount++) {
+				if(recount > 1 && !pause(recount)) {
+					return;
+				}
+				long started;
+				synchronized(this) {
+					if(committing > 0) {
+						log.info("Catalog statistics recount {} of {} skipped, {} writes committing.", recount, MAX_RECOUNTS, committing);
+						continue;
+					}
+					started = writes;
+				}
+				Counters loaded = load();
+				synchronized(this) {
+					if(writes == started) {
+						int corrected = loaded.differences(counters);
+						if(counters.reconciledAt == null) {
+							log.info("Counted catalog statistics in {}ms.", (System.nanoTime() - start) / 1000000);
+						} else if(corrected > 0) {
+							log.info("Reconciled catalog statistics in {}ms, {} counts corrected.", (System.nanoTime() - start) / 1000000, corrected);
+						}
+						counters = loaded;
+						return;
+					}
+					log.info("Catalog statistics recount {} of {} discarded, {} writes committed during it.", recount, MAX_RECOUNTS, writes - started);
+				}
+			}
+			log.info("Catalog statistics not reconciled, written during each of {} recounts.", MAX_RECOUNTS);
+		}
+	}
+
+	/**
+	 * Waits before the given recount, longer before each.
+	 * @return false if interrupted, the interrupt being kept
+	 * */
+	private static boolean pause(int recount) {
+		try {
+			Thread.sleep(RECOUNT_PAUSE_MILLIS << (recount - 2));
+			return true;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+	/**
+	 * @return the totals, counts by rating and at most top directors of the most movies
+	 * */
+	public CatalogStats getStats(int top) {
+		List<CatalogStats.RatingCount> ratings = new ArrayList<>();
+		List<CatalogStats.DirectorCount> directors;
+		CatalogStats stats = new CatalogStats();
+		synchronized(this) {
+			stats.setMovies(counters.movies);
+			stats.setUnratedMovies(counters.unrated);
+			stats.setDirectors(counters.byDirector.size());
+			stats.setRatings(counters.byRating.size());
+			stats.setReconciledAt(counters.reconciledAt);
+			for(Map.Entry<Integer, Long> rating: counters.byRating.entrySet()) {
+				ratings.add(new CatalogStats.RatingCount(rating.getKey(), null, rating.getValue()));
+			}
+			directors = counters.top(top);
+		}
+		for(CatalogStats.RatingCount rating: ratings) {
+			rating.setSymbol(ratingCache.findById(rating.getRatingId()).map(Rating::getSymbol).orElse(null));
+		}
+		stats.setMoviesByRating(ratings);
+		stats.setTopDirectors(directors);
+		return stats;
+	}
+
+	/**
+	 * @return the number of movies of the {@link Director}, empty if there is no director with the ID
+	 * */
+	public synchronized Optional<CatalogStats.DirectorCount> getDirectorStats(int id) {
+		Long movies = counters.byDirector.get(id);
+		return movies == null ? Optional.empty() : Optional.of(new CatalogStats.DirectorCount(id, movies));
+	}
+
+	/**
+	 * Records a saved {@link Movie}, after the current transaction commits if there is one.
+	 * @param previous what the movie counted for before the write, null for a new movie
+	 * */
+	public void movieSaved(Counted previous, Movie saved) {
+		Counted counted = Counted.of(saved);
+		write(current -> {
+			if(previous != null) {
+				current.count(previous, -1);
+			}
+			current.count(counted, 1);
+		});
+	}
+
+	/**
+	 * Records a deleted {@link Movie}, after the current transaction commits if there is one.
+	 * @param previous what the movie counted for, null if there was no such movie
+	 * */
+	public void movieDeleted(Counted previous) {
+		if(previous != null) {
+			write(current -> current.count(previous, -1));
+		}
+	}
+
+	public void directorSaved(Director director) {
+		int id = director.getId();
+		write(current -> current.directorSaved(id));
+	}
+
+	public void directorsSaved(Iterable<Director> directors) {
+		for(Director director: directors) {
+			directorSaved(director);
+		}
+	}
+
+	/**
+	 * Records a deleted {@link Director}, after the current transaction commits if there is one.
+	 * Its movies are kept, without it.
+	 * */
+	public void directorDeleted(int id) {
+		write(current -> current.directorDeleted(id));
+	}
+
+	public void ratingSaved(Rating rating) {
+		int id = rating.getId();
+		write(current -> current.ratingSaved(id));
+	}
+
+	/**
+	 * Records a deleted {@link Rating}, after the current transaction commits if there is one.
+	 * Its movies are kept, unrated.
+	 * */
+	public void ratingDeleted(int id) {
+		write(current -> current.ratingDeleted(id));
+	}
+
+	/**
+	 * Applies the write once the current transaction commits, counting it from just before the commit so a recount
+	 * running meanwhile is discarded, or immediately outside a transaction.
+	 * */
+	private void write(Consumer<Counters> write) {
+		if(!TransactionSynchronizationManager.isSynchronizationActive()) {
+			synchronized(this) {
+				write.accept(counters);
+				writes++;
+			}
+			return;
+		}
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+
+			private boolean started = false;
+
+			@Override
+			public void beforeCommit(boolean readOnly) {
+				synchronized(CatalogStatistics.this) {
+					started = true;
+					writes++;
+					committing++;
+				}
+			}
+
+			@Override
+			public void afterCompletion(int status) {
+				if(!started) {
+					return;		//rolled back before committing
+				}
+				synchronized(CatalogStatistics.this) {
+					if(status == STATUS_COMMITTED) {
+						write.accept(counters);
+					}
+					committing--;
+				}
+			}
+
+		});
+	}
+
+	private Counters load() {
+		Counters loaded = new Counters();
+		for(Rating rating: ratingRepository.findAll()) {
+			loaded.ratingSaved(rating.getId());
+		}
+		for(Integer id: directorRepository.findAllIds()) {
+			loaded.directorSaved(id);
+		}
+		for(Object[] rated: movieRepository.countAllGroupByRatingId()) {
+			long movies = ((Number) rated[1]).longValue();
+			loaded.movies += movies;
+			if(rated[0] == null) {
+				loaded.unrated += movies;
+			} else {
+				loaded.rate(((Number) rated[0]).intValue(), movies);
+			}
+		}
+		for(Object[] directed: movieRepository.countAllGroupByDirectorId()) {
+			loaded.direct(((Number) directed[0]).intValue(), ((Number) directed[1]).longValue());
+		}
+		loaded.reconciledAt = Instant.now();
+		return loaded;
+	}
+
+	/**
+	 * The rating and directors a {@link Movie} counts for, taken before a write changes it.
+	 * */
+	public static final class Counted {
+
+		private final Integer ratingId;
+		private final int[] directorIds;
+
+		private Counted(Integer ratingId, int[] directorIds) {
+			this.ratingId = ratingId;
+			this.directorIds = directorIds;
+		}
+
+		public static Counted of(Movie movie) {
+			Integer ratingId = movie.getRating() == null ? null : movie.getRating().getId();
+			int[] directorIds = movie.getDirectors() == null ? new int[0]
+					: movie.getDirectors().stream().mapToInt(Director::getId).distinct().toArray();
+			return new Counted(ratingId, directorIds);
+		}
+
+	}
+
+	/**
+	 * Counts by ID, directors bucketed by count, only modified while holding the {@link CatalogStatistics} lock.
+	 * */
+	private static final class Counters {
+
+		private long movies = 0;
+		private long unrated = 0;
+		private final Map<Integer, Long> byRating = new TreeMap<>();
+		private final Map<Integer, Long> byDirector = new HashMap<>();
+		private final Map<Long, TreeSet<Integer>> directorsByCount = new HashMap<>();		//directors of at least one movie
+		private long maxCount = 0;
+		private Instant reconciledAt = null;
+
+		void count(Counted counted, int delta) {
+			movies += delta;
+			if(counted.ratingId == null) {
+				unrated += delta;
+			} else {
+				rate(counted.ratingId, delta);
+			}
+			for(int directorId: counted.directorIds) {
+				direct(directorId, delta);
+			}
+		}
+
+		void rate(int ratingId, long delta) {
+			byRating.merge(ratingId, delta, Long::sum);
+		}
+
+		void direct(int directorId, long delta) {
+			long previous = byDirector.getOrDefault(directorId, 0L);
+			long count = previous + delta;
+			byDirector.put(directorId, count);
+			if(count > 0) {
+				directorsByCount.computeIfAbsent(count, key -> new TreeSet<>()).add(directorId);
+				maxCount = Math.max(maxCount, count);
+			}
+			unbucket(directorId, previous);
+		}
+
+		void ratingSaved(int id) {
+			byRating.putIfAbsent(id, 0L);
+		}
+
+		void ratingDeleted(int id) {
+			Long count = byRating.remove(id);
+			if(count != null) {
+				unrated += count;
+			}
+		}
+
+		void directorSaved(int id) {
+			byDirector.putIfAbsent(id, 0L);
+		}
+
+		void directorDeleted(int id) {
+			Long count = byDirector.remove(id);
+			if(count != null) {
+				unbucket(id, count);
+			}
+		}
+
+		private void unbucket(int directorId, long count) {
+			TreeSet<Integer> bucket = directorsByCount.get(count);
+			if(bucket != null && bucket.remove(directorId) && bucket.isEmpty()) {
+				directorsByCount.remove(count);
+				while(maxCount > 0 && !directorsByCount.containsKey(maxCount)) {		//one step unless the last director of the most movies is deleted
+					maxCount--;
+				}
+			}
+		}
+
+		List<CatalogStats.DirectorCount> top(int limit) {
+			List<CatalogStats.DirectorCount> top = new ArrayList<>(limit);
+			for(long count = maxCount; count > 0 && top.size() < limit; count--) {
+				TreeSet<Integer> bucket = directorsByCount.get(count);
+				if(bucket != null) {
+					for(Integer directorId: bucket) {
+						if(top.size() == limit) {
+							break;
+						}
+						top.add(new CatalogStats.DirectorCount(directorId, count));
+					}
+				}
+			}
+			return top;
+		}
+
+		/**
+		 * @return how many totals and counts differ from the other counters
+		 * */
+		int differences(Counters other) {
+			int differences = (movies == other.movies ? 0 : 1) + (unrated == other.unrated ? 0 : 1);
+			differences += differences(byRating, other.byRating);
+			differences += differences(byDirector, other.byDirector);
+			return differences;
+		}
+
+		private static int differences(Map<Integer, Long> counts, Map<Integer, Long> other) {
+			int differences = 0;
+			for(Map.Entry<Integer, Long> count: counts.entrySet()) {
+				differences += count.getValue().equals(other.get(count.getKey())) ? 0 : 1;
+			}
+			for(Integer id: other.keySet()) {
+				differences += counts.containsKey(id) ? 0 : 1;
+			}
+			return differences;
+		}
+
+	}
+
+}
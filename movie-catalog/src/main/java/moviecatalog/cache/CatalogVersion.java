@@ -0,0 +1,44 @@
+package moviecatalog.cache;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * Catalog-wide modification counter, incremented once for every committed write to movies, directors or ratings.
+ *
+ * List and search responses are tagged with it, so a client repeating a request before anything changed
+ * is answered "304 Not Modified" without querying.
+ * The tag includes the start time of this instance as the counter restarts from zero.
+ *
+ * @author johnathanleif
+ *
+ * */
+@Component
+public class CatalogVersion {
+
+	private final String instance = Long.toString(System.currentTimeMillis(), Character.MAX_RADIX);
+	private final AtomicLong version = new AtomicLong();
+
+	/**
+	 * Records a modification of the catalog, after the current transaction commits if there is one.
+	 * */
+	public void modified() {
+		AfterCommit.execute(version::incrementAndGet);
+	}
+
+	/**
+	 * @return the number of modifications committed since this instance started
+	 * */
+	public long version() {
+		return version.get();
+	}
+
+	/**
+	 * @return the weak entity tag of the current catalog version
+	 * */
+	public String entityTag() {
+		return "W/\"" + instance + "-" + version.get() + "\"";
+	}
+
+}
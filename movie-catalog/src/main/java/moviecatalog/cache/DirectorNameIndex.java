@@ -0,0 +1,276 @@
+package moviecatalog.cache;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import moviecatalog.model.Director;
+import moviecatalog.repository.DirectorRepository;
+
+/**
+ * In-memory index of {@link Director} names answering exact, contains, starts-with and ends-with searches with director IDs,
+ * with the same case-sensitive semantics as the "LIKE" queries of the {@link DirectorRepository} but without scanning the table.
+ *
+ * Names containing a query of 3 or more characters are found by intersecting the postings of the query's trigrams and checking
+ * the candidates' names, shorter queries check every name. Prefixes and suffixes are range scans of names sorted forwards and reversed.
+ *
+ * Writes are applied once their transaction commits, so rolled back changes are never seen.
+ *
+ * @author johnathanleif
+ *
+ * */
+@Component
+public class DirectorNameIndex {
+
+	private static final int GRAM = 3;
+
+	@Autowired
+	private DirectorRepository repository;
+
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	private Index index = new Index();
+	private List<Consumer<Index>> replay = null;		//updates committed during a reload, guarded by the lock
+
+	/**
+	 * Loads every {@link Director}, replacing the current index.
+	 * Names saved or deleted while loading are updated in the loaded index before it replaces the current one.
+	 * */
+	@PostConstruct
+	public synchronized void reload() {
+		lock.writeLock().lock();
+		try {
+			replay = new ArrayList<>();
+		} finally {
+			lock.writeLock().unlock();
+		}
+		Index loaded = null;
+		try {
+			loaded = load();
+		} finally {
+			lock.writeLock().lock();
+			try {
+				if(loaded != null) {
+					for(Consumer<Index> update: replay) {
+						update.accept(loaded);
+					}
+					index = loaded;
+				}
+				replay = null;
+			} finally {
+				lock.writeLock().unlock();
+			}
+		}
+	}
+
+	/**
+	 * @return the IDs of {@link Director}s with the given name, ascending
+	 * */
+	public List<Integer> findIdsByName(String name) {
+		lock.readLock().lock();
+		try {
+			return sorted(index.byName.getOrDefault(name, Collections.emptySet()));
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @return the IDs of {@link Director}s with names containing the query, ascending
+	 * */
+	public List<Integer> findIdsByNameContaining(String query) {
+		lock.readLock().lock();
+		try {
+			if(query.length() < GRAM) {
+				return matching(index.names.keySet(), name -> name.contains(query));
+			}
+			List<Set<Integer>> postings = new ArrayList<>();
+			for(int i = 0; i + GRAM <= query.length(); i++) {
+				Set<Integer> posting = index.trigrams.get(trigram(query, i));
+				if(posting == null) {
+					return Collections.emptyList();
+				}
+				postings.add(posting);
+			}
+			postings.sort((a, b) -> Integer.compare(a.size(), b.size()));
+			List<Integer> ids = new ArrayList<>();
+			for(Integer id: postings.get(0)) {		//candidates from the rarest trigram
+				if(index.names.get(id).contains(query)) {
+					ids.add(id);
+				}
+			}
+			Collections.sort(ids);
+			return ids;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @return the IDs of {@link Director}s with names starting with the query, ascending
+	 * */
+	public List<Integer> findIdsByNameStartingWith(String prefix) {
+		lock.readLock().lock();
+		try {
+			return prefixed(index.byName, prefix);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @return the IDs of {@link Director}s with names ending with the query, ascending
+	 * */
+	public List<Integer> findIdsByNameEndingWith(String suffix) {
+		lock.readLock().lock();
+		try {
+			return prefixed(index.byReversedName, reverse(suffix));
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Records a saved (new or renamed) {@link Director}, after the current transaction commits if there is one.
+	 * */
+	public void saved(Director director) {
+		Integer id = director.getId();
+		String name = director.getName();
+		AfterCommit.execute(() -> update(id, name));
+	}
+
+	/**
+	 * Records saved {@link Director}s, after the current transaction commits if there is one.
+	 * */
+	public void savedAll(Iterable<Director> directors) {
+		for(Director director: directors) {
+			saved(director);
+		}
+	}
+
+	/**
+	 * Records a deleted {@link Director}, after the current transaction commits if there is one.
+	 * */
+	public void deleted(int id) {
+		AfterCommit.execute(() -> update(id, null));
+	}
+
+	private void update(Integer id, String name) {
+		Consumer<Index> update = updated -> {
+			updated.remove(id);
+			updated.add(id, name);
+		};
+		lock.writeLock().lock();
+		try {
+			update.accept(index);
+			if(replay != null) {
+				replay.add(update);
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	private Index load() {
+		Index loaded = new Index();
+		for(Director director: repository.findAll()) {
+			loaded.add(director.getId(), director.getName());
+		}
+		return loaded;
+	}
+
+	private List<Integer> matching(Set<Integer> ids, Predicate<String> predicate) {
+		List<Integer> matched = new ArrayList<>();
+		for(Integer id: ids) {
+			if(predicate.test(index.names.get(id))) {
+				matched.add(id);
+			}
+		}
+		Collections.sort(matched);
+		return matched;
+	}
+
+	private static List<Integer> prefixed(NavigableMap<String, Set<Integer>> byName, String prefix) {
+		List<Integer> ids = new ArrayList<>();
+		for(Map.Entry<String, Set<Integer>> entry: byName.tailMap(prefix, true).entrySet()) {
+			if(!entry.getKey().startsWith(prefix)) {
+				break;
+			}
+			ids.addAll(entry.getValue());
+		}
+		Collections.sort(ids);
+		return ids;
+	}
+
+	private static List<Integer> sorted(Set<Integer> ids) {
+		List<Integer> sorted = new ArrayList<>(ids);
+		Collections.sort(sorted);
+		return sorted;
+	}
+
+	private static long trigram(String name, int from) {
+		return ((long) name.charAt(from) << 32) | ((long) name.charAt(from + 1) << 16) | name.charAt(from + 2);
+	}
+
+	private static String reverse(String name) {
+		return new StringBuilder(name).reverse().toString();
+	}
+
+	/**
+	 * Names by ID and the three lookups over them, only modified under the write lock.
+	 * */
+	private static final class Index {
+
+		private final Map<Integer, String> names = new HashMap<>();
+		private final Map<Long, Set<Integer>> trigrams = new HashMap<>();
+		private final NavigableMap<String, Set<Integer>> byName = new TreeMap<>();
+		private final NavigableMap<String, Set<Integer>> byReversedName = new TreeMap<>();
+
+		void add(Integer id, String name) {
+			if(name == null) {		//never matched by LIKE
+				return;
+			}
+			names.put(id, name);
+			for(int i = 0; i + GRAM <= name.length(); i++) {
+				trigrams.computeIfAbsent(trigram(name, i), gram -> new HashSet<>()).add(id);
+			}
+			byName.computeIfAbsent(name, key -> new HashSet<>()).add(id);
+			byReversedName.computeIfAbsent(reverse(name), key -> new HashSet<>()).add(id);
+		}
+
+		void remove(Integer id) {
+			String name = names.remove(id);
+			if(name == null) {
+				return;
+			}
+			for(int i = 0; i + GRAM <= name.length(); i++) {
+				removeFrom(trigrams, trigram(name, i), id);
+			}
+			removeFrom(byName, name, id);
+			removeFrom(byReversedName, reverse(name), id);
+		}
+
+		private static <K> void removeFrom(Map<K, Set<Integer>> postings, K key, Integer id) {
+			Set<Integer> posting = postings.get(key);
+			if(posting != null && posting.remove(id) && posting.isEmpty()) {
+				postings.remove(key);
+			}
+		}
+
+	}
+
+}
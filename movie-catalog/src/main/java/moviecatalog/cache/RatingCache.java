@@ -0,0 +1,145 @@
+package moviecatalog.cache;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import moviecatalog.model.Rating;
+import moviecatalog.repository.RatingRepository;
+
+/**
+ * Read-through in-memory copy of the {@link Rating} table, keyed by ID and by symbol.
+ *
+ * Readers get a consistent immutable snapshot without locking. Writes replace the snapshot with an updated copy (copy-on-write)
+ * once their transaction commits, so rolled back changes are never seen.
+ * Returned ratings are copies, callers may modify or attach them freely.
+ *
+ * @author johnathanleif
+ *
+ * */
+@Component
+public class RatingCache {
+
+	private static final Comparator<Rating> BY_AGE_LIMIT = Comparator.comparing(Rating::getAgeLimit).thenComparing(Rating::getId);
+
+	@Autowired
+	private RatingRepository repository;
+
+	private final AtomicReference<Snapshot> snapshot = new AtomicReference<>(new Snapshot(Collections.emptyList()));
+
+	/**
+	 * Loads every {@link Rating}, replacing the current snapshot.
+	 * Loads again if a write was applied while loading, as the loaded ratings may not include it.
+	 * */
+	@PostConstruct
+	public void reload() {
+		Snapshot current;
+		Snapshot loaded;
+		do {
+			current = snapshot.get();
+			List<Rating> ratings = new ArrayList<>();
+			repository.findAll().forEach(ratings::add);
+			loaded = new Snapshot(ratings);
+		} while(!snapshot.compareAndSet(current, loaded));
+	}
+
+	/**
+	 * @return a copy of the {@link Rating} with the given ID
+	 * */
+	public Optional<Rating> findById(Integer id) {
+		return Optional.ofNullable(snapshot.get().byId.get(id)).map(RatingCache::copy);
+	}
+
+	/**
+	 * @return a copy of the {@link Rating} with the given symbol, the lowest ID if not unique
+	 * */
+	public Optional<Rating> findBySymbol(String symbol) {
+		return Optional.ofNullable(snapshot.get().bySymbol.get(symbol)).map(RatingCache::copy);
+	}
+
+	/**
+	 * @return copies of all {@link Rating}s ordered by age limit, then ID
+	 * */
+	public List<Rating> findAllOrderByAgeLimit() {
+		List<Rating> ratings = new ArrayList<>();
+		for(Rating rating: snapshot.get().ordered) {
+			ratings.add(copy(rating));
+		}
+		return ratings;
+	}
+
+	/**
+	 * Records a saved {@link Rating}, after the current transaction commits if there is one.
+	 * It is copied on commit, once flushed with its modification time.
+	 * */
+	public void saved(Rating rating) {
+		afterCommit(current -> current.with(copy(rating)));
+	}
+
+	/**
+	 * Records a deleted {@link Rating}, after the current transaction commits if there is one.
+	 * */
+	public void deleted(int id) {
+		afterCommit(current -> current.without(id));
+	}
+
+	private void afterCommit(UnaryOperator<Snapshot> change) {
+		AfterCommit.execute(() -> snapshot.updateAndGet(change));
+	}
+
+	private static Rating copy(Rating rating) {
+		return new Rating(rating.getId(), rating.getSymbol(), rating.getAgeLimit(), rating.getUpdatedAt());
+	}
+
+	private static final class Snapshot {
+
+		private final Map<Integer, Rating> byId;
+		private final Map<String, Rating> bySymbol;
+		private final List<Rating> ordered;
+
+		Snapshot(List<Rating> ratings) {
+			Map<Integer, Rating> byId = new HashMap<>();
+			Map<String, Rating> bySymbol = new HashMap<>();
+			List<Rating> ordered = new ArrayList<>(ratings);
+			ordered.sort(BY_AGE_LIMIT);
+			for(Rating rating: ordered) {
+				byId.put(rating.getId(), rating);
+			}
+			ordered.stream().sorted(Comparator.comparing(Rating::getId))
+				.forEach(rating -> bySymbol.putIfAbsent(rating.getSymbol(), rating));
+			this.byId = Collections.unmodifiableMap(byId);
+			this.bySymbol = Collections.unmodifiableMap(bySymbol);
+			this.ordered = Collections.unmodifiableList(ordered);
+		}
+
+		Snapshot with(Rating rating) {
+			List<Rating> ratings = new ArrayList<>(byId.size() + 1);
+			for(Rating current: ordered) {
+				if(!current.getId().equals(rating.getId())) {
+					ratings.add(current);
+				}
+			}
+			ratings.add(rating);
+			return new Snapshot(ratings);
+		}
+
+		Snapshot without(int id) {
+			List<Rating> ratings = new ArrayList<>(ordered);
+			ratings.removeIf(rating -> rating.getId() == id);
+			return new Snapshot(ratings);
+		}
+
+	}
+
+}
@@ -0,0 +1,113 @@
+package moviecatalog.cache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import moviecatalog.model.CoalescedReadStats;
+
+/**
+ * Coalesces concurrent identical database reads: the first caller of a read runs it, callers of the same read with the same
+ * arguments arriving before it finishes wait for and share its result (or exception) rather than querying again.
+ *
+ * Reads are keyed by the {@link CatalogVersion} too, so a caller never joins a read started before a write it has seen committed.
+ * Results are shared between threads, so they must be fully loaded and must not be modified by callers. Entities must be
+ * detached by the read, else they stay managed by the persistence context of the caller that read them.
+ * Reads should be called outside transactions, so waiting callers hold no database connection.
+ *
+ * @author johnathanleif
+ *
+ * */
+@Component
+public class ReadCoalescer {
+
+	@Autowired
+	private CatalogVersion catalogVersion;
+
+	private final ConcurrentMap<List<Object>, Flight> flights = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, Counters> counters = new ConcurrentHashMap<>();
+
+	/**
+	 * @param name the name of the read, counted separately
+	 * @param arguments what the read depends on besides the catalog
+	 * @return the result of the read, run by this caller or shared with a concurrent caller
+	 * */
+	@SuppressWarnings("unchecked")
+	public <T> T read(String name, List<?> arguments, Supplier<T> read) {
+		List<Object> key = Arrays.asList(name, arguments, catalogVersion.version());
+		Flight started = new Flight();
+		Flight flight = flights.compute(key, (k, current) -> {
+			if(current == null) {
+				return started;
+			}
+			current.followers++;
+			return current;
+		});
+		Counters counted = counters.computeIfAbsent(name, k -> new Counters());
+		if(flight != started) {
+			counted.callersSaved.incrementAndGet();
+			try {
+				return (T) flight.result.join();
+			} catch(CompletionException e) {
+				throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+			}
+		}
+		try {
+			T result = read.get();
+			flight.result.complete(result);
+			return result;
+		} catch(RuntimeException | Error e) {
+			flight.result.completeExceptionally(e);
+			throw e;
+		} finally {
+			flights.remove(key, flight);		//no caller can join once removed
+			counted.executions.incrementAndGet();
+			if(flight.followers > 0) {
+				counted.sharedExecutions.incrementAndGet();
+				counted.maxCallersSaved.accumulate(flight.followers);
+			}
+		}
+	}
+
+	/**
+	 * @return the counts of every read run so far, by name
+	 * */
+	public List<CoalescedReadStats> getStats() {
+		List<CoalescedReadStats> stats = new ArrayList<>();
+		for(Map.Entry<String, Counters> read: counters.entrySet()) {
+			Counters counted = read.getValue();
+			stats.add(new CoalescedReadStats(read.getKey(), counted.executions.get(), counted.sharedExecutions.get(),
+					counted.callersSaved.get(), counted.maxCallersSaved.get()));
+		}
+		stats.sort((a, b) -> a.getName().compareTo(b.getName()));
+		return stats;
+	}
+
+	private static final class Flight {
+
+		private final CompletableFuture<Object> result = new CompletableFuture<>();
+		private int followers = 0;		//only changed in the map's compute, read once removed from it
+
+	}
+
+	private static final class Counters {
+
+		private final AtomicLong executions = new AtomicLong();
+		private final AtomicLong sharedExecutions = new AtomicLong();
+		private final AtomicLong callersSaved = new AtomicLong();
+		private final LongAccumulator maxCallersSaved = new LongAccumulator(Math::max, 0);
+
+	}
+
+}
@@ -0,0 +1,110 @@
+package moviecatalog.cache;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Least recently used cache of search results, the finished results of a search keyed by its name, normalized arguments
+ * and the properties returned. A hit reads nothing from the database, so results must be immutable once cached.
+ *
+ * Every table has a version counter, incremented once a write to it commits. A result is stored with the sum of the versions
+ * of the tables its search and its properties read, taken before searching, and is only returned while that sum is unchanged,
+ * so a result computed before or during a write is never served after the write returned.
+ *
+ * At most moviecatalog.search-cache.max-entries (default 4096) results are kept, 0 disables caching.
+ *
+ * @author johnathanleif
+ *
+ * */
+@Component
+public class SearchResultCache {
+
+	public enum Table {
+		MOVIES, DIRECTORS, RATINGS
+	}
+
+	private final int maxEntries;
+	private final AtomicLongArray versions = new AtomicLongArray(Table.values().length);
+	private final Map<List<Object>, Result> results;		//guarded by this
+
+	public SearchResultCache(@Value("${moviecatalog.search-cache.max-entries:4096}") int maxEntries) {
+		this.maxEntries = maxEntries;
+		this.results = new LinkedHashMap<List<Object>, Result>(16, 0.75f, true) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<List<Object>, Result> eldest) {
+				return size() > SearchResultCache.this.maxEntries;
+			}
+
+		};
+	}
+
+	/**
+	 * @param tables the tables the search and the returned properties read
+	 * @param key the name of the search, its normalized arguments and the properties returned
+	 * @param search searches on a miss
+	 * @return the cached results, unmodifiable, if none of the tables were modified since they were found, else the results searched
+	 * */
+	@SuppressWarnings("unchecked")
+	public <T> List<T> find(Set<Table> tables, List<Object> key, Supplier<List<T>> search) {
+		if(maxEntries <= 0) {
+			return search.get();
+		}
+		long version = version(tables);
+		Result cached;
+		synchronized(this) {
+			cached = results.get(key);
+		}
+		if(cached != null && cached.version == version) {
+			return (List<T>) cached.found;		//stored under the same key, so by the same search
+		}
+		List<T> found = Collections.unmodifiableList(new ArrayList<>(search.get()));
+		synchronized(this) {
+			results.put(key, new Result(version, found));		//stale if a table was modified while searching, replaced by the next search
+		}
+		return found;
+	}
+
+	/**
+	 * Records a modification of the tables, after the current transaction commits if there is one.
+	 * */
+	public void modified(Table... tables) {
+		AfterCommit.execute(() -> {
+			for(Table table: tables) {
+				versions.incrementAndGet(table.ordinal());
+			}
+		});
+	}
+
+	private long version(Set<Table> tables) {
+		long version = 0;
+		for(Table table: tables) {
+			version += versions.get(table.ordinal());		//versions only increase, so any modification changes the sum
+		}
+		return version;
+	}
+
+	private static final class Result {
+
+		private final long version;
+		private final List<?> found;
+
+		private Result(long version, List<?> found) {
+			this.version = version;
+			this.found = found;
+		}
+
+	}
+
+}
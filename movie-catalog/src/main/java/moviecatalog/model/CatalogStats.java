@@ -0,0 +1,53 @@
+package moviecatalog.model;
+
+import java.time.Instant;
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Totals of the catalog, movie counts by {@link Rating} and the {@link Director}s of the most movies.
+ *
+ * @author johnathanleif
+ *
+ * */
+@Data @NoArgsConstructor @AllArgsConstructor
+public class CatalogStats {
+
+	private long movies;
+	private long directors;
+	private long ratings;
+	private long unratedMovies;
+	/**
+	 * Every rating, ordered by ID.
+	 * */
+	private List<RatingCount> moviesByRating;
+	/**
+	 * Most movies first, ties by ID.
+	 * */
+	private List<DirectorCount> topDirectors;
+	/**
+	 * When the counts were last recounted from the database, kept up to date by every write since.
+	 * */
+	private Instant reconciledAt;
+
+	@Data @NoArgsConstructor @AllArgsConstructor
+	public static class RatingCount {
+
+		private int ratingId;
+		private String symbol;
+		private long movies;
+
+	}
+
+	@Data @NoArgsConstructor @AllArgsConstructor
+	public static class DirectorCount {
+
+		private int directorId;
+		private long movies;
+
+	}
+
+}
@@ -0,0 +1,34 @@
+package moviecatalog.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Counts of a database read coalesced by concurrent callers.
+ *
+ * @author johnathanleif
+ *
+ * */
+@Data @NoArgsConstructor @AllArgsConstructor
+public class CoalescedReadStats {
+
+	private String name;
+	/**
+	 * Times the read was run against the database.
+	 * */
+	private long executions;
+	/**
+	 * Executions whose result was shared with at least one other caller.
+	 * */
+	private long sharedExecutions;
+	/**
+	 * Callers answered by another caller's execution, each one a query saved.
+	 * */
+	private long callersSaved;
+	/**
+	 * Most callers answered by a single execution besides its own.
+	 * */
+	private long maxCallersSaved;
+
+}
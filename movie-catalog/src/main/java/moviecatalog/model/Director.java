@@ -1,13 +1,25 @@
 package moviecatalog.model;
 
+import java.time.Instant;
+
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.SequenceGenerator;
 import javax.persistence.Table;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.GenerationTime;
+import org.hibernate.annotations.GeneratorType;
+
+import com.fasterxml.jackson.annotation.JsonFilter;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
 import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
 
 /**
@@ -17,13 +29,24 @@ import lombok.NoArgsConstructor;
  * 
  * */
 @Entity
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @Table(name = "director")
+@JsonFilter("fields")		//properties pruned by "?fields=" on reads
 @Data @NoArgsConstructor @AllArgsConstructor
-public class Director {
+public class Director implements Versioned {
 
 	@Id 
-	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "director_seq")
+	@SequenceGenerator(name = "director_seq", sequenceName = "director_seq", allocationSize = 50)
 	private Integer id = null;
 	private String name = null;
+	@GeneratorType(type = UpdatedAtGenerator.class, when = GenerationTime.ALWAYS)		//set on every insert and update, never from request bodies
+	@JsonProperty(access = JsonProperty.Access.READ_ONLY)
+	@EqualsAndHashCode.Exclude
+	private Instant updatedAt = null;
+	
+	public Director(Integer id, String name) {
+		this(id, name, null);
+	}
 	
 }
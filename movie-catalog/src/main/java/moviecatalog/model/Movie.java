@@ -1,5 +1,6 @@
 package moviecatalog.model;
 
+import java.time.Instant;
 import java.util.Set;
 
 import javax.persistence.CascadeType;
@@ -11,6 +12,15 @@ import javax.persistence.JoinColumn;
 import javax.persistence.JoinTable;
 import javax.persistence.ManyToMany;
 import javax.persistence.ManyToOne;
+import javax.persistence.SequenceGenerator;
+
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.GenerationTime;
+import org.hibernate.annotations.GeneratorType;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
 
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -24,10 +34,12 @@ import lombok.NoArgsConstructor;
  * 
  * */
 @Entity
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)		//found by ID without a query, lists are still selected by query
 @Data @NoArgsConstructor @AllArgsConstructor
-public class Movie {
+public class Movie implements Versioned {
 
-	@Id @GeneratedValue(strategy = GenerationType.IDENTITY)
+	@Id @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "movie_seq")
+	@SequenceGenerator(name = "movie_seq", sequenceName = "movie_seq", allocationSize = 50)
 	private Integer id;
 	private String title;
 	
@@ -36,6 +48,8 @@ public class Movie {
 	private Rating rating;
 	
 	@ManyToMany(cascade = CascadeType.MERGE)
+	@BatchSize(size = 100)		//initialise directors of up to 100 loaded movies per query when serialising lists
+	@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)		//director IDs of cached and queried movies
 	@JoinTable(
 		name = "movie_director",
 		joinColumns = {@JoinColumn(name = "movie_id")},
@@ -43,4 +57,13 @@ public class Movie {
 	)
 	@EqualsAndHashCode.Exclude Set<Director> directors;
 	
+	@GeneratorType(type = UpdatedAtGenerator.class, when = GenerationTime.ALWAYS)		//set on every insert and update, never from request bodies
+	@JsonProperty(access = JsonProperty.Access.READ_ONLY)
+	@EqualsAndHashCode.Exclude
+	private Instant updatedAt;
+	
+	public Movie(Integer id, String title, Rating rating, Set<Director> directors) {
+		this(id, title, rating, directors, null);
+	}
+	
 }
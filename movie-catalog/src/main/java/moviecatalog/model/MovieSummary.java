@@ -0,0 +1,48 @@
+package moviecatalog.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import com.fasterxml.jackson.annotation.JsonFilter;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Read-only view of a {@link Movie} for list and search responses, selected column by column
+ * so no entity is loaded, snapshotted for dirty checking or lazily initialised while serialising.
+ * Properties left out of a sparse fieldset are null and filtered from the JSON.
+ *
+ * @author johnathanleif
+ *
+ * */
+@JsonFilter("fields")		//properties pruned by "?fields=" on list and search responses
+@Data @NoArgsConstructor @AllArgsConstructor
+public class MovieSummary {
+
+	public static final String TITLE = "title";
+	public static final String RATING_SYMBOL = "ratingSymbol";
+	public static final String DIRECTOR_NAMES = "directorNames";
+
+	private Integer id;
+	private String title;
+	private String ratingSymbol;
+	/**
+	 * Names of the directors, alphabetical, filled in by a second query for the whole list.
+	 * */
+	private List<String> directorNames = new ArrayList<>();
+
+	public MovieSummary(Integer id, String title, String ratingSymbol) {
+		this(id, title, ratingSymbol, new ArrayList<>());
+	}
+
+	/**
+	 * @param properties requested JSON properties, null for all
+	 * */
+	public static boolean selected(Set<String> properties, String property) {
+		return properties == null || properties.contains(property);
+	}
+
+}
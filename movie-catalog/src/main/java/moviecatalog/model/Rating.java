@@ -1,16 +1,28 @@
 package moviecatalog.model;
 
+import java.time.Instant;
+
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.SequenceGenerator;
 import javax.persistence.Table;
 import javax.persistence.UniqueConstraint;
 import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.NotNull;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.GenerationTime;
+import org.hibernate.annotations.GeneratorType;
+
+import com.fasterxml.jackson.annotation.JsonFilter;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
 import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
 
 /**
@@ -20,15 +32,26 @@ import lombok.NoArgsConstructor;
  * 
  * */
 @Entity
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @Table(uniqueConstraints= @UniqueConstraint(columnNames={"symbol"}))
+@JsonFilter("fields")		//properties pruned by "?fields=" on reads
 @Data @NoArgsConstructor @AllArgsConstructor
-public class Rating {
+public class Rating implements Versioned {
 
-	@Id @GeneratedValue(strategy = GenerationType.IDENTITY)
+	@Id @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "rating_seq")
+	@SequenceGenerator(name = "rating_seq", sequenceName = "rating_seq", allocationSize = 50)
 	private Integer id = null;
 	@NotBlank(message = "Symbol required.") 
 	private String symbol = null;
     @NotNull(message = "Age Limit required for Rating comparisons.")
     private Integer ageLimit = null;
+	@GeneratorType(type = UpdatedAtGenerator.class, when = GenerationTime.ALWAYS)		//set on every insert and update, never from request bodies
+	@JsonProperty(access = JsonProperty.Access.READ_ONLY)
+	@EqualsAndHashCode.Exclude
+	private Instant updatedAt = null;
+	
+	public Rating(Integer id, String symbol, Integer ageLimit) {
+		this(id, symbol, ageLimit, null);
+	}
 	
 }
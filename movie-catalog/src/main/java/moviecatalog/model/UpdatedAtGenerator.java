@@ -0,0 +1,24 @@
+package moviecatalog.model;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+import org.hibernate.Session;
+import org.hibernate.tuple.ValueGenerator;
+
+/**
+ * Modification times of inserted and updated entities, in microseconds like the "updated_at" columns.
+ * Entities put in the second-level cache when written then carry the same time as when read back from the database,
+ * so their entity tags do not depend on where they were read from.
+ *
+ * @author johnathanleif
+ *
+ * */
+public class UpdatedAtGenerator implements ValueGenerator<Instant> {
+
+	@Override
+	public Instant generateValue(Session session, Object owner) {
+		return Instant.now().truncatedTo(ChronoUnit.MICROS);
+	}
+
+}
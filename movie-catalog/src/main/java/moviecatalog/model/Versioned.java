@@ -0,0 +1,20 @@
+package moviecatalog.model;
+
+import java.time.Instant;
+
+/**
+ * Entity whose representation changes only when its modification time does, used to tag HTTP responses.
+ * 
+ * @author johnathanleif
+ * 
+ * */
+public interface Versioned {
+	
+	Integer getId();
+	
+	/**
+	 * @return the time of the last insert or update, set by Hibernate on flush
+	 * */
+	Instant getUpdatedAt();
+	
+}
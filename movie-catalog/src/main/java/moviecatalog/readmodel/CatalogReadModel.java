@@ -0,0 +1,742 @@
+package moviecatalog.readmodel;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.UnaryOperator;
+
+import javax.annotation.PostConstruct;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.stereotype.Component;
+
+import moviecatalog.cache.AfterCommit;
+import moviecatalog.model.Director;
+import moviecatalog.model.Movie;
+import moviecatalog.model.MovieSummary;
+import moviecatalog.model.Rating;
+import moviecatalog.repository.DirectorRepository;
+import moviecatalog.repository.MovieRepository;
+import moviecatalog.repository.RatingRepository;
+
+/**
+ * Optional in-memory copy of the whole catalog held as primitive columns, answering movie summary and director reads
+ * without the ORM, the database or per-row objects. Enabled with moviecatalog.read-model.enabled=true, off by default.
+ *
+ * Movies are parallel arrays ordered by ID: the IDs, a code into a dictionary of distinct titles and a rating ordinal in one byte.
+ * New titles are appended to the dictionary, which a reload rebuilds from the titles still in use.
+ * Directors are parallel arrays of ID, name and update time ordered by ID. The movie to director joins are held both ways
+ * as compressed sparse rows ({@link Csr}), the director IDs of each movie and the movie IDs of each director.
+ *
+ * Readers take the current {@link Columns} snapshot and never lock. Committed writes are applied one at a time to a copy
+ * sharing every column they do not change, which then replaces the snapshot. A write during a reload is replayed on the
+ * reloaded snapshot. More ratings than a byte can tell apart turn the model off until a reload, reads then going to the database.
+ *
+ * @author johnathanleif
+ *
+ * */
+@Component
+public class CatalogReadModel {
+
+	private static final Logger log = LoggerFactory.getLogger(CatalogReadModel.class);
+
+	/**
+	 * Rating ordinals are unsigned bytes, 0 meaning no rating.
+	 * */
+	private static final int MAX_RATINGS = 255;
+
+	@Autowired
+	private MovieRepository movieRepository;
+
+	@Autowired
+	private DirectorRepository directorRepository;
+
+	@Autowired
+	private RatingRepository ratingRepository;
+
+	@Value("${moviecatalog.read-model.enabled:false}")
+	private boolean enabled;
+
+	private volatile Columns columns = null;		//null while disabled
+	private List<UnaryOperator<Columns>> replay = null;		//writes committed during a reload, guarded by this
+
+	/**
+	 * Loads the whole catalog into columns, replacing the current ones, if the read model is enabled.
+	 * */
+	@PostConstruct
+	public void reload() {
+		if(!enabled) {
+			return;
+		}
+		long start = System.nanoTime();
+		synchronized(this) {
+			replay = new ArrayList<>();
+		}
+		Columns loaded = null;
+		try {
+			loaded = load();
+		} finally {
+			synchronized(this) {
+				if(loaded != null) {
+					try {
+						for(UnaryOperator<Columns> write: replay) {
+							loaded = write.apply(loaded);
+						}
+						columns = loaded;
+					} catch(IllegalStateException e) {
+						disable(e);
+					}
+				}
+				replay = null;
+			}
+		}
+		if(columns != null) {
+			log.info("Loaded read model of {} movies, {} directors and {} joins in {}ms.", columns.movieIds.length,
+					columns.directorIds.length, columns.movieDirectors.values.length, (System.nanoTime() - start) / 1000000);
+		}
+	}
+
+	/**
+	 * @return whether reads can be answered from the read model
+	 * */
+	public boolean isEnabled() {
+		return columns != null;
+	}
+
+	/**
+	 * @param directorFilters for each, a director of the movie must have one of its IDs
+	 * @param ratingIds the movie's rating must have one of these IDs, null for any
+	 * @param titleWords lower case words which must all occur in the title, ignoring case
+	 * @param properties JSON properties of the {@link MovieSummary}s, null for all
+	 * @return at most limit summaries of the matching movies with ID greater than the cursor, ordered by ID
+	 * */
+	public List<MovieSummary> findMovies(List<List<Integer>> directorFilters, Collection<Integer> ratingIds, List<String> titleWords,
+			int after, int limit, Set<String> properties) {
+		Columns current = columns;
+		boolean[] ratings = null;
+		if(ratingIds != null) {
+			ratings = new boolean[MAX_RATINGS + 1];
+			for(Integer ratingId: ratingIds) {
+				int ordinal = current.ratingOrdinal(ratingId);
+				if(ordinal > 0) {
+					ratings[ordinal] = true;
+				}
+			}
+		}
+		List<int[]> filters = new ArrayList<>();
+		for(List<Integer> directorIds: directorFilters) {
+			filters.add(sortedIds(directorIds));
+		}
+		List<MovieSummary> movies = new ArrayList<>();
+		if(filters.isEmpty()) {
+			for(int at = upperBound(current.movieIds, after); at < current.movieIds.length && movies.size() < limit; at++) {
+				if(current.matches(at, filters, ratings, titleWords)) {
+					movies.add(current.summary(at, properties));
+				}
+			}
+		} else {
+			int[] candidates = current.moviesOf(filters.get(0));
+			for(int i = upperBound(candidates, after); i < candidates.length && movies.size() < limit; i++) {
+				int at = Arrays.binarySearch(current.movieIds, candidates[i]);
+				if(at >= 0 && current.matches(at, filters.subList(1, filters.size()), ratings, titleWords)) {
+					movies.add(current.summary(at, properties));
+				}
+			}
+		}
+		return movies;
+	}
+
+	/**
+	 * @return summaries of the movies with the given IDs in the order given, IDs not found skipped
+	 * */
+	public List<MovieSummary> findMoviesByIds(List<Integer> ids, Set<String> properties) {
+		Columns current = columns;
+		List<MovieSummary> movies = new ArrayList<>(ids.size());
+		for(Integer id: ids) {
+			int at = id == null ? -1 : Arrays.binarySearch(current.movieIds, id);
+			if(at >= 0) {
+				movies.add(current.summary(at, properties));
+			}
+		}
+		return movies;
+	}
+
+	/**
+	 * @return the IDs of the movies of any of the directors
+	 * */
+	public BitSet findMovieIdsByDirectorIds(Collection<Integer> directorIds) {
+		Columns current = columns;
+		BitSet movies = new BitSet();
+		for(Integer directorId: directorIds) {
+			int at = directorId == null ? -1 : Arrays.binarySearch(current.directorIds, directorId);
+			if(at >= 0) {
+				for(int edge = current.directorMovies.offsets[at]; edge < current.directorMovies.offsets[at + 1]; edge++) {
+					movies.set(current.directorMovies.values[edge]);
+				}
+			}
+		}
+		return movies;
+	}
+
+	/**
+	 * @return the slice of directors with ID greater than the cursor, ordered by ID
+	 * */
+	public Slice<Director> findDirectors(int after, Pageable slice) {
+		Columns current = columns;
+		int from = upperBound(current.directorIds, after);
+		int to = (int) Math.min(current.directorIds.length, (long) from + slice.getPageSize());
+		List<Director> directors = new ArrayList<>(to - from);
+		for(int at = from; at < to; at++) {
+			directors.add(current.director(at));
+		}
+		return new SliceImpl<>(directors, slice, to < current.directorIds.length);
+	}
+
+	/**
+	 * @return the directors with the given IDs, ordered by ID, IDs not found skipped
+	 * */
+	public List<Director> findDirectorsByIds(Collection<Integer> ids) {
+		Columns current = columns;
+		int[] sorted = sortedIds(ids);
+		List<Director> directors = new ArrayList<>(sorted.length);
+		for(int id: sorted) {
+			int at = Arrays.binarySearch(current.directorIds, id);
+			if(at >= 0) {
+				directors.add(current.director(at));
+			}
+		}
+		return directors;
+	}
+
+	public Optional<Director> findDirectorById(int id) {
+		Columns current = columns;
+		int at = Arrays.binarySearch(current.directorIds, id);
+		return at >= 0 ? Optional.of(current.director(at)) : Optional.empty();
+	}
+
+	/**
+	 * Records a saved {@link Movie}, after the current transaction commits if there is one.
+	 * */
+	public void saved(Movie movie) {
+		int id = movie.getId();
+		String title = movie.getTitle();
+		Integer ratingId = movie.getRating() == null ? null : movie.getRating().getId();
+		List<Integer> directorIds = new ArrayList<>();
+		if(movie.getDirectors() != null) {
+			for(Director director: movie.getDirectors()) {
+				directorIds.add(director.getId());
+			}
+		}
+		int[] directors = sortedIds(directorIds);
+		write(current -> current.withMovie(id, title, ratingId, directors));
+	}
+
+	/**
+	 * Records a deleted {@link Movie}, after the current transaction commits if there is one.
+	 * */
+	public void deleted(int id) {
+		write(current -> current.withoutMovie(id));
+	}
+
+	/**
+	 * Records a saved {@link Director}, after the current transaction commits if there is one.
+	 * Its update time is read on commit, once the database has set it.
+	 * */
+	public void directorSaved(Director director) {
+		write(current -> current.withDirector(director.getId(), director.getName(), director.getUpdatedAt()));
+	}
+
+	public void directorsSaved(Iterable<Director> directors) {
+		for(Director director: directors) {
+			directorSaved(director);
+		}
+	}
+
+	/**
+	 * Records a deleted {@link Director}, removed from its movies too, after the current transaction commits if there is one.
+	 * */
+	public void directorDeleted(int id) {
+		write(current -> current.withoutDirector(id));
+	}
+
+	/**
+	 * Records a saved {@link Rating}, after the current transaction commits if there is one.
+	 * */
+	public void ratingSaved(Rating rating) {
+		int id = rating.getId();
+		String symbol = rating.getSymbol();
+		write(current -> current.withRating(id, symbol));
+	}
+
+	/**
+	 * Records a deleted {@link Rating}, removed from its movies too, after the current transaction commits if there is one.
+	 * */
+	public void ratingDeleted(int id) {
+		write(current -> current.withoutRating(id));
+	}
+
+	private void write(UnaryOperator<Columns> write) {
+		if(!enabled) {
+			return;
+		}
+		AfterCommit.execute(() -> apply(write));
+	}
+
+	private synchronized void apply(UnaryOperator<Columns> write) {
+		if(replay != null) {
+			replay.add(write);
+		}
+		if(columns != null) {
+			try {
+				columns = write.apply(columns);
+			} catch(IllegalStateException e) {
+				disable(e);
+			}
+		}
+	}
+
+	private void disable(IllegalStateException cause) {
+		columns = null;
+		log.warn("Read model disabled until the next reload, reads go to the database: {}", cause.getMessage());
+	}
+
+	private Columns load() {
+		List<Rating> ratings = new ArrayList<>();
+		ratingRepository.findAll().forEach(ratings::add);
+		if(ratings.size() > MAX_RATINGS) {
+			disable(new IllegalStateException(ratings.size() + " ratings, at most " + MAX_RATINGS + " fit the rating column"));
+			return null;
+		}
+		Columns loaded = new Columns();
+		loaded.ratingIds = new int[ratings.size() + 1];
+		loaded.ratingSymbols = new String[ratings.size() + 1];
+		for(int ordinal = 1; ordinal <= ratings.size(); ordinal++) {
+			loaded.ratingIds[ordinal] = ratings.get(ordinal - 1).getId();
+			loaded.ratingSymbols[ordinal] = ratings.get(ordinal - 1).getSymbol();
+		}
+
+		List<Director> directors = new ArrayList<>();
+		directorRepository.findAll().forEach(directors::add);
+		directors.sort((a, b) -> Integer.compare(a.getId(), b.getId()));
+		int directorCount = directors.size();
+		loaded.directorIds = new int[directorCount];
+		loaded.directorNames = new String[directorCount];
+		loaded.directorUpdatedSeconds = new long[directorCount];
+		loaded.directorUpdatedNanos = new int[directorCount];
+		for(int at = 0; at < directorCount; at++) {
+			Director director = directors.get(at);
+			loaded.directorIds[at] = director.getId();
+			loaded.setDirector(at, director.getName(), director.getUpdatedAt());
+		}
+
+		List<Object[]> titles = movieRepository.findAllIdsAndTitles();
+		int movieCount = titles.size();
+		loaded.movieIds = new int[movieCount];
+		loaded.titleCodes = new int[movieCount];
+		loaded.ratingOrdinals = new byte[movieCount];
+		Map<String, Integer> codes = new HashMap<>();
+		List<String> dictionary = new ArrayList<>();
+		for(int at = 0; at < movieCount; at++) {
+			loaded.movieIds[at] = (Integer) titles.get(at)[0];
+			String title = (String) titles.get(at)[1];
+			loaded.titleCodes[at] = title == null ? -1 : codes.computeIfAbsent(title, key -> {
+				dictionary.add(key);
+				return dictionary.size() - 1;
+			});
+		}
+		loaded.titles = dictionary.toArray(new String[0]);
+		loaded.titleCount = dictionary.size();
+		loaded.titleCodesByTitle = codes;
+		for(Object[] rating: movieRepository.findAllIdsAndRatingIds()) {
+			int at = Arrays.binarySearch(loaded.movieIds, (Integer) rating[0]);
+			if(at >= 0) {
+				loaded.ratingOrdinals[at] = (byte) loaded.ratingOrdinal((Integer) rating[1]);
+			}
+		}
+
+		List<Object[]> joins = movieRepository.findAllIdsAndDirectorIds();
+		int[] movieRows = new int[joins.size()];
+		int[] movieValues = new int[joins.size()];
+		int[] directorRows = new int[joins.size()];
+		int[] directorValues = new int[joins.size()];
+		int edges = 0;
+		for(Object[] join: joins) {
+			int movieId = ((Number) join[0]).intValue();
+			int directorId = ((Number) join[1]).intValue();
+			int movie = Arrays.binarySearch(loaded.movieIds, movieId);
+			int director = Arrays.binarySearch(loaded.directorIds, directorId);
+			if(movie >= 0 && director >= 0) {		//skips rows committed after the columns above were read
+				movieRows[edges] = movie;
+				movieValues[edges] = directorId;
+				directorRows[edges] = director;
+				directorValues[edges] = movieId;
+				edges++;
+			}
+		}
+		loaded.movieDirectors = Csr.of(movieCount, movieRows, movieValues, edges);
+		loaded.directorMovies = Csr.of(directorCount, directorRows, directorValues, edges);
+		return loaded;
+	}
+
+	/**
+	 * @return the distinct IDs, ascending
+	 * */
+	private static int[] sortedIds(Collection<Integer> ids) {
+		int[] sorted = new int[ids.size()];
+		int count = 0;
+		for(Integer id: ids) {
+			if(id != null) {
+				sorted[count++] = id;
+			}
+		}
+		Arrays.sort(sorted, 0, count);
+		return distinct(sorted, count);
+	}
+
+	private static int[] distinct(int[] sorted, int count) {
+		int kept = 0;
+		for(int i = 0; i < count; i++) {
+			if(kept == 0 || sorted[i] != sorted[kept - 1]) {
+				sorted[kept++] = sorted[i];
+			}
+		}
+		return kept == sorted.length ? sorted : Arrays.copyOf(sorted, kept);
+	}
+
+	/**
+	 * @return the position of the first ID greater than the given one
+	 * */
+	private static int upperBound(int[] ids, int id) {
+		int at = Arrays.binarySearch(ids, id);
+		return at >= 0 ? at + 1 : -(at + 1);
+	}
+
+	private static int[] insert(int[] column, int at, int value) {
+		int[] inserted = new int[column.length + 1];
+		System.arraycopy(column, 0, inserted, 0, at);
+		inserted[at] = value;
+		System.arraycopy(column, at, inserted, at + 1, column.length - at);
+		return inserted;
+	}
+
+	private static int[] remove(int[] column, int at) {
+		int[] removed = new int[column.length - 1];
+		System.arraycopy(column, 0, removed, 0, at);
+		System.arraycopy(column, at + 1, removed, at, removed.length - at);
+		return removed;
+	}
+
+	/**
+	 * One snapshot of the catalog. Published snapshots are never changed, a write copies the references and replaces
+	 * only the columns it changes, except for appending to the title dictionary and its codes past what older snapshots use.
+	 * */
+	private static final class Columns implements Cloneable {
+
+		private int[] movieIds;
+		private int[] titleCodes;		//-1 for no title
+		private String[] titles;		//dictionary of distinct titles, only the first titleCount used
+		private int titleCount;
+		private Map<String, Integer> titleCodesByTitle;		//codes of the dictionary, appended to with it and only read by writes
+		private byte[] ratingOrdinals;
+		private Csr movieDirectors;		//director IDs of each movie
+
+		private int[] ratingIds;		//by ordinal, 0 for a free ordinal
+		private String[] ratingSymbols;
+
+		private int[] directorIds;
+		private String[] directorNames;
+		private long[] directorUpdatedSeconds;		//Long.MIN_VALUE for none
+		private int[] directorUpdatedNanos;
+		private Csr directorMovies;		//movie IDs of each director
+
+		int ratingOrdinal(Integer ratingId) {
+			for(int ordinal = 1; ratingId != null && ordinal < ratingIds.length; ordinal++) {
+				if(ratingIds[ordinal] == ratingId) {
+					return ordinal;
+				}
+			}
+			return 0;
+		}
+
+		boolean matches(int at, List<int[]> filters, boolean[] ratings, List<String> titleWords) {
+			if(ratings != null && !ratings[ratingOrdinals[at] & 0xFF]) {
+				return false;
+			}
+			for(int[] filter: filters) {
+				boolean directed = false;
+				for(int edge = movieDirectors.offsets[at]; edge < movieDirectors.offsets[at + 1] && !directed; edge++) {
+					directed = Arrays.binarySearch(filter, movieDirectors.values[edge]) >= 0;
+				}
+				if(!directed) {
+					return false;
+				}
+			}
+			if(!titleWords.isEmpty()) {
+				if(titleCodes[at] < 0) {
+					return false;
+				}
+				String title = titles[titleCodes[at]].toLowerCase(Locale.ROOT);
+				for(String word: titleWords) {
+					if(!title.contains(word)) {
+						return false;
+					}
+				}
+			}
+			return true;
+		}
+
+		/**
+		 * @return the distinct IDs of the movies of any of the directors, ascending
+		 * */
+		int[] moviesOf(int[] directors) {
+			int count = 0;
+			int[] rows = new int[directors.length];
+			for(int i = 0; i < directors.length; i++) {
+				rows[i] = Arrays.binarySearch(directorIds, directors[i]);
+				if(rows[i] >= 0) {
+					count += directorMovies.offsets[rows[i] + 1] - directorMovies.offsets[rows[i]];
+				}
+			}
+			int[] movies = new int[count];
+			count = 0;
+			for(int row: rows) {
+				if(row >= 0) {
+					int from = directorMovies.offsets[row];
+					int length = directorMovies.offsets[row + 1] - from;
+					System.arraycopy(directorMovies.values, from, movies, count, length);
+					count += length;
+				}
+			}
+			if(rows.length > 1) {
+				Arrays.sort(movies);
+			}
+			return distinct(movies, count);
+		}
+
+		MovieSummary summary(int at, Set<String> properties) {
+			int ordinal = ratingOrdinals[at] & 0xFF;
+			List<String> names = null;
+			if(MovieSummary.selected(properties, MovieSummary.DIRECTOR_NAMES)) {
+				names = new ArrayList<>(movieDirectors.offsets[at + 1] - movieDirectors.offsets[at]);
+				for(int edge = movieDirectors.offsets[at]; edge < movieDirectors.offsets[at + 1]; edge++) {
+					int director = Arrays.binarySearch(directorIds, movieDirectors.values[edge]);
+					if(director >= 0 && directorNames[director] != null) {
+						names.add(directorNames[director]);
+					}
+				}
+				Collections.sort(names);
+			}
+			return new MovieSummary(
+					movieIds[at],
+					MovieSummary.selected(properties, MovieSummary.TITLE) && titleCodes[at] >= 0 ? titles[titleCodes[at]] : null,
+					MovieSummary.selected(properties, MovieSummary.RATING_SYMBOL) && ordinal > 0 ? ratingSymbols[ordinal] : null,
+					names);
+		}
+
+		Director director(int at) {
+			Instant updatedAt = directorUpdatedSeconds[at] == Long.MIN_VALUE ? null
+					: Instant.ofEpochSecond(directorUpdatedSeconds[at], directorUpdatedNanos[at]);
+			return new Director(directorIds[at], directorNames[at], updatedAt);
+		}
+
+		void setDirector(int at, String name, Instant updatedAt) {
+			directorNames[at] = name;
+			directorUpdatedSeconds[at] = updatedAt == null ? Long.MIN_VALUE : updatedAt.getEpochSecond();
+			directorUpdatedNanos[at] = updatedAt == null ? 0 : updatedAt.getNano();
+		}
+
+		Columns withMovie(int id, String title, Integer ratingId, int[] directors) {
+			Columns changed = copy();
+			int at = Arrays.binarySearch(movieIds, id);
+			int[] previous;
+			if(at < 0) {
+				at = -(at + 1);
+				changed.movieIds = insert(movieIds, at, id);
+				changed.titleCodes = insert(titleCodes, at, -1);
+				changed.ratingOrdinals = new byte[ratingOrdinals.length + 1];
+				System.arraycopy(ratingOrdinals, 0, changed.ratingOrdinals, 0, at);
+				System.arraycopy(ratingOrdinals, at, changed.ratingOrdinals, at + 1, ratingOrdinals.length - at);
+				changed.movieDirectors = movieDirectors.insertRow(at);
+				previous = new int[0];
+			} else {
+				changed.titleCodes = titleCodes.clone();
+				changed.ratingOrdinals = ratingOrdinals.clone();
+				previous = movieDirectors.row(at);
+			}
+			changed.titleCodes[at] = changed.titleCode(title);
+			changed.ratingOrdinals[at] = (byte) ratingOrdinal(ratingId);
+			changed.movieDirectors = changed.movieDirectors.withRow(at, directors);
+			for(int director: previous) {
+				if(Arrays.binarySearch(directors, director) < 0) {
+					changed.directed(director, id, false);
+				}
+			}
+			for(int director: directors) {
+				if(Arrays.binarySearch(previous, director) < 0) {
+					changed.directed(director, id, true);
+				}
+			}
+			return changed;
+		}
+
+		Columns withoutMovie(int id) {
+			int at = Arrays.binarySearch(movieIds, id);
+			if(at < 0) {
+				return this;
+			}
+			Columns changed = copy();
+			for(int director: movieDirectors.row(at)) {
+				changed.directed(director, id, false);
+			}
+			changed.movieIds = remove(movieIds, at);
+			changed.titleCodes = remove(titleCodes, at);
+			changed.ratingOrdinals = new byte[ratingOrdinals.length - 1];
+			System.arraycopy(ratingOrdinals, 0, changed.ratingOrdinals, 0, at);
+			System.arraycopy(ratingOrdinals, at + 1, changed.ratingOrdinals, at, changed.ratingOrdinals.length - at);
+			changed.movieDirectors = movieDirectors.removeRow(at);
+			return changed;
+		}
+
+		Columns withDirector(int id, String name, Instant updatedAt) {
+			Columns changed = copy();
+			int at = Arrays.binarySearch(directorIds, id);
+			if(at < 0) {
+				at = -(at + 1);
+				changed.directorIds = insert(directorIds, at, id);
+				changed.directorNames = new String[directorNames.length + 1];
+				System.arraycopy(directorNames, 0, changed.directorNames, 0, at);
+				System.arraycopy(directorNames, at, changed.directorNames, at + 1, directorNames.length - at);
+				changed.directorUpdatedSeconds = new long[directorUpdatedSeconds.length + 1];
+				System.arraycopy(directorUpdatedSeconds, 0, changed.directorUpdatedSeconds, 0, at);
+				System.arraycopy(directorUpdatedSeconds, at, changed.directorUpdatedSeconds, at + 1, directorUpdatedSeconds.length - at);
+				changed.directorUpdatedNanos = insert(directorUpdatedNanos, at, 0);
+				changed.directorMovies = directorMovies.insertRow(at);
+			} else {
+				changed.directorNames = directorNames.clone();
+				changed.directorUpdatedSeconds = directorUpdatedSeconds.clone();
+				changed.directorUpdatedNanos = directorUpdatedNanos.clone();
+			}
+			changed.setDirector(at, name, updatedAt);
+			return changed;
+		}
+
+		Columns withoutDirector(int id) {
+			int at = Arrays.binarySearch(directorIds, id);
+			if(at < 0) {
+				return this;
+			}
+			Columns changed = copy();
+			changed.directorIds = remove(directorIds, at);
+			changed.directorNames = new String[directorNames.length - 1];
+			System.arraycopy(directorNames, 0, changed.directorNames, 0, at);
+			System.arraycopy(directorNames, at + 1, changed.directorNames, at, changed.directorNames.length - at);
+			changed.directorUpdatedSeconds = new long[directorUpdatedSeconds.length - 1];
+			System.arraycopy(directorUpdatedSeconds, 0, changed.directorUpdatedSeconds, 0, at);
+			System.arraycopy(directorUpdatedSeconds, at + 1, changed.directorUpdatedSeconds, at, changed.directorUpdatedSeconds.length - at);
+			changed.directorUpdatedNanos = remove(directorUpdatedNanos, at);
+			changed.directorMovies = directorMovies.removeRow(at);
+			changed.movieDirectors = movieDirectors.without(id);
+			return changed;
+		}
+
+		/**
+		 * @throws IllegalStateException if every ordinal is taken
+		 * */
+		Columns withRating(int id, String symbol) {
+			Columns changed = copy();
+			int ordinal = ratingOrdinal(id);
+			for(int free = 1; ordinal == 0 && free < ratingIds.length; free++) {
+				if(ratingIds[free] == 0) {
+					ordinal = free;
+				}
+			}
+			if(ordinal == 0) {
+				if(ratingIds.length > MAX_RATINGS) {
+					throw new IllegalStateException("more than " + MAX_RATINGS + " ratings do not fit the rating column");
+				}
+				ordinal = ratingIds.length;
+				changed.ratingIds = Arrays.copyOf(ratingIds, ordinal + 1);
+				changed.ratingSymbols = Arrays.copyOf(ratingSymbols, ordinal + 1);
+			} else {
+				changed.ratingIds = ratingIds.clone();
+				changed.ratingSymbols = ratingSymbols.clone();
+			}
+			changed.ratingIds[ordinal] = id;
+			changed.ratingSymbols[ordinal] = symbol;
+			return changed;
+		}
+
+		Columns withoutRating(int id) {
+			int ordinal = ratingOrdinal(id);
+			if(ordinal == 0) {
+				return this;
+			}
+			Columns changed = copy();
+			changed.ratingIds = ratingIds.clone();
+			changed.ratingSymbols = ratingSymbols.clone();
+			changed.ratingIds[ordinal] = 0;
+			changed.ratingSymbols[ordinal] = null;
+			changed.ratingOrdinals = ratingOrdinals.clone();
+			for(int at = 0; at < ratingOrdinals.length; at++) {
+				if((ratingOrdinals[at] & 0xFF) == ordinal) {
+					changed.ratingOrdinals[at] = 0;
+				}
+			}
+			return changed;
+		}
+
+		/**
+		 * Adds the movie to or removes it from the director's row, if the director is known.
+		 * */
+		private void directed(int director, int movie, boolean present) {
+			int at = Arrays.binarySearch(directorIds, director);
+			if(at >= 0) {
+				directorMovies = directorMovies.withValue(at, movie, present);
+			}
+		}
+
+		/**
+		 * @return the dictionary code of the title, appended if new, -1 for no title
+		 * */
+		private int titleCode(String title) {
+			if(title == null) {
+				return -1;
+			}
+			Integer code = titleCodesByTitle.get(title);
+			if(code != null && code < titleCount) {
+				return code;
+			}
+			if(titleCount == titles.length) {
+				titles = Arrays.copyOf(titles, Math.max(16, titleCount * 3 / 2));
+			}
+			titles[titleCount] = title;
+			titleCodesByTitle.put(title, titleCount);
+			return titleCount++;
+		}
+
+		private Columns copy() {
+			try {
+				return (Columns) clone();
+			} catch(CloneNotSupportedException e) {
+				throw new AssertionError(e);
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,140 @@
+package moviecatalog.readmodel;
+
+import java.util.Arrays;
+
+/**
+ * Compressed sparse rows of int values: the values of row r are values[offsets[r]] up to values[offsets[r + 1]], ascending.
+ *
+ * Never modified once built, every change returns a copy, so a reader holding an older instance is never disturbed.
+ *
+ * @author johnathanleif
+ *
+ * */
+final class Csr {
+
+	static final Csr EMPTY = new Csr(new int[] {0}, new int[0]);
+
+	private static final int[] NONE = new int[0];
+
+	final int[] offsets;
+	final int[] values;
+
+	private Csr(int[] offsets, int[] values) {
+		this.offsets = offsets;
+		this.values = values;
+	}
+
+	/**
+	 * Builds the rows from the first edges of parallel arrays of rows and values, with a counting sort by row.
+	 * */
+	static Csr of(int rows, int[] edgeRows, int[] edgeValues, int edges) {
+		int[] offsets = new int[rows + 1];
+		for(int edge = 0; edge < edges; edge++) {
+			offsets[edgeRows[edge] + 1]++;
+		}
+		for(int row = 0; row < rows; row++) {
+			offsets[row + 1] += offsets[row];
+		}
+		int[] next = Arrays.copyOf(offsets, rows);
+		int[] values = new int[edges];
+		for(int edge = 0; edge < edges; edge++) {
+			values[next[edgeRows[edge]]++] = edgeValues[edge];
+		}
+		for(int row = 0; row < rows; row++) {
+			Arrays.sort(values, offsets[row], offsets[row + 1]);
+		}
+		return new Csr(offsets, values);
+	}
+
+	int[] row(int row) {
+		return Arrays.copyOfRange(values, offsets[row], offsets[row + 1]);
+	}
+
+	boolean contains(int row, int value) {
+		return Arrays.binarySearch(values, offsets[row], offsets[row + 1], value) >= 0;
+	}
+
+	/**
+	 * @return a copy with the values of the row replaced by the given ascending values
+	 * */
+	Csr withRow(int row, int[] rowValues) {
+		int from = offsets[row];
+		int to = offsets[row + 1];
+		int delta = rowValues.length - (to - from);
+		int[] changed = new int[values.length + delta];
+		System.arraycopy(values, 0, changed, 0, from);
+		System.arraycopy(rowValues, 0, changed, from, rowValues.length);
+		System.arraycopy(values, to, changed, from + rowValues.length, values.length - to);
+		int[] shifted = offsets.clone();
+		for(int next = row + 1; next < shifted.length; next++) {
+			shifted[next] += delta;
+		}
+		return new Csr(shifted, changed);
+	}
+
+	/**
+	 * @return a copy with the value added to or removed from the row
+	 * */
+	Csr withValue(int row, int value, boolean present) {
+		int at = Arrays.binarySearch(values, offsets[row], offsets[row + 1], value);
+		if((at >= 0) == present) {
+			return this;
+		}
+		int[] current = row(row);
+		int[] changed;
+		if(present) {
+			int insert = -(at + 1) - offsets[row];
+			changed = new int[current.length + 1];
+			System.arraycopy(current, 0, changed, 0, insert);
+			changed[insert] = value;
+			System.arraycopy(current, insert, changed, insert + 1, current.length - insert);
+		} else {
+			int remove = at - offsets[row];
+			changed = new int[current.length - 1];
+			System.arraycopy(current, 0, changed, 0, remove);
+			System.arraycopy(current, remove + 1, changed, remove, current.length - remove - 1);
+		}
+		return withRow(row, changed);
+	}
+
+	/**
+	 * @return a copy with an empty row inserted before the given row
+	 * */
+	Csr insertRow(int row) {
+		int[] inserted = new int[offsets.length + 1];
+		System.arraycopy(offsets, 0, inserted, 0, row + 1);
+		System.arraycopy(offsets, row, inserted, row + 1, offsets.length - row);
+		return new Csr(inserted, values);
+	}
+
+	/**
+	 * @return a copy without the given row
+	 * */
+	Csr removeRow(int row) {
+		Csr emptied = withRow(row, NONE);
+		int[] removed = new int[offsets.length - 1];
+		System.arraycopy(emptied.offsets, 0, removed, 0, row + 1);
+		System.arraycopy(emptied.offsets, row + 2, removed, row + 1, removed.length - row - 1);
+		return new Csr(removed, emptied.values);
+	}
+
+	/**
+	 * @return a copy with the value removed from every row, in one pass
+	 * */
+	Csr without(int value) {
+		int[] kept = new int[offsets.length];
+		int[] remaining = new int[values.length];
+		int count = 0;
+		for(int row = 0; row + 1 < offsets.length; row++) {
+			kept[row] = count;
+			for(int edge = offsets[row]; edge < offsets[row + 1]; edge++) {
+				if(values[edge] != value) {
+					remaining[count++] = values[edge];
+				}
+			}
+		}
+		kept[offsets.length - 1] = count;
+		return new Csr(kept, count == values.length ? values : Arrays.copyOf(remaining, count));
+	}
+
+}
@@ -1,12 +1,21 @@
 package moviecatalog.repository;
 
-import org.springframework.data.repository.CrudRepository;
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.PagingAndSortingRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import moviecatalog.model.Director;
 
 @Repository
-public interface DirectorRepository extends CrudRepository<Director, Integer> {
+public interface DirectorRepository extends PagingAndSortingRepository<Director, Integer> {
 	
 	/**
 	 * Retrieves all entities by name.
@@ -15,21 +24,37 @@ public interface DirectorRepository extends CrudRepository<Director, Integer> {
 	public Iterable<Director> findAllByName(String name);
 	
 	/**
-	 * Retrieves all entities by name containing the given query string.
-	 * @return the entities with name containing the given query string
+	 * Retrieves all entities with any of the given names, ordered by ID.
+	 * @return the entities with the given names
+	 * */
+	public Iterable<Director> findAllByNameInOrderById(Collection<String> names);
+	
+	/**
+	 * Retrieves a slice of entities with ID greater than the given cursor, ordered by ID.
+	 * @return the next slice of entities after the cursor
+	 * */
+	public Slice<Director> findAllByIdGreaterThanOrderById(int after, Pageable pageable);
+	
+	/**
+	 * Retrieves a slice of entities by name with ID greater than the given cursor, ordered by ID.
+	 * @return the next slice of entities with the given name after the cursor
 	 * */
-	public Iterable<Director> findAllByNameContains(String nameQuery);
+	public Slice<Director> findAllByNameAndIdGreaterThanOrderById(String name, int after, Pageable pageable);
 	
 	/**
-	 * Retrieves all entities by name starting with the given query string.
-	 * @return the entities with name starting with the given query string
+	 * Retrieves the ID of every entity.
+	 * @return IDs in no particular order
 	 * */
-	public Iterable<Director> findAllByNameStartsWith(String nameQuery);
+	@Query("select d.id from Director d")
+	public List<Integer> findAllIds();
 	
 	/**
-	 * Retrieves all entities by name ending with the given query string.
-	 * @return the entities with name ending with the given query string
+	 * Deletes the entity with the given ID in one statement, without loading it.
+	 * @return the number of entities deleted
 	 * */
-	public Iterable<Director> findAllByNameEndsWith(String nameQuery);
+	@Modifying
+	@Transactional
+	@Query("delete from Director e where e.id = :id")
+	public int deleteByIdInBulk(@Param("id") int id);
 	
-}
\ No newline at end of file
+}
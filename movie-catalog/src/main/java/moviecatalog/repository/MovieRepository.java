@@ -1,49 +1,174 @@
 package moviecatalog.repository;
 
-import org.springframework.data.repository.CrudRepository;
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_NATIVE_SPACES;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import javax.persistence.QueryHint;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.PagingAndSortingRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import moviecatalog.model.Director;
 import moviecatalog.model.Movie;
 import moviecatalog.model.Rating;
 
 @Repository
-public interface MovieRepository extends CrudRepository<Movie, Integer> {
+public interface MovieRepository extends PagingAndSortingRepository<Movie, Integer> {
 
 	/**
-	 * Retrieves all entities containing the given {@link Director}s.
-	 * @return the entities with the given {@link Director}s
+	 * Retrieves an entity by its id with its {@link Rating} and {@link Director}s in one query.
+	 * @return the entity with the given id
 	 * */
-	public Iterable<Movie> findAllByDirectorsIn(Iterable<Director> directors);
+	@Override
+	@EntityGraph(attributePaths = {"rating", "directors"})
+	public Optional<Movie> findById(Integer id);
 	
 	/**
-	 * Retrieves all entities containing the given {@link Director}s.
-	 * @return the entities with the given {@link Director}s
+	 * Returns all instances of the type with their {@link Rating}s joined, {@link Director}s are batch fetched.
+	 * @return all entities
 	 * */
-	public Iterable<Movie> findAllByDirectorsId(int director_id);
+	@Override
+	@EntityGraph(attributePaths = {"rating"})
+	public Iterable<Movie> findAll();
 	
 	/**
 	 * Retrieves all entities with the given {@link Rating}.
 	 * @return the entities with the given {@link Rating}
 	 * */
+	@EntityGraph(attributePaths = {"rating"})
 	public Iterable<Movie> findAllByRating(Rating rating);
 	
 	/**
 	 * Retrieves all entities containing the given {@link Director}s.
 	 * @return the entities with the given {@link Director}s
 	 * */
+	@EntityGraph(attributePaths = {"rating"})
 	public Iterable<Movie> findAllByRatingId(int rating_id);
 	
 	/**
 	 * Retrieves all entities with the given {@link Rating} symbol.
 	 * @return the entities with the given rating symbol
 	 * */
+	@EntityGraph(attributePaths = {"rating"})
 	public Iterable<Movie> findAllByRatingSymbol(String ratingSymbol);
 	
 	/**
-	 * Retrieves all entities with the given {@link Rating} age limit.
-	 * @return the entities with the given age limit
+	 * Retrieves a slice of entities with ID greater than the given cursor, ordered by ID.
+	 * @return the next slice of entities after the cursor
+	 * */
+	@EntityGraph(attributePaths = {"rating"})
+	public Slice<Movie> findAllByIdGreaterThanOrderById(int after, Pageable pageable);
+	
+	/**
+	 * Streams all entities ordered by ID with their {@link Rating}, read-only and fetched from the database in chunks.
+	 * Must be consumed and closed inside a transaction.
+	 * @return a stream of all entities
+	 * */
+	@Query("select m from Movie m left join fetch m.rating order by m.id")
+	@QueryHints({
+		@QueryHint(name = HINT_FETCH_SIZE, value = "500"),
+		@QueryHint(name = HINT_READONLY, value = "true")
+	})
+	public Stream<Movie> streamAllByOrderById();
+	
+	/**
+	 * Retrieves the ID and title of every entity, ordered by ID.
+	 * @return pairs of ID and title
+	 * */
+	@Query("select m.id, m.title from Movie m order by m.id")
+	public List<Object[]> findAllIdsAndTitles();
+	
+	/**
+	 * Retrieves every movie to {@link Director} join as a pair of IDs, in no particular order.
+	 * Reads the join table alone, joining the movie table makes H2 far slower.
+	 * @return pairs of movie ID and director ID
+	 * */
+	@Query(value = "SELECT movie_id, director_id FROM movie_director", nativeQuery = true)
+	public List<Object[]> findAllIdsAndDirectorIds();
+	
+	/**
+	 * Retrieves the ID and {@link Rating} ID of every entity with a rating, in no particular order.
+	 * @return pairs of ID and rating ID
+	 * */
+	@Query("select m.id, m.rating.id from Movie m where m.rating is not null")
+	public List<Object[]> findAllIdsAndRatingIds();
+	
+	/**
+	 * Counts the entities of each {@link Rating}.
+	 * @return pairs of rating ID, null for entities without a rating, and count
+	 * */
+	@Query(value = "SELECT rating_id, COUNT(*) FROM movie GROUP BY rating_id", nativeQuery = true)
+	public List<Object[]> countAllGroupByRatingId();
+	
+	/**
+	 * Counts the entities of each {@link Director} with any, read from the join table alone.
+	 * @return pairs of director ID and count
+	 * */
+	@Query(value = "SELECT director_id, COUNT(*) FROM movie_director GROUP BY director_id", nativeQuery = true)
+	public List<Object[]> countAllGroupByDirectorId();
+	
+	/**
+	 * Retrieves the IDs of the movies of any of the {@link Director}s with the given IDs, read from the join table alone.
+	 * @return movie IDs in no particular order, repeated for movies of several of the directors
+	 * */
+	@Query(value = "SELECT movie_id FROM movie_director WHERE director_id IN (:directorIds)", nativeQuery = true)
+	public List<Integer> findIdsByDirectorIdIn(@Param("directorIds") Collection<Integer> directorIds);
+	
+	/**
+	 * Retrieves the entities with the given IDs with their {@link Rating} and {@link Director}s in one query, read-only, in no particular order.
+	 * @return the entities found
+	 * */
+	@EntityGraph(attributePaths = {"rating", "directors"})
+	@QueryHints(@QueryHint(name = HINT_READONLY, value = "true"))
+	public List<Movie> findDistinctByIdIn(Collection<Integer> ids);
+	
+	/**
+	 * Retrieves the {@link Director} names of the movies with the given IDs, ordered by name.
+	 * @return pairs of movie ID and director name
+	 * */
+	@Query("select m.id, d.name from Movie m join m.directors d where m.id in :ids order by d.name")
+	public List<Object[]> findDirectorNamesByIdIn(@Param("ids") Collection<Integer> ids);
+	
+	/**
+	 * Sets the modification time of every movie of the given {@link Director} in one statement.
+	 * @return the number of movies updated
+	 * */
+	@Modifying
+	@Transactional
+	@Query("update Movie m set m.updatedAt = current_timestamp where m.id in (select dm.id from Movie dm join dm.directors d where d.id = :directorId)")
+	public int touchMoviesByDirector(@Param("directorId") int directorId);
+	
+	/**
+	 * Removes every join of the given {@link Director} to a movie in one statement.
+	 * @return the number of joins removed
+	 * */
+	@Modifying
+	@Transactional
+	@Query(value = "DELETE FROM movie_director WHERE director_id = :directorId", nativeQuery = true)
+	@QueryHints(@QueryHint(name = HINT_NATIVE_SPACES, value = "movie_director"))		//only evict cached director collections
+	public int deleteDirectorJoins(@Param("directorId") int directorId);
+	
+	/**
+	 * Removes the given {@link Rating} from every movie with it in one statement.
+	 * @return the number of movies updated
 	 * */
-	public Iterable<Movie> findAllByRatingAgeLimitGreaterThan(int ageLimit);
+	@Modifying
+	@Transactional
+	@Query("update Movie m set m.rating = null, m.updatedAt = current_timestamp where m.rating.id = :ratingId")
+	public int clearRating(@Param("ratingId") int ratingId);
 	
 }
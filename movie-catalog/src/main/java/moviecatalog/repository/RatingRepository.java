@@ -2,19 +2,17 @@ package moviecatalog.repository;
 
 import java.util.Optional;
 
-import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.PagingAndSortingRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import moviecatalog.model.Rating;
 
 @Repository
-public interface RatingRepository extends CrudRepository<Rating, Integer> {
-	
-	/**
-	 * Returns all instances of the type ordered by age limit.
-	 * @return all entities ordered by age limit
-	 * */
-	public Iterable<Rating> findAllByOrderByAgeLimit();
+public interface RatingRepository extends PagingAndSortingRepository<Rating, Integer> {
 	
 	/**
 	 * Retrieves an entity by its symbol.
@@ -22,4 +20,13 @@ public interface RatingRepository extends CrudRepository<Rating, Integer> {
 	 * */
 	public Optional<Rating> findBySymbol(String symbol);	//TODO: either this is wrong or the db model is wrong
 	
+	/**
+	 * Deletes the entity with the given ID in one statement, without loading it.
+	 * @return the number of entities deleted
+	 * */
+	@Modifying
+	@Transactional
+	@Query("delete from Rating e where e.id = :id")
+	public int deleteByIdInBulk(@Param("id") int id);
+	
 }
@@ -0,0 +1,246 @@
+package moviecatalog.search;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+import javax.annotation.PostConstruct;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import moviecatalog.cache.AfterCommit;
+import moviecatalog.model.Director;
+import moviecatalog.model.Movie;
+import moviecatalog.repository.DirectorRepository;
+import moviecatalog.repository.MovieRepository;
+
+/**
+ * In-memory completions of {@link Movie} titles and {@link Director} names by prefix, ignoring case and accents,
+ * each held in a {@link CompletionTrie}.
+ *
+ * Completions are weighted by popularity: a title by the number of movies with it, a director's name by the number of
+ * movies the directors with it directed (plus one, so directors without movies still complete).
+ * The titles and director IDs of every movie are kept to move weights when movies and directors change.
+ *
+ * Writes are applied once their transaction commits, including while a reload is running.
+ *
+ * @author johnathanleif
+ *
+ * */
+@Component
+public class AutocompleteIndex {
+
+	private static final Logger log = LoggerFactory.getLogger(AutocompleteIndex.class);
+
+	/**
+	 * What is completed.
+	 * */
+	public enum Type {
+		MOVIE, DIRECTOR
+	}
+
+	@Autowired
+	private MovieRepository movieRepository;
+
+	@Autowired
+	private DirectorRepository directorRepository;
+
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	private Index index = new Index();
+	private List<Consumer<Index>> replay = null;		//updates committed during a reload, guarded by the lock
+
+	/**
+	 * Loads every {@link Movie} title and {@link Director} name with their weights, replacing the current completions.
+	 * */
+	@PostConstruct
+	public synchronized void reload() {
+		long start = System.nanoTime();
+		lock.writeLock().lock();
+		try {
+			replay = new ArrayList<>();
+		} finally {
+			lock.writeLock().unlock();
+		}
+		Index loaded = null;
+		try {
+			loaded = load();
+		} finally {
+			lock.writeLock().lock();
+			try {
+				if(loaded != null) {
+					for(Consumer<Index> update: replay) {
+						update.accept(loaded);
+					}
+					index = loaded;
+				}
+				replay = null;
+			} finally {
+				lock.writeLock().unlock();
+			}
+		}
+		log.info("Loaded completions of {} movies and {} directors in {}ms.", loaded.movies.size(), loaded.directorNames.size(), (System.nanoTime() - start) / 1000000);
+	}
+
+	/**
+	 * @return at most limit titles or names starting with the prefix, most popular first
+	 * */
+	public List<String> complete(Type type, String prefix, int limit) {
+		lock.readLock().lock();
+		try {
+			return (type == Type.MOVIE ? index.titles : index.names).complete(prefix, limit);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Records a saved (new or changed) {@link Movie}, after the current transaction commits if there is one.
+	 * */
+	public void saved(Movie movie) {
+		int id = movie.getId();
+		String title = movie.getTitle();
+		List<Integer> directorIds = new ArrayList<>();
+		if(movie.getDirectors() != null) {
+			for(Director director: movie.getDirectors()) {
+				directorIds.add(director.getId());
+			}
+		}
+		AfterCommit.execute(() -> apply(loaded -> loaded.movieSaved(id, title, directorIds)));
+	}
+
+	/**
+	 * Records a deleted {@link Movie}, after the current transaction commits if there is one.
+	 * */
+	public void deleted(int id) {
+		AfterCommit.execute(() -> apply(loaded -> loaded.movieDeleted(id)));
+	}
+
+	/**
+	 * Records a saved (new or renamed) {@link Director}, after the current transaction commits if there is one.
+	 * */
+	public void directorSaved(Director director) {
+		int id = director.getId();
+		String name = director.getName();
+		AfterCommit.execute(() -> apply(loaded -> loaded.directorSaved(id, name)));
+	}
+
+	/**
+	 * Records saved {@link Director}s, after the current transaction commits if there is one.
+	 * */
+	public void directorsSaved(Iterable<Director> directors) {
+		for(Director director: directors) {
+			directorSaved(director);
+		}
+	}
+
+	/**
+	 * Records a deleted {@link Director}, after the current transaction commits if there is one.
+	 * */
+	public void directorDeleted(int id) {
+		AfterCommit.execute(() -> apply(loaded -> loaded.directorDeleted(id)));
+	}
+
+	private void apply(Consumer<Index> update) {
+		lock.writeLock().lock();
+		try {
+			update.accept(index);
+			if(replay != null) {
+				replay.add(update);
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	private Index load() {
+		Index loaded = new Index();
+		for(Director director: directorRepository.findAll()) {
+			loaded.directorSaved(director.getId(), director.getName());
+		}
+		Map<Integer, List<Integer>> directorIds = new HashMap<>();
+		for(Object[] join: movieRepository.findAllIdsAndDirectorIds()) {
+			directorIds.computeIfAbsent((Integer) join[0], id -> new ArrayList<>(2)).add((Integer) join[1]);
+		}
+		for(Object[] title: movieRepository.findAllIdsAndTitles()) {
+			Integer id = (Integer) title[0];
+			loaded.movieSaved(id, (String) title[1], directorIds.getOrDefault(id, new ArrayList<>()));
+		}
+		return loaded;
+	}
+
+	/**
+	 * Both tries and the state their weights are derived from, only modified under the write lock.
+	 * */
+	private static final class Index {
+
+		private final CompletionTrie titles = new CompletionTrie();
+		private final CompletionTrie names = new CompletionTrie();
+		private final Map<Integer, MovieEntry> movies = new HashMap<>();
+		private final Map<Integer, String> directorNames = new HashMap<>();
+		private final Map<Integer, Integer> directorMovies = new HashMap<>();
+
+		void movieSaved(int id, String title, List<Integer> directorIds) {
+			movieDeleted(id);
+			int[] ids = new int[directorIds.size()];
+			for(int i = 0; i < ids.length; i++) {
+				ids[i] = directorIds.get(i);
+			}
+			movies.put(id, new MovieEntry(title, ids));
+			titles.adjust(title, 1);
+			for(int directorId: ids) {
+				directed(directorId, 1);
+			}
+		}
+
+		void movieDeleted(int id) {
+			MovieEntry removed = movies.remove(id);
+			if(removed != null) {
+				titles.adjust(removed.title, -1);
+				for(int directorId: removed.directorIds) {
+					directed(directorId, -1);
+				}
+			}
+		}
+
+		void directorSaved(int id, String name) {
+			String previous = directorNames.put(id, name);
+			int weight = 1 + directorMovies.getOrDefault(id, 0);
+			names.adjust(previous, -weight);
+			names.adjust(name, weight);
+		}
+
+		void directorDeleted(int id) {
+			String name = directorNames.remove(id);
+			Integer directed = directorMovies.remove(id);
+			names.adjust(name, -(1 + (directed == null ? 0 : directed)));
+		}
+
+		private void directed(int directorId, int delta) {
+			if(directorNames.containsKey(directorId)) {		//movies may still list deleted directors
+				directorMovies.merge(directorId, delta, Integer::sum);
+				names.adjust(directorNames.get(directorId), delta);
+			}
+		}
+
+	}
+
+	private static final class MovieEntry {
+
+		private final String title;
+		private final int[] directorIds;
+
+		MovieEntry(String title, int[] directorIds) {
+			this.title = title;
+			this.directorIds = directorIds;
+		}
+
+	}
+
+}
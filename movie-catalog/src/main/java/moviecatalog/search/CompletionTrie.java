@@ -0,0 +1,228 @@
+package moviecatalog.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Compressed (radix) trie of weighted completions keyed by their folded text (see {@link TitleTokenizer#fold(String)}).
+ *
+ * Edges carry whole runs of characters, so a node only exists where keys branch or end. Each node also records the
+ * highest weight below it, so the best completions of a prefix are found best first without visiting the rest of its subtree.
+ * Texts folding to the same key share a node and are completed separately.
+ *
+ * Not thread safe.
+ *
+ * @author johnathanleif
+ *
+ * */
+class CompletionTrie {
+
+	private final Node root = new Node("");
+
+	/**
+	 * Adds delta to the weight of the text, removing it once its weight is no longer positive.
+	 * */
+	void adjust(String text, int delta) {
+		if(text != null && delta != 0) {
+			adjust(root, TitleTokenizer.fold(text), 0, text, delta);
+		}
+	}
+
+	/**
+	 * @return at most limit texts with folded keys starting with the folded prefix, highest weight first then in key order
+	 * */
+	List<String> complete(String prefix, int limit) {
+		String key = TitleTokenizer.fold(prefix);
+		Node node = root;
+		StringBuilder path = new StringBuilder();
+		int at = 0;
+		while(at < key.length()) {
+			Node child = node.child(key.charAt(at));
+			if(child == null) {
+				return new ArrayList<>();
+			}
+			int common = commonPrefix(child.label, key, at);
+			if(common < child.label.length() && at + common < key.length()) {		//diverges inside the edge
+				return new ArrayList<>();
+			}
+			path.append(child.label);
+			at += common;
+			node = child;
+		}
+		List<String> completions = new ArrayList<>(Math.min(limit, 16));
+		PriorityQueue<Candidate> candidates = new PriorityQueue<>();
+		candidates.add(new Candidate(node.best, path.toString(), null, node));
+		while(!candidates.isEmpty() && completions.size() < limit) {
+			Candidate next = candidates.poll();
+			if(next.node == null) {
+				completions.add(next.text);
+				continue;
+			}
+			Node expanded = next.node;
+			if(expanded.texts != null) {
+				for(Map.Entry<String, Integer> text: expanded.texts.entrySet()) {
+					candidates.add(new Candidate(text.getValue(), next.key, text.getKey(), null));
+				}
+			}
+			for(int i = 0; i < expanded.size; i++) {
+				Node child = expanded.children[i];
+				candidates.add(new Candidate(child.best, next.key + child.label, null, child));
+			}
+		}
+		return completions;
+	}
+
+	private static void adjust(Node node, String key, int at, String text, int delta) {
+		if(at == key.length()) {
+			if(node.texts == null) {
+				if(delta < 0) {
+					return;
+				}
+				node.texts = new HashMap<>(2);
+			}
+			int weight = node.texts.getOrDefault(text, 0) + delta;
+			if(weight > 0) {
+				node.texts.put(text, weight);
+			} else {
+				node.texts.remove(text);
+				if(node.texts.isEmpty()) {
+					node.texts = null;
+				}
+			}
+		} else {
+			int index = node.indexOf(key.charAt(at));
+			if(index < 0) {
+				if(delta < 0) {		//not present
+					return;
+				}
+				node.insert(-(index + 1), new Node(key.substring(at)));
+				index = -(index + 1);
+			}
+			Node child = node.children[index];
+			int common = commonPrefix(child.label, key, at);
+			if(common < child.label.length()) {
+				if(delta < 0) {
+					return;
+				}
+				Node split = new Node(child.label.substring(0, common));		//branch inside the edge
+				child.label = child.label.substring(common);
+				split.insert(0, child);
+				split.best = child.best;
+				node.children[index] = split;
+				child = split;
+			}
+			adjust(child, key, at + common, text, delta);
+			if(child.texts == null && child.size == 0) {
+				node.remove(index);
+			} else if(child.texts == null && child.size == 1) {		//no longer branches, merge with its only child
+				Node only = child.children[0];
+				only.label = child.label + only.label;
+				node.children[index] = only;
+			}
+		}
+		node.best = 0;
+		if(node.texts != null) {
+			for(int weight: node.texts.values()) {
+				node.best = Math.max(node.best, weight);
+			}
+		}
+		for(int i = 0; i < node.size; i++) {
+			node.best = Math.max(node.best, node.children[i].best);
+		}
+	}
+
+	private static int commonPrefix(String label, String key, int at) {
+		int common = 0;
+		while(common < label.length() && at + common < key.length() && label.charAt(common) == key.charAt(at + common)) {
+			common++;
+		}
+		return common;
+	}
+
+	/**
+	 * A node with the characters of the edge leading to it, children sorted by first character and the texts ending at it.
+	 * */
+	private static final class Node {
+
+		private String label;
+		private char[] keys = null;
+		private Node[] children = null;
+		private int size = 0;
+		private Map<String, Integer> texts = null;
+		private int best = 0;
+
+		Node(String label) {
+			this.label = label;
+		}
+
+		Node child(char first) {
+			int index = indexOf(first);
+			return index < 0 ? null : children[index];
+		}
+
+		int indexOf(char first) {
+			return size == 0 ? -1 : Arrays.binarySearch(keys, 0, size, first);
+		}
+
+		void insert(int index, Node child) {
+			if(children == null) {
+				keys = new char[2];
+				children = new Node[2];
+			} else if(size == children.length) {
+				keys = Arrays.copyOf(keys, size * 2);
+				children = Arrays.copyOf(children, size * 2);
+			}
+			System.arraycopy(keys, index, keys, index + 1, size - index);
+			System.arraycopy(children, index, children, index + 1, size - index);
+			keys[index] = child.label.charAt(0);
+			children[index] = child;
+			size++;
+		}
+
+		void remove(int index) {
+			System.arraycopy(keys, index + 1, keys, index, size - index - 1);
+			System.arraycopy(children, index + 1, children, index, size - index - 1);
+			children[--size] = null;
+		}
+
+	}
+
+	/**
+	 * A text to complete, or a node to expand, ordered by weight then key so ties complete in key order.
+	 * */
+	private static final class Candidate implements Comparable<Candidate> {
+
+		private final int weight;
+		private final String key;
+		private final String text;
+		private final Node node;
+
+		Candidate(int weight, String key, String text, Node node) {
+			this.weight = weight;
+			this.key = key;
+			this.text = text;
+			this.node = node;
+		}
+
+		@Override
+		public int compareTo(Candidate other) {
+			if(weight != other.weight) {
+				return Integer.compare(other.weight, weight);
+			}
+			int byKey = key.compareTo(other.key);
+			if(byKey != 0) {
+				return byKey;
+			}
+			if((node == null) != (other.node == null)) {
+				return node == null ? -1 : 1;		//texts ending at a node come before longer keys below it
+			}
+			return text == null ? 0 : text.compareTo(other.text);
+		}
+
+	}
+
+}
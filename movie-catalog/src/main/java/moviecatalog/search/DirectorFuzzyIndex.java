@@ -0,0 +1,294 @@
+package moviecatalog.search;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import moviecatalog.cache.AfterCommit;
+import moviecatalog.model.Director;
+import moviecatalog.repository.DirectorRepository;
+
+/**
+ * In-memory BK-tree of {@link Director} names finding the names within an edit (Levenshtein) distance of a misspelt query,
+ * ignoring case.
+ *
+ * Each node holds a distinct name, its children keyed by their distance to it. By the triangle inequality a name within
+ * the maximum distance of the query can only be under the children keyed within that distance of the node's own distance,
+ * so a search only compares the query to a small part of the names for small distances.
+ *
+ * Deleted names are left in the tree as empty nodes, the tree is rebuilt once they outnumber the live names.
+ * Writes are applied once their transaction commits.
+ *
+ * @author johnathanleif
+ *
+ * */
+@Component
+public class DirectorFuzzyIndex {
+
+	/**
+	 * Largest distance searched, beyond it most of the tree would be visited.
+	 * */
+	public static final int MAX_DISTANCE = 3;
+
+	private static final int MIN_REBUILD = 1000;
+
+	@Autowired
+	private DirectorRepository repository;
+
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	private Tree tree = new Tree();
+	private List<Consumer<Tree>> replay = null;		//updates committed during a reload, guarded by the lock
+
+	/**
+	 * Loads every {@link Director}, replacing the current tree.
+	 * Names saved or deleted while loading are updated in the loaded tree before it replaces the current one.
+	 * */
+	@PostConstruct
+	public synchronized void reload() {
+		lock.writeLock().lock();
+		try {
+			replay = new ArrayList<>();
+		} finally {
+			lock.writeLock().unlock();
+		}
+		Tree loaded = null;
+		try {
+			loaded = load();
+		} finally {
+			lock.writeLock().lock();
+			try {
+				if(loaded != null) {
+					for(Consumer<Tree> update: replay) {
+						update.accept(loaded);
+					}
+					tree = loaded;
+				}
+				replay = null;
+			} finally {
+				lock.writeLock().unlock();
+			}
+		}
+	}
+
+	/**
+	 * @return the IDs of at most limit {@link Director}s with names within maxDistance (clamped to [0, {@link #MAX_DISTANCE}]) edits of the query,
+	 * nearest first then ascending
+	 * */
+	public List<Integer> search(String query, int maxDistance, int limit) {
+		String folded = fold(query);
+		int distance = Math.max(0, Math.min(maxDistance, MAX_DISTANCE));
+		List<long[]> matches = new ArrayList<>();
+		lock.readLock().lock();
+		try {
+			tree.search(folded, distance, matches);
+		} finally {
+			lock.readLock().unlock();
+		}
+		matches.sort((a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(a[1], b[1]));
+		List<Integer> ids = new ArrayList<>(Math.min(limit, matches.size()));
+		for(int i = 0; i < matches.size() && i < limit; i++) {
+			ids.add((int) matches.get(i)[1]);
+		}
+		return ids;
+	}
+
+	/**
+	 * Records a saved (new or renamed) {@link Director}, after the current transaction commits if there is one.
+	 * */
+	public void saved(Director director) {
+		Integer id = director.getId();
+		String name = director.getName();
+		AfterCommit.execute(() -> update(id, name));
+	}
+
+	/**
+	 * Records saved {@link Director}s, after the current transaction commits if there is one.
+	 * */
+	public void savedAll(Iterable<Director> directors) {
+		for(Director director: directors) {
+			saved(director);
+		}
+	}
+
+	/**
+	 * Records a deleted {@link Director}, after the current transaction commits if there is one.
+	 * */
+	public void deleted(int id) {
+		AfterCommit.execute(() -> update(id, null));
+	}
+
+	private void update(Integer id, String name) {
+		Consumer<Tree> update = updated -> {
+			updated.remove(id);
+			updated.add(id, name);
+		};
+		lock.writeLock().lock();
+		try {
+			update.accept(tree);
+			if(replay != null) {
+				replay.add(update);
+			}
+			if(tree.emptyNodes > MIN_REBUILD && tree.emptyNodes > tree.nodes.size() - tree.emptyNodes) {
+				tree = tree.compacted();
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	private Tree load() {
+		Tree loaded = new Tree();
+		for(Director director: repository.findAll()) {
+			loaded.add(director.getId(), director.getName());
+		}
+		return loaded;
+	}
+
+	private static String fold(String name) {
+		return name.toLowerCase(Locale.ROOT);
+	}
+
+	/**
+	 * Levenshtein distance, insertions, deletions and substitutions costing 1.
+	 * Transpositions count as 2 so distances stay a metric, as the tree requires.
+	 * */
+	static int distance(String a, String b) {
+		if(a.length() < b.length()) {
+			String swap = a;
+			a = b;
+			b = swap;
+		}
+		int[] previous = new int[b.length() + 1];
+		int[] current = new int[b.length() + 1];
+		for(int j = 0; j <= b.length(); j++) {
+			previous[j] = j;
+		}
+		for(int i = 1; i <= a.length(); i++) {
+			current[0] = i;
+			char c = a.charAt(i - 1);
+			for(int j = 1; j <= b.length(); j++) {
+				int substitution = previous[j - 1] + (c == b.charAt(j - 1) ? 0 : 1);
+				current[j] = Math.min(substitution, Math.min(previous[j], current[j - 1]) + 1);
+			}
+			int[] swap = previous;
+			previous = current;
+			current = swap;
+		}
+		return previous[b.length()];
+	}
+
+	/**
+	 * Nodes by folded name and the names of the indexed IDs, only modified under the write lock.
+	 * */
+	private static final class Tree {
+
+		private Node root = null;
+		private final Map<String, Node> nodes = new HashMap<>();
+		private final Map<Integer, String> names = new HashMap<>();
+		private int emptyNodes = 0;
+
+		void add(Integer id, String name) {
+			if(name == null) {
+				return;
+			}
+			String folded = fold(name);
+			names.put(id, folded);
+			Node node = nodes.get(folded);
+			if(node == null) {
+				node = insert(folded);
+			} else if(node.ids.isEmpty()) {
+				emptyNodes--;
+			}
+			node.ids.add(id);
+		}
+
+		void remove(Integer id) {
+			String folded = names.remove(id);
+			if(folded == null) {
+				return;
+			}
+			Node node = nodes.get(folded);
+			if(node.ids.remove(id) && node.ids.isEmpty()) {
+				emptyNodes++;
+			}
+		}
+
+		void search(String query, int maxDistance, List<long[]> matches) {
+			if(root == null) {
+				return;
+			}
+			Deque<Node> pending = new ArrayDeque<>();
+			pending.push(root);
+			while(!pending.isEmpty()) {
+				Node node = pending.pop();
+				int distance = distance(query, node.name);
+				if(distance <= maxDistance) {
+					for(Integer id: node.ids) {
+						matches.add(new long[] {distance, id});
+					}
+				}
+				for(int key = Math.max(1, distance - maxDistance); key <= distance + maxDistance; key++) {
+					Node child = node.children.get(key);
+					if(child != null) {
+						pending.push(child);
+					}
+				}
+			}
+		}
+
+		Tree compacted() {
+			Tree compacted = new Tree();
+			for(Map.Entry<Integer, String> entry: names.entrySet()) {
+				compacted.add(entry.getKey(), entry.getValue());
+			}
+			return compacted;
+		}
+
+		private Node insert(String folded) {
+			Node inserted = new Node(folded);
+			nodes.put(folded, inserted);
+			if(root == null) {
+				root = inserted;
+				return inserted;
+			}
+			Node node = root;
+			while(true) {
+				int distance = distance(folded, node.name);		//never 0, names are distinct
+				Node child = node.children.get(distance);
+				if(child == null) {
+					node.children.put(distance, inserted);
+					return inserted;
+				}
+				node = child;
+			}
+		}
+
+	}
+
+	private static final class Node {
+
+		private final String name;
+		private final Set<Integer> ids = new HashSet<>(2);
+		private final Map<Integer, Node> children = new HashMap<>(4);
+
+		Node(String name) {
+			this.name = name;
+		}
+
+	}
+
+}
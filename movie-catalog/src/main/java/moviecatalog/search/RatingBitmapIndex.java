@@ -0,0 +1,251 @@
+package moviecatalog.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import moviecatalog.cache.AfterCommit;
+import moviecatalog.model.Movie;
+import moviecatalog.model.Rating;
+import moviecatalog.repository.MovieRepository;
+import moviecatalog.repository.RatingRepository;
+
+/**
+ * In-memory bitmaps of {@link Movie} IDs answering age-gated searches without joining the {@link Rating} table.
+ *
+ * Each rating has a bitmap of the IDs of its movies. From them a view sorted by age limit holds, for each distinct age limit,
+ * the movies rated at or below it, so "suitable for age N" is the bitmap at the greatest age limit not above N and
+ * "rated above age limit L" is every rated movie not in the bitmap at L. Movies without a rating are in neither.
+ *
+ * Movie writes flip one bit per distinct age limit, rating writes rebuild the sorted view from the per-rating bitmaps.
+ * Writes are applied once their transaction commits.
+ *
+ * @author johnathanleif
+ *
+ * */
+@Component
+public class RatingBitmapIndex {
+
+	@Autowired
+	private MovieRepository movieRepository;
+
+	@Autowired
+	private RatingRepository ratingRepository;
+
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	private Index index = new Index();
+	private List<Consumer<Index>> replay = null;		//writes committed during a reload, guarded by the lock
+
+	/**
+	 * Loads the {@link Rating} of every {@link Movie}, replacing the current bitmaps.
+	 * Writes committed while loading are applied to the loaded bitmaps before they replace the current ones.
+	 * */
+	@PostConstruct
+	public synchronized void reload() {
+		lock.writeLock().lock();
+		try {
+			replay = new ArrayList<>();
+		} finally {
+			lock.writeLock().unlock();
+		}
+		Index loaded = null;
+		try {
+			loaded = load();
+		} finally {
+			lock.writeLock().lock();
+			try {
+				if(loaded != null) {
+					for(Consumer<Index> update: replay) {
+						update.accept(loaded);
+					}
+					index = loaded;
+				}
+				replay = null;
+			} finally {
+				lock.writeLock().unlock();
+			}
+		}
+	}
+
+	/**
+	 * @return up to limit IDs greater than after, ascending, of {@link Movie}s rated above the age limit (and within the given IDs if not null)
+	 * */
+	public List<Integer> findIdsRatedAbove(int ageLimit, BitSet within, int after, int limit) {
+		lock.readLock().lock();
+		try {
+			Map.Entry<Integer, BitSet> atMost = index.atMost.floorEntry(ageLimit);
+			return index.select(index.rated, atMost == null ? null : atMost.getValue(), within, after, limit);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @return up to limit IDs greater than after, ascending, of {@link Movie}s with age limits not above the age (and within the given IDs if not null)
+	 * */
+	public List<Integer> findIdsSuitableForAge(int age, BitSet within, int after, int limit) {
+		lock.readLock().lock();
+		try {
+			Map.Entry<Integer, BitSet> atMost = index.atMost.floorEntry(age);
+			return atMost == null ? new ArrayList<>() : index.select(atMost.getValue(), null, within, after, limit);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Records the {@link Rating} of a saved {@link Movie}, after the current transaction commits if there is one.
+	 * */
+	public void saved(Movie movie) {
+		int id = movie.getId();
+		Integer ratingId = movie.getRating() == null ? null : movie.getRating().getId();
+		AfterCommit.execute(() -> write(loaded -> loaded.rate(id, ratingId)));
+	}
+
+	/**
+	 * Records a deleted {@link Movie}, after the current transaction commits if there is one.
+	 * */
+	public void deleted(int id) {
+		AfterCommit.execute(() -> write(loaded -> loaded.rate(id, null)));
+	}
+
+	/**
+	 * Records a saved (new or changed) {@link Rating}, after the current transaction commits if there is one.
+	 * */
+	public void ratingSaved(Rating rating) {
+		int id = rating.getId();
+		Integer ageLimit = rating.getAgeLimit();
+		AfterCommit.execute(() -> write(loaded -> {
+			loaded.ageLimits.put(id, ageLimit);
+			loaded.sortByAgeLimit();
+		}));
+	}
+
+	/**
+	 * Records a deleted {@link Rating}, its movies left without a rating, after the current transaction commits if there is one.
+	 * */
+	public void ratingDeleted(int id) {
+		AfterCommit.execute(() -> write(loaded -> {
+			BitSet movies = loaded.byRating.remove(id);
+			for(int movie = movies == null ? -1 : movies.nextSetBit(0); movie >= 0; movie = movies.nextSetBit(movie + 1)) {
+				loaded.ratingOf[movie] = 0;
+			}
+			loaded.ageLimits.remove(id);
+			loaded.sortByAgeLimit();
+		}));
+	}
+
+	private void write(Consumer<Index> update) {
+		lock.writeLock().lock();
+		try {
+			update.accept(index);
+			if(replay != null) {
+				replay.add(update);
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	private Index load() {
+		Index loaded = new Index();
+		for(Rating rating: ratingRepository.findAll()) {
+			loaded.ageLimits.put(rating.getId(), rating.getAgeLimit());
+		}
+		for(Object[] rated: movieRepository.findAllIdsAndRatingIds()) {
+			loaded.rate((Integer) rated[0], (Integer) rated[1]);
+		}
+		loaded.sortByAgeLimit();
+		return loaded;
+	}
+
+	/**
+	 * Per-rating bitmaps and the view by age limit derived from them, only modified under the write lock.
+	 * */
+	private static final class Index {
+
+		private int[] ratingOf = new int[0];		//rating ID by movie ID, 0 if none
+		private final Map<Integer, BitSet> byRating = new HashMap<>();
+		private final Map<Integer, Integer> ageLimits = new HashMap<>();
+		private NavigableMap<Integer, BitSet> atMost = new TreeMap<>();		//movies rated at or below each age limit
+		private BitSet rated = new BitSet();		//movies with a rating with an age limit
+
+		void rate(int movie, Integer ratingId) {
+			if(movie < ratingOf.length && ratingOf[movie] != 0) {
+				int previous = ratingOf[movie];
+				byRating.get(previous).clear(movie);
+				flip(movie, ageLimits.get(previous), false);
+				ratingOf[movie] = 0;
+			}
+			if(ratingId != null && ageLimits.containsKey(ratingId)) {
+				if(movie >= ratingOf.length) {
+					ratingOf = Arrays.copyOf(ratingOf, Math.max(movie + 1, ratingOf.length * 3 / 2));
+				}
+				ratingOf[movie] = ratingId;
+				byRating.computeIfAbsent(ratingId, id -> new BitSet()).set(movie);
+				flip(movie, ageLimits.get(ratingId), true);
+			}
+		}
+
+		void sortByAgeLimit() {
+			NavigableMap<Integer, BitSet> byAgeLimit = new TreeMap<>();
+			for(Map.Entry<Integer, BitSet> movies: byRating.entrySet()) {
+				Integer ageLimit = ageLimits.get(movies.getKey());
+				if(ageLimit != null) {
+					byAgeLimit.computeIfAbsent(ageLimit, limit -> new BitSet()).or(movies.getValue());
+				}
+			}
+			for(Integer ageLimit: ageLimits.values()) {
+				if(ageLimit != null) {
+					byAgeLimit.putIfAbsent(ageLimit, new BitSet());
+				}
+			}
+			BitSet cumulative = new BitSet();
+			for(Map.Entry<Integer, BitSet> movies: byAgeLimit.entrySet()) {
+				cumulative.or(movies.getValue());
+				movies.setValue((BitSet) cumulative.clone());
+			}
+			atMost = byAgeLimit;
+			rated = cumulative;
+		}
+
+		/**
+		 * @return up to limit IDs greater than after in included and within but not excluded, iterating the sparser within if given
+		 * */
+		List<Integer> select(BitSet included, BitSet excluded, BitSet within, int after, int limit) {
+			BitSet driver = within != null ? within : included;
+			List<Integer> ids = new ArrayList<>(Math.min(limit, 1024));
+			for(int id = driver.nextSetBit(after + 1); id >= 0 && ids.size() < limit; id = driver.nextSetBit(id + 1)) {
+				if(included.get(id) && (excluded == null || !excluded.get(id))) {
+					ids.add(id);
+				}
+			}
+			return ids;
+		}
+
+		private void flip(int movie, Integer ageLimit, boolean value) {
+			if(ageLimit == null) {
+				return;
+			}
+			for(BitSet movies: atMost.tailMap(ageLimit, true).values()) {
+				movies.set(movie, value);
+			}
+			rated.set(movie, value);
+		}
+
+	}
+
+}
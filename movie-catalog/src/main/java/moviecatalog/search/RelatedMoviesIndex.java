@@ -0,0 +1,418 @@
+package moviecatalog.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+import javax.annotation.PostConstruct;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import moviecatalog.cache.AfterCommit;
+import moviecatalog.model.Director;
+import moviecatalog.model.Movie;
+import moviecatalog.model.Rating;
+import moviecatalog.repository.MovieRepository;
+
+/**
+ * In-memory adjacency of the movie to {@link Director} graph ranking the movies related to a movie by the directors they share.
+ *
+ * A related movie scores its shared directors over the geometric mean of both movies' director counts (cosine similarity),
+ * so a director shared by two films of a large co-directing team weighs less than the sole director of both.
+ * A related movie with the same {@link Rating} scores {@link #SAME_RATING_WEIGHT} times more.
+ *
+ * The movies of each director are held sorted by ID, so the candidates are found by walking the lists of the movie's directors
+ * together, counting the lists at each ID, with no per-query score table. Movies of prolific directors are scored in parallel,
+ * each fork-join task walking one range of IDs into its own bounded min-heap, the best of which are merged.
+ *
+ * Saved and deleted movies, deleted directors and deleted ratings are applied once their transaction commits,
+ * including while a rebuild is running.
+ *
+ * @author johnathanleif
+ *
+ * */
+@Component
+public class RelatedMoviesIndex {
+
+	private static final Logger log = LoggerFactory.getLogger(RelatedMoviesIndex.class);
+
+	static final float SAME_RATING_WEIGHT = 1.25f;
+	private static final int MIN_PARALLEL_EDGES = 20000;
+
+	@Autowired
+	private MovieRepository repository;
+
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	private Graph graph = new Graph();
+	private List<Consumer<Graph>> replay = null;		//updates committed during a rebuild, guarded by the lock
+
+	/**
+	 * Loads every movie to director join and movie rating, replacing the current graph.
+	 * */
+	@PostConstruct
+	public synchronized void reload() {
+		long start = System.nanoTime();
+		lock.writeLock().lock();
+		try {
+			replay = new ArrayList<>();
+		} finally {
+			lock.writeLock().unlock();
+		}
+		Graph loaded = null;
+		try {
+			loaded = load();
+		} finally {
+			lock.writeLock().lock();
+			try {
+				if(loaded != null) {
+					for(Consumer<Graph> update: replay) {
+						update.accept(loaded);
+					}
+					graph = loaded;
+				}
+				replay = null;
+			} finally {
+				lock.writeLock().unlock();
+			}
+		}
+		log.info("Loaded movie to director graph of {} movies in {}ms.", loaded.movies, (System.nanoTime() - start) / 1000000);
+	}
+
+	/**
+	 * @return the IDs of at most limit {@link Movie}s sharing a director with the movie, most related first and ties by ID,
+	 * null if there is no movie with the ID
+	 * */
+	public List<Integer> findRelatedIds(int id, int limit) {
+		lock.readLock().lock();
+		try {
+			return graph.related(id, limit);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Records a saved (new or changed) {@link Movie}, after the current transaction commits if there is one.
+	 * */
+	public void saved(Movie movie) {
+		int id = movie.getId();
+		int ratingId = movie.getRating() == null || movie.getRating().getId() == null ? 0 : movie.getRating().getId();
+		int[] directorIds = movie.getDirectors() == null ? new int[0]
+				: movie.getDirectors().stream().mapToInt(Director::getId).distinct().sorted().toArray();
+		AfterCommit.execute(() -> apply(graph -> graph.movieSaved(id, ratingId, directorIds)));
+	}
+
+	/**
+	 * Records a deleted {@link Movie}, after the current transaction commits if there is one.
+	 * */
+	public void deleted(int id) {
+		AfterCommit.execute(() -> apply(graph -> graph.movieDeleted(id)));
+	}
+
+	/**
+	 * Records a deleted {@link Director}, no longer linking its movies, after the current transaction commits if there is one.
+	 * */
+	public void directorDeleted(int id) {
+		AfterCommit.execute(() -> apply(graph -> graph.directorDeleted(id)));
+	}
+
+	/**
+	 * Records a deleted {@link Rating}, cleared from its movies, after the current transaction commits if there is one.
+	 * */
+	public void ratingDeleted(int id) {
+		AfterCommit.execute(() -> apply(graph -> graph.ratingDeleted(id)));
+	}
+
+	private void apply(Consumer<Graph> update) {
+		lock.writeLock().lock();
+		try {
+			update.accept(graph);
+			if(replay != null) {
+				replay.add(update);
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	private Graph load() {
+		List<Object[]> titles = repository.findAllIdsAndTitles();
+		Graph loaded = new Graph();
+		int maxId = titles.isEmpty() ? 0 : (Integer) titles.get(titles.size() - 1)[0];
+		loaded.movieDirectors = new int[maxId + 1][];
+		loaded.movieRatings = new int[maxId + 1];
+		for(Object[] title: titles) {
+			loaded.movieDirectors[(Integer) title[0]] = Graph.NONE;
+			loaded.movies++;
+		}
+		for(Object[] rated: repository.findAllIdsAndRatingIds()) {
+			loaded.movieRatings[(Integer) rated[0]] = (Integer) rated[1];
+		}
+		List<Object[]> joins = repository.findAllIdsAndDirectorIds();
+		int[] movieCounts = new int[maxId + 1];
+		int[] directorCounts = new int[0];
+		for(Object[] join: joins) {
+			int movieId = ((Number) join[0]).intValue();
+			int directorId = ((Number) join[1]).intValue();
+			if(movieId <= maxId && loaded.movieDirectors[movieId] != null) {		//skips joins of movies committed after the titles were read
+				movieCounts[movieId]++;
+				if(directorId >= directorCounts.length) {
+					directorCounts = Arrays.copyOf(directorCounts, Math.max(directorId + 1, directorCounts.length * 3 / 2));
+				}
+				directorCounts[directorId]++;
+			}
+		}
+		loaded.directorMovies = new int[directorCounts.length][];
+		for(int directorId = 0; directorId < directorCounts.length; directorId++) {
+			if(directorCounts[directorId] > 0) {
+				loaded.directorMovies[directorId] = new int[directorCounts[directorId]];
+				directorCounts[directorId] = 0;
+			}
+		}
+		for(int movieId = 0; movieId <= maxId; movieId++) {
+			if(movieCounts[movieId] > 0) {
+				loaded.movieDirectors[movieId] = new int[movieCounts[movieId]];
+				movieCounts[movieId] = 0;
+			}
+		}
+		for(Object[] join: joins) {
+			int movieId = ((Number) join[0]).intValue();
+			int directorId = ((Number) join[1]).intValue();
+			if(movieId <= maxId && loaded.movieDirectors[movieId] != null && loaded.movieDirectors[movieId].length > 0) {
+				loaded.movieDirectors[movieId][movieCounts[movieId]++] = directorId;
+				loaded.directorMovies[directorId][directorCounts[directorId]++] = movieId;
+			}
+		}
+		for(int[] directors: loaded.movieDirectors) {
+			if(directors != null) {
+				Arrays.sort(directors);
+			}
+		}
+		for(int[] movies: loaded.directorMovies) {
+			if(movies != null) {
+				Arrays.sort(movies);
+			}
+		}
+		return loaded;
+	}
+
+	/**
+	 * Director IDs and rating ID of each movie and movie IDs of each director, by ID, only modified under the write lock.
+	 * */
+	private static final class Graph {
+
+		private static final int[] NONE = new int[0];
+
+		private int[][] movieDirectors = new int[0][];		//ascending, null for no movie, empty for a movie without directors
+		private int[] movieRatings = new int[0];		//0 for none
+		private int[][] directorMovies = new int[0][];		//ascending, null for none
+		private int movies = 0;
+
+		void movieSaved(int id, int ratingId, int[] directorIds) {
+			movieDeleted(id);
+			if(id >= movieDirectors.length) {
+				int length = Math.max(id + 1, movieDirectors.length * 3 / 2);
+				movieDirectors = Arrays.copyOf(movieDirectors, length);
+				movieRatings = Arrays.copyOf(movieRatings, length);
+			}
+			movieDirectors[id] = directorIds;
+			movieRatings[id] = ratingId;
+			movies++;
+			for(int directorId: directorIds) {
+				if(directorId >= directorMovies.length) {
+					directorMovies = Arrays.copyOf(directorMovies, Math.max(directorId + 1, directorMovies.length * 3 / 2));
+				}
+				directorMovies[directorId] = with(directorMovies[directorId], id);
+			}
+		}
+
+		void movieDeleted(int id) {
+			if(id >= movieDirectors.length || movieDirectors[id] == null) {
+				return;
+			}
+			for(int directorId: movieDirectors[id]) {
+				directorMovies[directorId] = without(directorMovies[directorId], id);
+			}
+			movieDirectors[id] = null;
+			movieRatings[id] = 0;
+			movies--;
+		}
+
+		void directorDeleted(int id) {
+			if(id >= directorMovies.length || directorMovies[id] == null) {
+				return;
+			}
+			for(int movieId: directorMovies[id]) {
+				movieDirectors[movieId] = without(movieDirectors[movieId], id);
+			}
+			directorMovies[id] = null;
+		}
+
+		void ratingDeleted(int id) {
+			for(int movieId = 0; movieId < movieRatings.length; movieId++) {
+				if(movieRatings[movieId] == id) {
+					movieRatings[movieId] = 0;
+				}
+			}
+		}
+
+		List<Integer> related(int id, int limit) {
+			if(id < 0 || id >= movieDirectors.length || movieDirectors[id] == null) {
+				return null;
+			}
+			List<int[]> lists = new ArrayList<>();
+			long edges = 0;
+			int low = Integer.MAX_VALUE;
+			int high = 0;
+			for(int directorId: movieDirectors[id]) {
+				int[] list = directorMovies[directorId];
+				if(list != null && list.length > 0) {
+					lists.add(list);
+					edges += list.length;
+					low = Math.min(low, list[0]);
+					high = Math.max(high, list[list.length - 1] + 1);
+				}
+			}
+			if(lists.isEmpty() || limit < 1) {
+				return new ArrayList<>();
+			}
+			int parts = edges < MIN_PARALLEL_EDGES ? 1 : (int) Math.min(ForkJoinPool.getCommonPoolParallelism(), edges / MIN_PARALLEL_EDGES + 1);
+			PriorityQueue<Scored> best;
+			if(parts < 2) {
+				best = score(id, lists, low, high, limit);
+			} else {
+				long size = ((long) high - low + parts - 1) / parts;
+				List<int[]> ranges = new ArrayList<>();
+				for(long from = low; from < high; from += size) {
+					ranges.add(new int[] {(int) from, (int) Math.min(from + size, high)});
+				}
+				best = ranges.parallelStream()
+						.map(range -> score(id, lists, range[0], range[1], limit))
+						.reduce((merged, part) -> {
+							for(Scored scored: part) {
+								offer(merged, scored, limit);
+							}
+							return merged;
+						}).get();
+			}
+			Integer[] ranked = new Integer[best.size()];
+			for(int i = ranked.length - 1; i >= 0; i--) {
+				ranked[i] = best.poll().id;
+			}
+			return Arrays.asList(ranked);
+		}
+
+		/**
+		 * Walks the director movie lists together over the IDs from low to high (exclusive), scoring each movie met.
+		 * @return the best movies other than the movie itself, worst at the head
+		 * */
+		private PriorityQueue<Scored> score(int id, List<int[]> lists, int low, int high, int limit) {
+			int count = lists.size();
+			int[] cursors = new int[count];
+			for(int l = 0; l < count; l++) {
+				int at = Arrays.binarySearch(lists.get(l), low);
+				cursors[l] = at >= 0 ? at : -(at + 1);
+			}
+			int directors = movieDirectors[id].length;
+			int ratingId = movieRatings[id];
+			PriorityQueue<Scored> best = new PriorityQueue<>(limit + 1);
+			while(true) {
+				int candidate = high;
+				for(int l = 0; l < count; l++) {
+					int[] list = lists.get(l);
+					if(cursors[l] < list.length && list[cursors[l]] < candidate) {
+						candidate = list[cursors[l]];
+					}
+				}
+				if(candidate == high) {
+					return best;
+				}
+				int shared = 0;
+				for(int l = 0; l < count; l++) {
+					int[] list = lists.get(l);
+					if(cursors[l] < list.length && list[cursors[l]] == candidate) {
+						shared++;
+						cursors[l]++;
+					}
+				}
+				if(candidate != id && movieDirectors[candidate] != null) {
+					float score = (float) (shared / Math.sqrt((double) directors * movieDirectors[candidate].length));
+					if(ratingId != 0 && movieRatings[candidate] == ratingId) {
+						score *= SAME_RATING_WEIGHT;
+					}
+					offer(best, new Scored(candidate, score), limit);
+				}
+			}
+		}
+
+		private static void offer(PriorityQueue<Scored> best, Scored scored, int limit) {
+			if(best.size() < limit) {
+				best.add(scored);
+			} else if(scored.compareTo(best.peek()) > 0) {
+				best.poll();
+				best.add(scored);
+			}
+		}
+
+		private static int[] with(int[] ids, int id) {
+			if(ids == null) {
+				return new int[] {id};
+			}
+			int at = Arrays.binarySearch(ids, id);
+			if(at >= 0) {
+				return ids;
+			}
+			at = -(at + 1);
+			int[] added = new int[ids.length + 1];
+			System.arraycopy(ids, 0, added, 0, at);
+			added[at] = id;
+			System.arraycopy(ids, at, added, at + 1, ids.length - at);
+			return added;
+		}
+
+		private static int[] without(int[] ids, int id) {
+			if(ids == null) {
+				return null;
+			}
+			int at = Arrays.binarySearch(ids, id);
+			if(at < 0) {
+				return ids;
+			}
+			if(ids.length == 1) {
+				return NONE;
+			}
+			int[] removed = new int[ids.length - 1];
+			System.arraycopy(ids, 0, removed, 0, at);
+			System.arraycopy(ids, at + 1, removed, at, removed.length - at);
+			return removed;
+		}
+
+	}
+
+	private static final class Scored implements Comparable<Scored> {
+
+		private final int id;
+		private final float score;
+
+		Scored(int id, float score) {
+			this.id = id;
+			this.score = score;
+		}
+
+		@Override
+		public int compareTo(Scored other) {		//worst first: lowest score, then highest ID
+			int byScore = Float.compare(score, other.score);
+			return byScore != 0 ? byScore : Integer.compare(other.id, id);
+		}
+
+	}
+
+}
@@ -0,0 +1,371 @@
+package moviecatalog.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+import javax.annotation.PostConstruct;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import moviecatalog.cache.AfterCommit;
+import moviecatalog.model.Movie;
+import moviecatalog.repository.MovieRepository;
+
+/**
+ * In-memory inverted index of {@link Movie} titles ranking matches with BM25.
+ *
+ * Each term (see {@link TitleTokenizer}) has a posting list of the IDs of movies with it, sorted by ID, with its frequency in each title.
+ * A query walks the posting lists of its terms together one movie at a time, so no per-query score table is allocated,
+ * keeping the best k movies in a bounded min-heap.
+ *
+ * The index is built at startup from every title, partitions of the catalog indexed in parallel and then merged.
+ * Saved and deleted movies are applied once their transaction commits, including while a rebuild is running.
+ *
+ * @author johnathanleif
+ *
+ * */
+@Component
+public class TitleSearchIndex {
+
+	private static final Logger log = LoggerFactory.getLogger(TitleSearchIndex.class);
+
+	private static final float K1 = 1.2f;
+	private static final float B = 0.75f;
+	private static final int MIN_PARTITION = 10000;
+
+	@Autowired
+	private MovieRepository repository;
+
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	private Index index = new Index(new int[0][]);
+	private List<Update> replay = null;		//updates committed during a rebuild, guarded by the lock
+
+	/**
+	 * Indexes every {@link Movie} title in parallel, replacing the current index.
+	 * */
+	@PostConstruct
+	public synchronized void reload() {
+		long start = System.nanoTime();
+		lock.writeLock().lock();
+		try {
+			replay = new ArrayList<>();
+		} finally {
+			lock.writeLock().unlock();
+		}
+		Index loaded = null;
+		try {
+			loaded = build(repository.findAllIdsAndTitles());
+		} finally {
+			lock.writeLock().lock();
+			try {
+				if(loaded != null) {
+					for(Update update: replay) {
+						update.applyTo(loaded);
+					}
+					index = loaded;
+				}
+				replay = null;
+			} finally {
+				lock.writeLock().unlock();
+			}
+		}
+		log.info("Indexed {} movie titles ({} terms) in {}ms.", loaded.documents, loaded.terms.size(), (System.nanoTime() - start) / 1000000);
+	}
+
+	/**
+	 * @return the IDs of at most limit {@link Movie}s with titles matching any term of the query, best match first
+	 * */
+	public List<Integer> search(String query, int limit) {
+		List<String> terms = new ArrayList<>(new LinkedHashSet<>(TitleTokenizer.tokenize(query)));
+		lock.readLock().lock();
+		try {
+			return index.search(terms, limit);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Records a saved (new or retitled) {@link Movie}, after the current transaction commits if there is one.
+	 * */
+	public void saved(Movie movie) {
+		Update update = new Update(movie.getId(), movie.getTitle());
+		AfterCommit.execute(() -> apply(update));
+	}
+
+	/**
+	 * Records a deleted {@link Movie}, after the current transaction commits if there is one.
+	 * */
+	public void deleted(int id) {
+		AfterCommit.execute(() -> apply(new Update(id, null)));
+	}
+
+	private void apply(Update update) {
+		lock.writeLock().lock();
+		try {
+			update.applyTo(index);
+			if(replay != null) {
+				replay.add(update);
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	private static Index build(List<Object[]> titles) {
+		int maxId = titles.isEmpty() ? 0 : (Integer) titles.get(titles.size() - 1)[0];
+		int[][] titleTerms = new int[maxId + 1][];		//shared, partitions write disjoint IDs
+		int partitions = Math.max(1, Math.min(ForkJoinPool.getCommonPoolParallelism(), titles.size() / MIN_PARTITION));
+		int size = (titles.size() + partitions - 1) / partitions;
+		List<List<Object[]>> ranges = new ArrayList<>();
+		for(int from = 0; from < titles.size(); from += size) {
+			ranges.add(titles.subList(from, Math.min(from + size, titles.size())));
+		}
+		List<Index> built = ranges.parallelStream()
+				.map(range -> {
+					Index part = new Index(titleTerms);
+					for(Object[] row: range) {
+						part.add((Integer) row[0], TitleTokenizer.tokenize((String) row[1]));
+					}
+					return part;
+				})
+				.collect(Collectors.toList());
+		Index merged = new Index(titleTerms);
+		for(int i = 0; i < built.size(); i++) {
+			merged.merge(built.get(i), ranges.get(i));
+		}
+		return merged;
+	}
+
+	/**
+	 * A committed title change, null for a deleted movie.
+	 * */
+	private static final class Update {
+
+		private final int id;
+		private final String title;
+
+		Update(int id, String title) {
+			this.id = id;
+			this.title = title;
+		}
+
+		void applyTo(Index index) {
+			index.remove(id);
+			index.add(id, TitleTokenizer.tokenize(title));
+		}
+
+	}
+
+	/**
+	 * Term dictionary, postings and the terms of each indexed title by movie ID, only modified under the write lock.
+	 * */
+	private static final class Index {
+
+		private final Map<String, Integer> terms = new HashMap<>();
+		private final List<Posting> postings = new ArrayList<>();
+		private int[][] titleTerms;		//term numbers of each title, by movie ID
+		private int documents = 0;
+		private long totalLength = 0;
+
+		Index(int[][] titleTerms) {
+			this.titleTerms = titleTerms;
+		}
+
+		void add(int id, List<String> tokens) {
+			if(tokens.isEmpty()) {		//never matched
+				return;
+			}
+			if(id >= titleTerms.length) {
+				titleTerms = Arrays.copyOf(titleTerms, Math.max(id + 1, titleTerms.length * 3 / 2));
+			}
+			int[] numbers = new int[tokens.size()];
+			for(int i = 0; i < numbers.length; i++) {
+				numbers[i] = number(tokens.get(i));
+			}
+			titleTerms[id] = numbers;
+			int[] sorted = numbers.clone();
+			Arrays.sort(sorted);
+			for(int i = 0, frequency = 1; i < sorted.length; i++, frequency++) {
+				if(i + 1 == sorted.length || sorted[i + 1] != sorted[i]) {
+					postings.get(sorted[i]).insert(id, frequency);
+					frequency = 0;
+				}
+			}
+			documents++;
+			totalLength += numbers.length;
+		}
+
+		void remove(int id) {
+			if(id >= titleTerms.length || titleTerms[id] == null) {
+				return;
+			}
+			int[] numbers = titleTerms[id];
+			for(int number: numbers) {
+				postings.get(number).remove(id);		//repeated terms already removed are skipped
+			}
+			titleTerms[id] = null;
+			documents--;
+			totalLength -= numbers.length;
+		}
+
+		/**
+		 * Appends a partition of titles with IDs all greater than this index's, renumbering the partition's terms.
+		 * */
+		void merge(Index part, List<Object[]> titles) {
+			int[] numbers = new int[part.postings.size()];
+			for(Map.Entry<String, Integer> term: part.terms.entrySet()) {
+				numbers[term.getValue()] = number(term.getKey());
+				postings.get(numbers[term.getValue()]).append(part.postings.get(term.getValue()));
+			}
+			for(Object[] row: titles) {
+				int[] title = titleTerms[(Integer) row[0]];
+				for(int i = 0; title != null && i < title.length; i++) {
+					title[i] = numbers[title[i]];
+				}
+			}
+			documents += part.documents;
+			totalLength += part.totalLength;
+		}
+
+		private int number(String term) {
+			return terms.computeIfAbsent(term, key -> {
+				postings.add(new Posting());
+				return postings.size() - 1;
+			});
+		}
+
+		List<Integer> search(List<String> queryTerms, int limit) {
+			List<Posting> matched = new ArrayList<>();
+			for(String term: queryTerms) {
+				Integer number = terms.get(term);
+				if(number != null && postings.get(number).size > 0) {
+					matched.add(postings.get(number));
+				}
+			}
+			if(matched.isEmpty() || limit < 1) {
+				return Collections.emptyList();
+			}
+			int count = matched.size();
+			float[] idf = new float[count];
+			for(int t = 0; t < count; t++) {
+				int frequency = matched.get(t).size;
+				idf[t] = (float) Math.log(1 + (documents - frequency + 0.5) / (frequency + 0.5));
+			}
+			float averageLength = (float) totalLength / documents;
+			int[] cursors = new int[count];
+			PriorityQueue<Scored> best = new PriorityQueue<>(limit + 1);
+			while(true) {
+				int id = Integer.MAX_VALUE;
+				for(int t = 0; t < count; t++) {
+					Posting posting = matched.get(t);
+					if(cursors[t] < posting.size && posting.ids[cursors[t]] < id) {
+						id = posting.ids[cursors[t]];
+					}
+				}
+				if(id == Integer.MAX_VALUE) {
+					break;
+				}
+				float norm = K1 * (1 - B + B * titleTerms[id].length / averageLength);
+				float score = 0;
+				for(int t = 0; t < count; t++) {
+					Posting posting = matched.get(t);
+					if(cursors[t] < posting.size && posting.ids[cursors[t]] == id) {
+						int frequency = posting.frequencies[cursors[t]++];
+						score += idf[t] * frequency * (K1 + 1) / (frequency + norm);
+					}
+				}
+				if(best.size() < limit) {
+					best.add(new Scored(id, score));
+				} else if(score > best.peek().score) {		//ties keep the lower ID, met first
+					best.poll();
+					best.add(new Scored(id, score));
+				}
+			}
+			Integer[] ranked = new Integer[best.size()];
+			for(int i = ranked.length - 1; i >= 0; i--) {
+				ranked[i] = best.poll().id;
+			}
+			return Arrays.asList(ranked);
+		}
+
+	}
+
+	/**
+	 * IDs of the movies with a term in ascending order, with the term's frequency in each title.
+	 * */
+	private static final class Posting {
+
+		private int[] ids = new int[2];
+		private byte[] frequencies = new byte[2];
+		private int size = 0;
+
+		void insert(int id, int frequency) {
+			int at = size == 0 || ids[size - 1] < id ? size : -(Arrays.binarySearch(ids, 0, size, id) + 1);
+			if(at < 0) {		//already present
+				return;
+			}
+			if(size == ids.length) {
+				ids = Arrays.copyOf(ids, size * 2);
+				frequencies = Arrays.copyOf(frequencies, size * 2);
+			}
+			System.arraycopy(ids, at, ids, at + 1, size - at);
+			System.arraycopy(frequencies, at, frequencies, at + 1, size - at);
+			ids[at] = id;
+			frequencies[at] = (byte) Math.min(frequency, Byte.MAX_VALUE);
+			size++;
+		}
+
+		void remove(int id) {
+			int at = Arrays.binarySearch(ids, 0, size, id);
+			if(at >= 0) {
+				System.arraycopy(ids, at + 1, ids, at, size - at - 1);
+				System.arraycopy(frequencies, at + 1, frequencies, at, size - at - 1);
+				size--;
+			}
+		}
+
+		void append(Posting other) {
+			if(size + other.size > ids.length) {
+				ids = Arrays.copyOf(ids, size + other.size);
+				frequencies = Arrays.copyOf(frequencies, size + other.size);
+			}
+			System.arraycopy(other.ids, 0, ids, size, other.size);
+			System.arraycopy(other.frequencies, 0, frequencies, size, other.size);
+			size += other.size;
+		}
+
+	}
+
+	private static final class Scored implements Comparable<Scored> {
+
+		private final int id;
+		private final float score;
+
+		Scored(int id, float score) {
+			this.id = id;
+			this.score = score;
+		}
+
+		@Override
+		public int compareTo(Scored other) {		//worst first: lowest score, then highest ID
+			int byScore = Float.compare(score, other.score);
+			return byScore != 0 ? byScore : Integer.compare(other.id, id);
+		}
+
+	}
+
+}
@@ -0,0 +1,74 @@
+package moviecatalog.search;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Splits titles and queries into search terms: runs of letters and digits, lower cased and with accents removed,
+ * so an accented title is found by the same query typed without accents, in any case.
+ *
+ * @author johnathanleif
+ *
+ * */
+public final class TitleTokenizer {
+
+	private TitleTokenizer() {
+	}
+
+	/**
+	 * @return the terms of the text in order, with repeats
+	 * */
+	public static List<String> tokenize(String text) {
+		List<String> terms = new ArrayList<>();
+		if(text == null) {
+			return terms;
+		}
+		String folded = fold(text);
+		int start = -1;
+		for(int i = 0; i <= folded.length(); i++) {
+			boolean inTerm = i < folded.length() && Character.isLetterOrDigit(folded.charAt(i));
+			if(inTerm && start < 0) {
+				start = i;
+			} else if(!inTerm && start >= 0) {
+				terms.add(folded.substring(start, i));
+				start = -1;
+			}
+		}
+		return terms;
+	}
+
+	/**
+	 * @return the text lower cased and with accents removed
+	 * */
+	static String fold(String text) {
+		String lower = text.toLowerCase(Locale.ROOT);
+		boolean ascii = true;
+		for(int i = 0; i < lower.length() && ascii; i++) {
+			ascii = lower.charAt(i) < 0x80;
+		}
+		if(ascii) {		//most titles, skip normalisation
+			return lower;
+		}
+		String decomposed = Normalizer.normalize(lower, Normalizer.Form.NFKD);
+		StringBuilder folded = new StringBuilder(decomposed.length());
+		for(int i = 0; i < decomposed.length(); i++) {
+			char c = decomposed.charAt(i);
+			switch(c) {
+				case '\u00df': folded.append("ss"); break;
+				case '\u00e6': folded.append("ae"); break;
+				case '\u0153': folded.append("oe"); break;
+				case '\u00f8': folded.append('o'); break;
+				case '\u0142': folded.append('l'); break;
+				case '\u0111': folded.append('d'); break;
+				default:
+					if(Character.getType(c) != Character.NON_SPACING_MARK) {		//accents split off by the decomposition
+						folded.append(c);
+					}
+			}
+		}
+		return folded.toString();
+	}
+
+}
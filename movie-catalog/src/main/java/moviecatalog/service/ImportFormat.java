@@ -0,0 +1,182 @@
+package moviecatalog.service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+
+import org.springframework.http.MediaType;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import moviecatalog.model.Director;
+import moviecatalog.model.Movie;
+import moviecatalog.model.Rating;
+
+/**
+ * Line formats accepted by the {@link MovieImportService}, each line parsed into an unsaved {@link Movie}
+ * whose {@link Rating} and {@link Director}s are identified by symbol and name only.
+ *
+ * @author johnathanleif
+ *
+ * */
+public enum ImportFormat {
+
+	/**
+	 * Comma separated values with a header line of "title,rating,age_limit,directors", directors separated by ";".
+	 * Fields may be double quoted (quotes escaped by doubling), but may not span lines.
+	 * */
+	CSV(new MediaType("text", "csv")) {
+
+		@Override
+		public boolean isHeader(String line) {
+			return line.startsWith("title,");
+		}
+
+		@Override
+		public Movie parse(String line, ObjectMapper objectMapper) {
+			List<String> fields = splitCsv(line);
+			if(fields.size() != 4) {
+				throw new IllegalArgumentException("Expected 4 fields but found " + fields.size() + ".");
+			}
+			Movie movie = new Movie(null, fields.get(0), null, new HashSet<>());
+			if(!fields.get(1).isEmpty()) {
+				Integer ageLimit = fields.get(2).isEmpty() ? null : Integer.valueOf(fields.get(2));
+				movie.setRating(new Rating(null, fields.get(1), ageLimit));
+			}
+			for(String name: fields.get(3).split(";")) {
+				if(!name.trim().isEmpty()) {
+					movie.getDirectors().add(new Director(null, name.trim()));
+				}
+			}
+			return checkColumns(movie);
+		}
+
+	},
+
+	/**
+	 * Newline-delimited JSON of the same form as the "/movies" API (and the "/movies/export" output),
+	 * any IDs are ignored.
+	 * */
+	NDJSON(MediaType.APPLICATION_NDJSON) {
+
+		@Override
+		public Movie parse(String line, ObjectMapper objectMapper) {
+			try {
+				Movie movie = objectMapper.readValue(line, Movie.class);
+				if(movie.getDirectors() == null) {
+					movie.setDirectors(new HashSet<>());
+				}
+				return checkColumns(movie);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+	};
+
+	/**
+	 * Column sizes of the schema, values not fitting are rejected when parsed rather than failing a whole transaction when flushed.
+	 * */
+	static final int TITLE_LENGTH = 255;
+	static final int DIRECTOR_NAME_LENGTH = 70;
+	static final int RATING_SYMBOL_LENGTH = 10;
+
+	private final MediaType mediaType;
+
+	private ImportFormat(MediaType mediaType) {
+		this.mediaType = mediaType;
+	}
+
+	public MediaType getMediaType() {
+		return mediaType;
+	}
+
+	/**
+	 * @return true if the line is a header to be skipped rather than a record
+	 * */
+	public boolean isHeader(String line) {
+		return false;
+	}
+
+	/**
+	 * Parses one record, throwing an unchecked exception if the line is malformed.
+	 * @return the unsaved movie
+	 * */
+	public abstract Movie parse(String line, ObjectMapper objectMapper);
+
+	/**
+	 * @return the format for the given content type or file name, CSV if it ends in ".csv", NDJSON otherwise
+	 * */
+	public static ImportFormat of(String contentTypeOrFileName) {
+		if(contentTypeOrFileName != null
+				&& (contentTypeOrFileName.toLowerCase(Locale.ROOT).endsWith(".csv") || CSV.mediaType.isCompatibleWith(safeMediaType(contentTypeOrFileName)))) {
+			return CSV;
+		}
+		return NDJSON;
+	}
+
+	/**
+	 * @return the movie, if every value fits its column
+	 * @throws IllegalArgumentException if a value is too long or the age limit is not a tinyint
+	 * */
+	private static Movie checkColumns(Movie movie) {
+		checkLength("Title", movie.getTitle(), TITLE_LENGTH);
+		if(movie.getRating() != null) {
+			checkLength("Rating symbol", movie.getRating().getSymbol(), RATING_SYMBOL_LENGTH);
+			Integer ageLimit = movie.getRating().getAgeLimit();
+			if(ageLimit != null && (ageLimit < Byte.MIN_VALUE || ageLimit > Byte.MAX_VALUE)) {
+				throw new IllegalArgumentException("Age limit " + ageLimit + " out of range.");
+			}
+		}
+		for(Director director: movie.getDirectors()) {
+			checkLength("Director name", director.getName(), DIRECTOR_NAME_LENGTH);
+		}
+		return movie;
+	}
+
+	private static void checkLength(String name, String value, int length) {
+		if(value != null && value.length() > length) {
+			throw new IllegalArgumentException(name + " longer than " + length + " characters.");
+		}
+	}
+
+	private static MediaType safeMediaType(String value) {
+		try {
+			return MediaType.parseMediaType(value);
+		} catch (IllegalArgumentException e) {
+			return MediaType.APPLICATION_OCTET_STREAM;
+		}
+	}
+
+	private static List<String> splitCsv(String line) {
+		List<String> fields = new ArrayList<>();
+		StringBuilder field = new StringBuilder();
+		boolean quoted = false;
+		for(int i = 0; i < line.length(); i++) {
+			char c = line.charAt(i);
+			if(quoted) {
+				if(c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+					field.append('"');
+					i++;
+				} else if(c == '"') {
+					quoted = false;
+				} else {
+					field.append(c);
+				}
+			} else if(c == '"') {
+				quoted = true;
+			} else if(c == ',') {
+				fields.add(field.toString());
+				field.setLength(0);
+			} else {
+				field.append(c);
+			}
+		}
+		fields.add(field.toString());
+		return fields;
+	}
+
+}
@@ -0,0 +1,24 @@
+package moviecatalog.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Outcome of a bulk import by the {@link MovieImportService}.
+ *
+ * @author johnathanleif
+ *
+ * */
+@Data @NoArgsConstructor @AllArgsConstructor
+public class ImportReport {
+
+	private long rows;
+	private long imported;
+	private long rejected;
+	private long newDirectors;
+	private long newRatings;
+	private double seconds;
+	private double rowsPerSecond;
+
+}
@@ -0,0 +1,115 @@
+package moviecatalog.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.persistence.EntityManager;
+
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import moviecatalog.model.Director;
+import moviecatalog.model.Movie;
+import moviecatalog.repository.MovieRepository;
+
+/**
+ * Writes the whole catalog of {@link Movie}s as newline-delimited JSON in constant memory.
+ *
+ * Movies are read through a forward-only {@link Stream} with a JDBC fetch size inside one read-only transaction,
+ * written in chunks of "moviecatalog.export.clear-interval" rows whose {@link Director}s are batch fetched together,
+ * and the persistence context is cleared after each chunk so loaded entities can be collected.
+ * The second-level cache is neither read nor written, so a full export does not evict the entities reads keep hot.
+ *
+ * @author johnathanleif
+ *
+ * */
+@Service
+public class MovieExportService {
+
+	private final MovieRepository movieRepository;
+	private final EntityManager entityManager;
+	private final TransactionTemplate transactionTemplate;
+	private final ObjectWriter writer;
+	private final int clearInterval;
+
+	@Autowired
+	public MovieExportService(MovieRepository movieRepository, EntityManager entityManager,
+			PlatformTransactionManager transactionManager, ObjectMapper objectMapper,
+			@Value("${moviecatalog.export.clear-interval:500}") int clearInterval) {
+		this.movieRepository = movieRepository;
+		this.entityManager = entityManager;
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+		this.transactionTemplate.setReadOnly(true);
+		this.writer = objectMapper.writer().without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+		this.clearInterval = clearInterval;
+	}
+
+	/**
+	 * Streams every {@link Movie} ordered by ID to the given output, one JSON document per line, optionally gzip compressed.
+	 * The output is not closed.
+	 * @return the number of movies written
+	 * */
+	public long export(OutputStream output, boolean gzip) throws IOException {
+		if(gzip) {
+			GZIPOutputStream compressed = new GZIPOutputStream(output, 8192);
+			long count = export(compressed);
+			compressed.finish();
+			return count;
+		}
+		return export(output);
+	}
+
+	private long export(OutputStream output) {
+		return transactionTemplate.execute(status -> {
+			entityManager.unwrap(Session.class).setCacheMode(CacheMode.IGNORE);		//covers the stream and the batch fetched directors
+			long count = 0;
+			List<Movie> chunk = new ArrayList<>(clearInterval);
+			try(Stream<Movie> movies = movieRepository.streamAllByOrderById()) {
+				Iterator<Movie> iterator = movies.iterator();
+				while(iterator.hasNext()) {
+					chunk.add(iterator.next());
+					if(chunk.size() == clearInterval || !iterator.hasNext()) {
+						for(Movie movie: chunk) {		//first directors access batch fetches the chunk's collections
+							writer.writeValue(output, movie);
+							output.write('\n');
+						}
+						count += chunk.size();
+						chunk.clear();
+						output.flush();
+						entityManager.clear();		//detach written movies so the persistence context stays bounded
+					}
+				}
+			} catch (IOException e) {
+				throw new ExportException(e);
+			}
+			return count;
+		});
+	}
+
+	/**
+	 * Unchecked wrapper for output failures (usually a client disconnect) thrown out of the export transaction.
+	 * */
+	@SuppressWarnings("serial")
+	public static class ExportException extends RuntimeException {
+
+		public ExportException(IOException cause) {
+			super(cause);
+		}
+
+	}
+
+}
@@ -0,0 +1,351 @@
+package moviecatalog.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import moviecatalog.cache.CatalogStatistics;
+import moviecatalog.cache.CatalogVersion;
+import moviecatalog.cache.DirectorNameIndex;
+import moviecatalog.cache.RatingCache;
+import moviecatalog.cache.SearchResultCache;
+import moviecatalog.model.Director;
+import moviecatalog.model.Movie;
+import moviecatalog.model.Rating;
+import moviecatalog.readmodel.CatalogReadModel;
+import moviecatalog.repository.DirectorRepository;
+import moviecatalog.repository.RatingRepository;
+import moviecatalog.search.AutocompleteIndex;
+import moviecatalog.search.DirectorFuzzyIndex;
+import moviecatalog.search.RatingBitmapIndex;
+import moviecatalog.search.RelatedMoviesIndex;
+import moviecatalog.search.TitleSearchIndex;
+
+/**
+ * Bulk imports {@link Movie}s from CSV or NDJSON input (see {@link ImportFormat}).
+ *
+ * A reader thread streams the input in chunks of "moviecatalog.import.chunk-size" lines which are parsed in parallel on a fork-join pool.
+ * Parsed chunks are written in input order by the calling thread in transactions of "moviecatalog.import.transaction-size" movies,
+ * at most "moviecatalog.import.chunks-in-flight" chunks being read ahead so the parsers cannot outrun the writer.
+ * {@link Director} names and {@link Rating} symbols are resolved against dictionaries loaded once per import, new ones are created as met.
+ *
+ * @author johnathanleif
+ *
+ * */
+@Service
+public class MovieImportService {
+
+	private static final Logger log = LoggerFactory.getLogger(MovieImportService.class);
+
+	private static final Future<ParsedChunk> END = CompletableFuture.completedFuture(null);
+
+	private final DirectorRepository directorRepository;
+	private final RatingRepository ratingRepository;
+	private final RatingCache ratingCache;
+	private final CatalogVersion catalogVersion;
+	private final DirectorNameIndex directorNameIndex;
+	private final TitleSearchIndex titleSearchIndex;
+	private final DirectorFuzzyIndex directorFuzzyIndex;
+	private final AutocompleteIndex autocompleteIndex;
+	private final RatingBitmapIndex ratingBitmapIndex;
+	private final RelatedMoviesIndex relatedMoviesIndex;
+	private final CatalogStatistics catalogStatistics;
+	private final SearchResultCache searchResultCache;
+	private final CatalogReadModel readModel;
+	private final EntityManager entityManager;
+	private final TransactionTemplate transactionTemplate;
+	private final ObjectMapper objectMapper;
+	private final ForkJoinPool parsers;
+	private final int chunkSize;
+	private final int transactionSize;
+	private final int chunksInFlight;
+
+	@Autowired
+	public MovieImportService(DirectorRepository directorRepository, RatingRepository ratingRepository, RatingCache ratingCache,
+			CatalogVersion catalogVersion, DirectorNameIndex directorNameIndex, TitleSearchIndex titleSearchIndex,
+			DirectorFuzzyIndex directorFuzzyIndex, AutocompleteIndex autocompleteIndex, RatingBitmapIndex ratingBitmapIndex,
+			RelatedMoviesIndex relatedMoviesIndex, CatalogStatistics catalogStatistics, SearchResultCache searchResultCache, CatalogReadModel readModel, EntityManager entityManager,
+			PlatformTransactionManager transactionManager, ObjectMapper objectMapper,
+			@Value("${moviecatalog.import.parallelism:0}") int parallelism,
+			@Value("${moviecatalog.import.chunk-size:1000}") int chunkSize,
+			@Value("${moviecatalog.import.transaction-size:10000}") int transactionSize,
+			@Value("${moviecatalog.import.chunks-in-flight:0}") int chunksInFlight) {
+		this.directorRepository = directorRepository;
+		this.ratingRepository = ratingRepository;
+		this.ratingCache = ratingCache;
+		this.catalogVersion = catalogVersion;
+		this.directorNameIndex = directorNameIndex;
+		this.titleSearchIndex = titleSearchIndex;
+		this.directorFuzzyIndex = directorFuzzyIndex;
+		this.autocompleteIndex = autocompleteIndex;
+		this.ratingBitmapIndex = ratingBitmapIndex;
+		this.relatedMoviesIndex = relatedMoviesIndex;
+		this.catalogStatistics = catalogStatistics;
+		this.searchResultCache = searchResultCache;
+		this.readModel = readModel;
+		this.entityManager = entityManager;
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+		this.objectMapper = objectMapper;
+		this.parsers = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+		this.chunkSize = chunkSize;
+		this.transactionSize = transactionSize;
+		this.chunksInFlight = chunksInFlight > 0 ? chunksInFlight : 2 * this.parsers.getParallelism();
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		parsers.shutdownNow();
+	}
+
+	/**
+	 * Imports every record of the input, which is closed once read.
+	 * Malformed records, records with values not fitting their columns and records with a new {@link Rating} missing its age limit
+	 * are rejected and counted, not imported.
+	 * Transactions already committed are kept if the import fails part way.
+	 * @return the import counts and throughput
+	 * */
+	public ImportReport importMovies(Reader input, ImportFormat format) throws IOException {
+		long start = System.nanoTime();
+		ImportReport report = new ImportReport();
+		Dictionary dictionary = new Dictionary();
+		BlockingQueue<Future<ParsedChunk>> chunks = new ArrayBlockingQueue<>(chunksInFlight);
+		Thread reader = new Thread(() -> read(input, format, chunks), "movie-import-reader");
+		reader.setDaemon(true);
+		reader.start();
+		try {
+			List<Movie> pending = new ArrayList<>(transactionSize);
+			for(Future<ParsedChunk> next = chunks.take(); next != END; next = chunks.take()) {
+				ParsedChunk chunk = next.get();
+				report.setRows(report.getRows() + chunk.rows);
+				report.setRejected(report.getRejected() + chunk.rows - chunk.movies.size());
+				pending.addAll(chunk.movies);
+				if(pending.size() >= transactionSize) {
+					write(pending, dictionary, report);
+					pending.clear();
+				}
+			}
+			write(pending, dictionary, report);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Import interrupted.", e);
+		} catch (ExecutionException e) {
+			throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+		} finally {
+			reader.interrupt();		//stop reading ahead if the writer failed
+			if(dictionary.newRatings > 0) {
+				ratingCache.reload();		//ratings of committed transactions
+			}
+			if(dictionary.newDirectors > 0) {
+				directorNameIndex.reload();
+				directorFuzzyIndex.reload();
+			}
+			if(report.getImported() > 0) {
+				titleSearchIndex.reload();		//faster than one update per imported movie
+				autocompleteIndex.reload();
+				ratingBitmapIndex.reload();
+				relatedMoviesIndex.reload();
+				catalogStatistics.reload();
+				readModel.reload();
+				searchResultCache.modified(SearchResultCache.Table.values());
+				catalogVersion.modified();
+			}
+		}
+		report.setNewDirectors(dictionary.newDirectors);
+		report.setNewRatings(dictionary.newRatings);
+		report.setSeconds((System.nanoTime() - start) / 1e9);
+		report.setRowsPerSecond(report.getSeconds() > 0 ? report.getRows() / report.getSeconds() : report.getRows());
+		log.info("Imported {} of {} movies ({} rejected) in {}s, {} rows/s.",
+				report.getImported(), report.getRows(), report.getRejected(), String.format("%.1f", report.getSeconds()), Math.round(report.getRowsPerSecond()));
+		return report;
+	}
+
+	private void read(Reader input, ImportFormat format, BlockingQueue<Future<ParsedChunk>> chunks) {
+		try {
+			try(BufferedReader lines = new BufferedReader(input, 1 << 16)) {
+				List<String> chunk = new ArrayList<>(chunkSize);
+				boolean first = true;
+				for(String line = lines.readLine(); line != null; line = lines.readLine()) {
+					if(line.trim().isEmpty()) {
+						continue;
+					}
+					boolean header = first && format.isHeader(line);		//only the first non-blank line may be a header
+					first = false;
+					if(header) {
+						continue;
+					}
+					chunk.add(line);
+					if(chunk.size() == chunkSize) {
+						chunks.put(parse(chunk, format));		//blocks while the writer is behind
+						chunk = new ArrayList<>(chunkSize);
+					}
+				}
+				if(!chunk.isEmpty()) {
+					chunks.put(parse(chunk, format));
+				}
+			} catch (IOException e) {
+				CompletableFuture<ParsedChunk> failed = new CompletableFuture<>();
+				failed.completeExceptionally(e);
+				chunks.put(failed);
+			}
+			chunks.put(END);
+		} catch (InterruptedException e) {
+			//writer gave up, nothing left to hand over
+		}
+	}
+
+	private Future<ParsedChunk> parse(List<String> lines, ImportFormat format) {
+		return CompletableFuture.supplyAsync(() -> {
+			ParsedChunk chunk = new ParsedChunk(lines.size());
+			for(String line: lines) {
+				try {
+					chunk.movies.add(format.parse(line, objectMapper));
+				} catch (RuntimeException e) {
+					log.debug("Rejected import record: {}", line, e);
+				}
+			}
+			return chunk;
+		}, parsers);
+	}
+
+	private void write(List<Movie> movies, Dictionary dictionary, ImportReport report) {
+		if(movies.isEmpty()) {
+			return;
+		}
+		dictionary.begin();
+		try {
+			transactionTemplate.executeWithoutResult(status -> {
+				long imported = 0;
+				for(Movie movie: movies) {
+					if(!dictionary.resolve(movie)) {
+						continue;
+					}
+					movie.setId(null);
+					entityManager.persist(movie);
+					imported++;
+				}
+				entityManager.flush();
+				entityManager.clear();		//dictionary entities stay usable as detached references
+				report.setImported(report.getImported() + imported);
+				report.setRejected(report.getRejected() + movies.size() - imported);
+			});
+		} catch (RuntimeException e) {
+			dictionary.rollback();		//the batch's new directors and ratings were never committed
+			throw e;
+		}
+	}
+
+	/**
+	 * Name and symbol lookups of existing {@link Director}s and {@link Rating}s, only used from the writing thread.
+	 * */
+	private class Dictionary {
+
+		private final Map<String, Director> directors = new HashMap<>();
+		private final Map<String, Rating> ratings = new HashMap<>();
+		private final List<String> batchDirectors = new ArrayList<>();		//names and symbols first met in the current transaction
+		private final List<String> batchRatings = new ArrayList<>();
+		private long newDirectors = 0;
+		private long newRatings = 0;
+
+		Dictionary() {
+			for(Director director: directorRepository.findAll()) {
+				directors.putIfAbsent(director.getName(), director);
+			}
+			for(Rating rating: ratingRepository.findAll()) {
+				ratings.putIfAbsent(rating.getSymbol(), rating);
+			}
+		}
+
+		/**
+		 * Starts recording the entries created by a transaction, which are only kept if it commits.
+		 * */
+		void begin() {
+			batchDirectors.clear();
+			batchRatings.clear();
+		}
+
+		/**
+		 * Forgets the entries created since {@link #begin()}, persisted by a transaction that rolled back.
+		 * */
+		void rollback() {
+			batchDirectors.forEach(directors::remove);
+			batchRatings.forEach(ratings::remove);
+			newDirectors -= batchDirectors.size();
+			newRatings -= batchRatings.size();
+			begin();
+		}
+
+		/**
+		 * Replaces the movie's rating and directors by existing or newly persisted entities.
+		 * @return false if the movie must be rejected
+		 * */
+		boolean resolve(Movie movie) {
+			if(movie.getRating() != null) {
+				Rating rating = ratings.get(movie.getRating().getSymbol());
+				if(rating == null) {
+					if(movie.getRating().getSymbol() == null || movie.getRating().getAgeLimit() == null) {
+						return false;
+					}
+					rating = new Rating(null, movie.getRating().getSymbol(), movie.getRating().getAgeLimit());
+					entityManager.persist(rating);
+					ratings.put(rating.getSymbol(), rating);
+					batchRatings.add(rating.getSymbol());
+					newRatings++;
+				}
+				movie.setRating(rating);
+			}
+			Set<Director> resolved = new HashSet<>();
+			for(Director named: movie.getDirectors()) {
+				Director director = directors.get(named.getName());
+				if(director == null) {
+					director = new Director(null, named.getName());
+					entityManager.persist(director);
+					directors.put(director.getName(), director);
+					batchDirectors.add(director.getName());
+					newDirectors++;
+				}
+				resolved.add(director);
+			}
+			movie.setDirectors(resolved);
+			return true;
+		}
+
+	}
+
+	private static class ParsedChunk {
+
+		private final int rows;
+		private final List<Movie> movies;
+
+		ParsedChunk(int rows) {
+			this.rows = rows;
+			this.movies = new ArrayList<>(rows);
+		}
+
+	}
+
+}
@@ -0,0 +1,38 @@
+package moviecatalog.service;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Filters of a composite search by the {@link MovieQueryService}, all optional and all required to match.
+ *
+ * @author johnathanleif
+ *
+ * */
+@Data @NoArgsConstructor @AllArgsConstructor
+public class MovieQuery {
+
+	/**
+	 * A director of the movie has one of these IDs.
+	 * */
+	private List<Integer> directorIds;
+	/**
+	 * A director of the movie has a name containing this (case sensitive).
+	 * */
+	private String directorName;
+	private Integer ratingId;
+	private String ratingSymbol;
+	/**
+	 * Inclusive bounds on the age limit of the movie's rating.
+	 * */
+	private Integer minAge;
+	private Integer maxAge;
+	/**
+	 * Every word must occur in the title, ignoring case.
+	 * */
+	private String title;
+
+}
@@ -0,0 +1,288 @@
+package moviecatalog.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Tuple;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Join;
+import javax.persistence.criteria.JoinType;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Selection;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import moviecatalog.cache.DirectorNameIndex;
+import moviecatalog.cache.RatingCache;
+import moviecatalog.model.Director;
+import moviecatalog.model.Movie;
+import moviecatalog.model.MovieSummary;
+import moviecatalog.model.Rating;
+import moviecatalog.readmodel.CatalogReadModel;
+import moviecatalog.repository.MovieRepository;
+
+/**
+ * Read side of the catalog answering list and search requests with {@link MovieSummary} projections, selected as tuples
+ * so no {@link Movie} entity is hydrated. Director names of a whole list are filled in by one more query.
+ * Only the requested properties are selected: a list of IDs and titles neither joins the rating table nor queries director names.
+ * Every method runs in a read-only transaction, in which Hibernate never flushes the session.
+ *
+ * A {@link MovieQuery} is one Criteria query. Director names and rating symbols and age ranges are first resolved to IDs from
+ * the in-memory {@link DirectorNameIndex} and {@link RatingCache}, so the query needs no director or rating table lookups, and
+ * a filter matching nothing ends the search without a query. The remaining predicates are ordered most selective first:
+ * director IDs (a join on the indexed join table), rating IDs (a foreign key column), the keyset cursor, then title patterns
+ * which can only be checked row by row.
+ *
+ * With the {@link CatalogReadModel} enabled, the same filters are applied to its in-memory columns instead of querying.
+ *
+ * @author johnathanleif
+ *
+ * */
+@Service
+@Transactional(readOnly = true)
+public class MovieQueryService {
+
+	private static final char ESCAPE = '\\';
+
+	private final MovieRepository movieRepository;
+	private final EntityManager entityManager;
+	private final DirectorNameIndex directorNameIndex;
+	private final RatingCache ratingCache;
+	private final CatalogReadModel readModel;
+
+	@Autowired
+	public MovieQueryService(MovieRepository movieRepository, EntityManager entityManager, DirectorNameIndex directorNameIndex,
+			RatingCache ratingCache, CatalogReadModel readModel) {
+		this.movieRepository = movieRepository;
+		this.entityManager = entityManager;
+		this.directorNameIndex = directorNameIndex;
+		this.ratingCache = ratingCache;
+		this.readModel = readModel;
+	}
+
+	/**
+	 * @param properties JSON properties of the {@link MovieSummary}s to select, see {@link #select}
+	 * @return the slice of {@link Movie}s with ID greater than the cursor, ordered by ID
+	 * */
+	public Slice<MovieSummary> findAll(int after, Pageable slice, Set<String> properties) {
+		return query(new MovieQuery(), after, slice, properties);
+	}
+
+	/**
+	 * @return the slice of {@link Movie}s of any of the {@link Director}s with ID greater than the cursor, ordered by ID
+	 * */
+	public Slice<MovieSummary> findAllByDirectorIds(List<Integer> directorIds, int after, Pageable slice, Set<String> properties) {
+		if(directorIds.isEmpty()) {
+			return new SliceImpl<>(Collections.emptyList(), slice, false);
+		}
+		MovieQuery query = new MovieQuery();
+		query.setDirectorIds(directorIds);
+		return query(query, after, slice, properties);
+	}
+
+	/**
+	 * @return the slice of {@link Movie}s with the {@link Rating} with ID greater than the cursor, ordered by ID
+	 * */
+	public Slice<MovieSummary> findAllByRatingId(int ratingId, int after, Pageable slice, Set<String> properties) {
+		MovieQuery query = new MovieQuery();
+		query.setRatingId(ratingId);
+		return query(query, after, slice, properties);
+	}
+
+	/**
+	 * @return the slice of {@link Movie}s with the {@link Rating} symbol with ID greater than the cursor, ordered by ID
+	 * */
+	public Slice<MovieSummary> findAllByRatingSymbol(String ratingSymbol, int after, Pageable slice, Set<String> properties) {
+		MovieQuery query = new MovieQuery();
+		query.setRatingSymbol(ratingSymbol);
+		return query(query, after, slice, properties);
+	}
+
+	/**
+	 * @return at most limit matching {@link Movie}s with ID greater than the cursor, ordered by ID
+	 * */
+	public List<MovieSummary> findAll(MovieQuery query, int after, int limit, Set<String> properties) {
+		Slice<MovieSummary> movies = query(query, after, PageRequest.of(0, limit), properties);
+		return movies.getContent();
+	}
+
+	/**
+	 * @return the {@link Movie}s with the given IDs in the order given, IDs not found skipped
+	 * */
+	public List<MovieSummary> findAllByIds(List<Integer> ids, Set<String> properties) {
+		if(ids.isEmpty()) {
+			return new ArrayList<>();
+		}
+		if(readModel.isEnabled()) {
+			return readModel.findMoviesByIds(ids, properties);
+		}
+		CriteriaQuery<Tuple> criteria = entityManager.getCriteriaBuilder().createTupleQuery();
+		Root<Movie> movie = criteria.from(Movie.class);
+		Map<Integer, MovieSummary> found = new HashMap<>();
+		for(MovieSummary summary: select(criteria, movie, Collections.singletonList(movie.get("id").in(ids)), false, ids.size(), properties)) {
+			found.put(summary.getId(), summary);
+		}
+		List<MovieSummary> movies = new ArrayList<>(found.size());
+		for(Integer id: ids) {
+			MovieSummary summary = found.get(id);
+			if(summary != null) {
+				movies.add(summary);
+			}
+		}
+		return withDirectorNames(movies, properties);
+	}
+
+	/**
+	 * @return the slice of matching {@link Movie}s with ID greater than the cursor, ordered by ID
+	 * */
+	public Slice<MovieSummary> query(MovieQuery query, int after, Pageable slice, Set<String> properties) {
+		List<List<Integer>> directorFilters = new ArrayList<>();
+		if(query.getDirectorIds() != null && !query.getDirectorIds().isEmpty()) {
+			directorFilters.add(query.getDirectorIds());
+		}
+		if(query.getDirectorName() != null) {
+			directorFilters.add(directorNameIndex.findIdsByNameContaining(query.getDirectorName()));
+		}
+		directorFilters.sort(Comparator.comparingInt(List::size));		//fewest directors first
+		List<Integer> ratingIds = ratingIds(query);
+		for(List<Integer> directorIds: directorFilters) {
+			if(directorIds.isEmpty()) {
+				return new SliceImpl<>(Collections.emptyList(), slice, false);
+			}
+		}
+		if(ratingIds != null && ratingIds.isEmpty()) {
+			return new SliceImpl<>(Collections.emptyList(), slice, false);
+		}
+		List<String> titleWords = new ArrayList<>();
+		if(query.getTitle() != null) {
+			for(String word: query.getTitle().trim().split("\\s+")) {
+				if(!word.isEmpty()) {
+					titleWords.add(word.toLowerCase(Locale.ROOT));
+				}
+			}
+		}
+
+		int limit = slice.getPageSize() + 1;		//one more to tell if there is a next slice
+		boolean inMemory = readModel.isEnabled();
+		List<MovieSummary> movies = inMemory ? readModel.findMovies(directorFilters, ratingIds, titleWords, after, limit, properties)
+				: select(directorFilters, ratingIds, titleWords, after, limit, properties);
+		boolean hasNext = movies.size() > slice.getPageSize();
+		movies = hasNext ? movies.subList(0, slice.getPageSize()) : movies;
+		return new SliceImpl<>(inMemory ? movies : withDirectorNames(movies, properties), slice, hasNext);
+	}
+
+	/**
+	 * Builds and runs the Criteria query of resolved filters.
+	 * */
+	private List<MovieSummary> select(List<List<Integer>> directorFilters, List<Integer> ratingIds, List<String> titleWords,
+			int after, int limit, Set<String> properties) {
+		CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+		CriteriaQuery<Tuple> criteria = builder.createTupleQuery();
+		Root<Movie> movie = criteria.from(Movie.class);
+		List<Predicate> predicates = new ArrayList<>();
+		for(List<Integer> directorIds: directorFilters) {
+			Join<Movie, Director> director = movie.join("directors");		//one join per filter, each may match a different director
+			predicates.add(director.get("id").in(directorIds));
+		}
+		if(ratingIds != null) {
+			predicates.add(movie.get("rating").get("id").in(ratingIds));		//the foreign key column, no join
+		}
+		predicates.add(builder.greaterThan(movie.get("id"), after));
+		for(String word: titleWords) {
+			predicates.add(builder.like(builder.lower(movie.get("title")), "%" + escape(word) + "%", ESCAPE));
+		}
+		return select(criteria, movie, predicates, !directorFilters.isEmpty(), limit, properties);
+	}
+
+	/**
+	 * Selects the summaries of the movies matching the predicates, ordered by ID.
+	 * The select list only holds the requested columns and the {@link Rating} is only joined for its symbol if requested.
+	 * @param properties JSON properties of the {@link MovieSummary} to select, the ID always is, null for all
+	 * @return at most limit summaries, properties not requested left null and director names left empty
+	 * */
+	private List<MovieSummary> select(CriteriaQuery<Tuple> criteria, Root<Movie> movie, List<Predicate> predicates, boolean distinct, int limit, Set<String> properties) {
+		boolean title = MovieSummary.selected(properties, MovieSummary.TITLE);
+		boolean ratingSymbol = MovieSummary.selected(properties, MovieSummary.RATING_SYMBOL);
+		boolean directorNames = MovieSummary.selected(properties, MovieSummary.DIRECTOR_NAMES);
+		List<Selection<?>> selections = new ArrayList<>();
+		selections.add(movie.get("id"));
+		if(title) {
+			selections.add(movie.get("title"));
+		}
+		if(ratingSymbol) {
+			selections.add(movie.join("rating", JoinType.LEFT).get("symbol"));
+		}
+		criteria.multiselect(selections)
+				.distinct(distinct)
+				.where(predicates.toArray(new Predicate[0]))
+				.orderBy(entityManager.getCriteriaBuilder().asc(movie.get("id")));
+		List<Tuple> rows = entityManager.createQuery(criteria).setMaxResults(limit).getResultList();
+		List<MovieSummary> movies = new ArrayList<>(rows.size());
+		for(Tuple row: rows) {
+			int column = 0;
+			movies.add(new MovieSummary(
+					row.get(column++, Integer.class),
+					title ? row.get(column++, String.class) : null,
+					ratingSymbol ? row.get(column++, String.class) : null,
+					directorNames ? new ArrayList<>() : null));
+		}
+		return movies;
+	}
+
+	/**
+	 * Fills in the director names of the movies with one query, if requested.
+	 * @return the movies
+	 * */
+	private List<MovieSummary> withDirectorNames(List<MovieSummary> movies, Set<String> properties) {
+		if(movies.isEmpty() || !MovieSummary.selected(properties, MovieSummary.DIRECTOR_NAMES)) {
+			return movies;
+		}
+		Map<Integer, MovieSummary> byId = new HashMap<>();
+		for(MovieSummary movie: movies) {
+			byId.put(movie.getId(), movie);
+		}
+		for(Object[] directorName: movieRepository.findDirectorNamesByIdIn(byId.keySet())) {
+			byId.get(directorName[0]).getDirectorNames().add((String) directorName[1]);
+		}
+		return movies;
+	}
+
+	/**
+	 * @return IDs of the ratings matching every rating filter, null if there are none
+	 * */
+	private List<Integer> ratingIds(MovieQuery query) {
+		if(query.getRatingId() == null && query.getRatingSymbol() == null && query.getMinAge() == null && query.getMaxAge() == null) {
+			return null;
+		}
+		List<Integer> ids = new ArrayList<>();
+		for(Rating rating: ratingCache.findAllOrderByAgeLimit()) {
+			if((query.getRatingId() == null || query.getRatingId().equals(rating.getId()))
+					&& (query.getRatingSymbol() == null || query.getRatingSymbol().equals(rating.getSymbol()))
+					&& (query.getMinAge() == null || (rating.getAgeLimit() != null && rating.getAgeLimit() >= query.getMinAge()))
+					&& (query.getMaxAge() == null || (rating.getAgeLimit() != null && rating.getAgeLimit() <= query.getMaxAge()))) {
+				ids.add(rating.getId());
+			}
+		}
+		return ids;
+	}
+
+	private static String escape(String pattern) {
+		return pattern.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+	}
+
+}
@@ -0,0 +1,50 @@
+package moviecatalog;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntConsumer;
+
+/**
+ * Runs writes while another thread reloads an in-memory index over and over, so writes commit during reloads.
+ * */
+public final class ConcurrentReloads {
+
+	private ConcurrentReloads() {
+	}
+
+	/**
+	 * Runs the writes one after another, each given its number, reloading from before the first until after the last.
+	 * @return the number of reloads run
+	 * */
+	public static int run(Runnable reload, int writes, IntConsumer write) throws Exception {
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		CountDownLatch started = new CountDownLatch(1);
+		AtomicBoolean writing = new AtomicBoolean(true);
+		try {
+			Future<Integer> reloads = executor.submit(() -> {
+				int reloaded = 0;
+				do {
+					started.countDown();
+					reload.run();
+					reloaded++;
+				} while(writing.get());
+				return reloaded;
+			});
+			started.await();
+			try {
+				for(int i = 0; i < writes; i++) {
+					write.accept(i);
+				}
+			} finally {
+				writing.set(false);
+			}
+			return reloads.get();
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+}
@@ -0,0 +1,118 @@
+package moviecatalog;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.HashSet;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import moviecatalog.model.Director;
+import moviecatalog.model.Movie;
+import moviecatalog.repository.DirectorRepository;
+import moviecatalog.repository.MovieRepository;
+
+/**
+ * Asserts entity and catalog tags answer repeated reads with "304 Not Modified" until something they depend on changes.
+ * */
+@SpringBootTest
+@AutoConfigureMockMvc
+public class ConditionalRequestTest {
+
+	@Autowired
+	MockMvc mvc;
+
+	@Autowired
+	EntityManagerFactory entityManagerFactory;
+
+	@Autowired
+	MovieRepository movieRepository;
+
+	@Autowired
+	DirectorRepository directorRepository;
+
+	private Director director;
+	private Movie movie;
+
+	@SuppressWarnings("serial")
+	@BeforeEach
+	void saveMovie() {
+		director = directorRepository.save(new Director(0, "Tagged"));
+		movie = movieRepository.save(new Movie(0, "tagged", null, new HashSet<Director>(){{add(director);}}));
+	}
+
+	@Test
+	void testMovieNotModifiedUntilDirectorRenamed() throws Exception {
+		String tag = eTag("/movies/" + movie.getId());
+		assertTrue(tag.startsWith("\""), "strong entity tag");
+
+		mvc.perform(get("/movies/" + movie.getId()).header(HttpHeaders.IF_NONE_MATCH, tag))
+			.andExpect(status().isNotModified());
+
+		mvc.perform(put("/directors/" + director.getId()).contentType(MediaType.APPLICATION_JSON).content("{\"name\": \"Renamed\"}"))
+			.andExpect(status().isOk());
+
+		mvc.perform(get("/movies/" + movie.getId()).header(HttpHeaders.IF_NONE_MATCH, tag))
+			.andExpect(status().isOk());
+	}
+
+	@Test
+	void testMovieModifiedWhenDirectorDeleted() throws Exception {
+		String tag = eTag("/movies/" + movie.getId());
+
+		mvc.perform(delete("/directors/" + director.getId())).andExpect(status().isOk());
+
+		assertNotEquals(tag, eTag("/movies/" + movie.getId()));
+	}
+
+	@Test
+	void testListNotModifiedWithoutQueryUntilCatalogChanges() throws Exception {
+		String tag = eTag("/movies/search-director-id?query=" + director.getId());
+		assertTrue(tag.startsWith("W/"), "weak catalog tag");
+		Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+		statistics.clear();
+
+		mvc.perform(get("/movies/search-director-id?query=" + director.getId()).header(HttpHeaders.IF_NONE_MATCH, tag))
+			.andExpect(status().isNotModified())
+			.andExpect(header().string(HttpHeaders.ETAG, tag));
+		assertEquals(0, statistics.getPrepareStatementCount());
+
+		mvc.perform(delete("/movies/" + movie.getId())).andExpect(status().isOk());
+
+		mvc.perform(get("/movies/search-director-id?query=" + director.getId()).header(HttpHeaders.IF_NONE_MATCH, tag))
+			.andExpect(status().isOk());
+	}
+
+	@Test
+	void testListNotModifiedByDeletesOfUnknownIds() throws Exception {
+		String tag = eTag("/movies/search-director-id?query=" + director.getId());
+
+		mvc.perform(delete("/directors/-1")).andExpect(status().isOk());
+		mvc.perform(delete("/ratings/-1")).andExpect(status().isOk());
+
+		mvc.perform(get("/movies/search-director-id?query=" + director.getId()).header(HttpHeaders.IF_NONE_MATCH, tag))
+			.andExpect(status().isNotModified());
+	}
+
+	private String eTag(String uri) throws Exception {
+		return mvc.perform(get(uri)).andExpect(status().isOk()).andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+	}
+
+}
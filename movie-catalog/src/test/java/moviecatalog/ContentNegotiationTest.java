@@ -0,0 +1,72 @@
+package moviecatalog;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.Collections;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+import moviecatalog.model.Director;
+import moviecatalog.model.Movie;
+import moviecatalog.repository.DirectorRepository;
+import moviecatalog.repository.MovieRepository;
+
+/**
+ * Asserts responses are encoded as CBOR or Smile when accepted, and as JSON otherwise.
+ * */
+@SpringBootTest
+@AutoConfigureMockMvc
+public class ContentNegotiationTest {
+
+	private static final MediaType SMILE = MediaType.valueOf("application/x-jackson-smile");
+
+	@Autowired
+	MockMvc mvc;
+
+	@Autowired
+	MovieRepository movieRepository;
+
+	@Autowired
+	DirectorRepository directorRepository;
+
+	@Test
+	void testBinaryFormats() throws Exception {
+		Movie movie = movieRepository.save(new Movie(0, "negotiated", null, Collections.singleton(directorRepository.save(new Director(0, "Negotiator")))));
+
+		byte[] cbor = mvc.perform(get("/movies?ids=" + movie.getId()).accept(MediaType.APPLICATION_CBOR))
+			.andExpect(status().isOk())
+			.andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+			.andReturn().getResponse().getContentAsByteArray();
+		JsonNode movies = new ObjectMapper(new CBORFactory()).readTree(cbor);
+		assertEquals("negotiated", movies.get(0).get("title").asText());
+		assertEquals("Negotiator", movies.get(0).get("directors").get(0).get("name").asText());
+		assertFalse(movies.get(0).get("updatedAt").isNull(), "dates written as with JSON");
+
+		Director director = movie.getDirectors().iterator().next();
+		byte[] smile = mvc.perform(get("/directors/" + director.getId() + "?fields=name").accept(SMILE))
+			.andExpect(status().isOk())
+			.andExpect(content().contentType(SMILE))
+			.andReturn().getResponse().getContentAsByteArray();
+		JsonNode named = new ObjectMapper(new SmileFactory()).readTree(smile);
+		assertEquals("Negotiator", named.get("name").asText());
+		assertFalse(named.has("updatedAt"), "sparse fieldsets apply to every format");
+
+		mvc.perform(get("/directors/" + director.getId()))
+			.andExpect(content().contentType(MediaType.APPLICATION_JSON));
+	}
+
+}
@@ -0,0 +1,57 @@
+package moviecatalog;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.jayway.jsonpath.JsonPath;
+
+/**
+ * Asserts the rating list, ordered by age limit rather than ID, can be paged on from a cursor deleted in the meantime.
+ * */
+@SpringBootTest
+@AutoConfigureMockMvc
+public class KeysetPaginationTest {
+
+	@Autowired
+	MockMvc mvc;
+
+	@Test
+	void testRatingsPagedPastDeletedCursor() throws Exception {
+		int first = saveRating("KP1");
+		int second = saveRating("KP2");
+		int third = saveRating("KP3");
+
+		String link = mvc.perform(get("/ratings?after=" + first + "&limit=1"))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$[0].id").value(second))
+			.andReturn().getResponse().getHeader(HttpHeaders.LINK);
+		assertTrue(link.contains("after-age-limit=93"), link);
+		mvc.perform(delete("/ratings/" + second)).andExpect(status().isOk());
+
+		mvc.perform(get(link.substring(link.indexOf('<') + 1, link.indexOf('>'))))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$[0].id").value(third));
+		mvc.perform(get("/ratings?after=" + second + "&limit=1"))
+			.andExpect(status().isBadRequest());
+	}
+
+	private int saveRating(String symbol) throws Exception {
+		String saved = mvc.perform(post("/ratings").contentType(MediaType.APPLICATION_JSON).content("{\"symbol\": \"" + symbol + "\", \"ageLimit\": 93}"))
+				.andExpect(status().isOk())
+				.andReturn().getResponse().getContentAsString();
+		return JsonPath.read(saved, "$.id");
+	}
+
+}
@@ -0,0 +1,234 @@
+package moviecatalog;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.HashSet;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import moviecatalog.cache.DirectorNameIndex;
+import moviecatalog.cache.RatingCache;
+import moviecatalog.model.Director;
+import moviecatalog.model.Movie;
+import moviecatalog.model.Rating;
+import moviecatalog.repository.DirectorRepository;
+import moviecatalog.repository.MovieRepository;
+import moviecatalog.repository.RatingRepository;
+import moviecatalog.search.RatingBitmapIndex;
+
+/**
+ * Asserts the number of SQL statements each endpoint costs stays fixed however many movies or directors it handles.
+ * Counts are taken with an empty second-level cache unless stated otherwise.
+ * */
+@SpringBootTest
+@AutoConfigureMockMvc
+public class MovieControllerStatementCountTest {
+
+	private static final int MOVIES = 30;
+	private static int run = 0;
+
+	@Autowired
+	MockMvc mvc;
+
+	@Autowired
+	EntityManagerFactory entityManagerFactory;
+
+	@Autowired
+	MovieRepository movieRepository;
+
+	@Autowired
+	RatingRepository ratingRepository;
+
+	@Autowired
+	DirectorRepository directorRepository;
+
+	@Autowired
+	RatingCache ratingCache;
+
+	@Autowired
+	DirectorNameIndex directorNameIndex;
+	
+	@Autowired
+	RatingBitmapIndex ratingBitmapIndex;
+
+	private SessionFactory sessionFactory;
+	private Statistics statistics;
+	private Movie movie;
+	private Director director;
+	private Rating rating;
+	private Rating lowerRating;
+	private String directorName;
+
+	@SuppressWarnings("serial")
+	@BeforeEach
+	void saveMovies() {
+		run++;
+		directorName = "Counted_" + run;
+		rating = ratingRepository.save(new Rating(0, "SC" + run, 7));
+		lowerRating = ratingRepository.save(new Rating(0, "SL" + run, 6));
+		director = directorRepository.save(new Director(0, directorName));
+		Director coDirector = directorRepository.save(new Director(0, directorName + "_Too"));
+		for(int i = 0; i < MOVIES; i++) {
+			movie = movieRepository.save(new Movie(0, "counted " + i, rating, new HashSet<Director>(){{add(director); add(coDirector);}}));
+		}
+		ratingCache.reload();
+		directorNameIndex.reload();
+		ratingBitmapIndex.reload();
+		sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+		statistics = sessionFactory.getStatistics();
+		statistics.clear();
+	}
+
+	@Test
+	void testFindAllMovies() throws Exception {
+		assertStatements(2, "/movies?limit=" + MOVIES);
+	}
+
+	@Test
+	void testFindAllMoviesAsSummaries() throws Exception {
+		mvc.perform(get("/movies/search-director-id?query=" + director.getId()))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.length()").value(MOVIES))
+			.andExpect(jsonPath("$[0].title").value("counted 0"))
+			.andExpect(jsonPath("$[0].ratingSymbol").value(rating.getSymbol()))
+			.andExpect(jsonPath("$[0].directorNames.length()").value(2))
+			.andExpect(jsonPath("$[0].directorNames[0]").value(directorName))
+			.andExpect(jsonPath("$[0].directorNames[1]").value(directorName + "_Too"));
+		assertEquals(0, statistics.getEntityLoadCount(), "summaries are selected without loading entities");
+		assertEquals(0, statistics.getCollectionLoadCount());
+		
+		assertCachedStatements(2, "/movies/search-director-id?query=" + director.getId());		//the same with a warm second-level cache
+	}
+
+	@Test
+	void testFindAllMoviesWithSparseFieldsets() throws Exception {
+		assertStatements(1, "/movies?limit=" + MOVIES + "&fields=title");
+		assertStatements(1, "/movies/search-director-id?query=" + director.getId() + "&fields=title,rating.symbol");
+		assertStatements(2, "/movies/search-rating-id?query=" + rating.getId() + "&fields=directors.name");
+		assertStatements(1, "/movies/search-suitable-for-age?age=" + rating.getAgeLimit() + "&fields=id,title");
+	}
+
+	@Test
+	void testFindMovieById() throws Exception {
+		assertStatements(1, "/movies/" + movie.getId());
+		assertCachedStatements(0, "/movies/" + movie.getId());		//movie, rating, director IDs and directors all cached
+	}
+
+	@Test
+	void testFindMoviesByIds() throws Exception {
+		StringBuilder ids = new StringBuilder();
+		movieRepository.findAllByRatingId(rating.getId()).forEach(found -> ids.append(found.getId()).append(','));
+		assertStatements(1, "/movies?ids=" + ids);
+	}
+
+	@Test
+	void testFindAllMoviesByDirectorId() throws Exception {
+		assertStatements(2, "/movies/search-director-id?query=" + director.getId());
+	}
+
+	@Test
+	void testFindAllMoviesByDirectorName() throws Exception {
+		assertStatements(2, "/movies/search-director-name?director-name=" + directorName);
+		assertStatements(2, "/movies/search-director-name-contains?query=" + directorName);
+		assertStatements(2, "/movies/search-director-name-starts-with?query=" + directorName);
+		assertStatements(2, "/movies/search-director-name-ends-with?query=" + directorName);
+	}
+
+	@Test
+	void testFindAllMoviesByRating() throws Exception {
+		assertStatements(2, "/movies/search-rating-id?query=" + rating.getId());
+		assertStatements(2, "/movies/search-rating?query=" + rating.getSymbol());
+	}
+
+	@Test
+	void testFindAllMoviesByRatingGreaterThan() throws Exception {
+		assertStatements(2, "/movies/search-rated-above?rated-above=" + lowerRating.getSymbol());
+		assertStatements(3, "/movies/search-rated-above?rated-above=" + lowerRating.getSymbol() + "&director-id=" + director.getId());
+	}
+	
+	@Test
+	void testSearchResultsCached() throws Exception {
+		assertStatements(2, "/movies/search-rated-above?rated-above=" + lowerRating.getSymbol() + "&director-id=" + director.getId() + "&fields=title");
+		assertStatements(0, "/movies/search-rated-above?rated-above=" + lowerRating.getSymbol() + "&director-id=" + director.getId() + "&director-id=" + director.getId() + "&fields=title");
+		
+		mvc.perform(post("/movies").contentType(MediaType.APPLICATION_JSON)
+				.content("{\"title\": \"counted later\", \"rating\": {\"id\": " + rating.getId() + "}, \"directors\": [{\"id\": " + director.getId() + "}]}"))
+			.andExpect(status().isOk());
+		statistics.clear();
+		mvc.perform(get("/movies/search-rated-above?rated-above=" + lowerRating.getSymbol() + "&director-id=" + director.getId() + "&limit=" + (MOVIES + 1)))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.length()").value(MOVIES + 1))
+			.andExpect(jsonPath("$[" + MOVIES + "].title").value("counted later"));
+		assertEquals(3, statistics.getPrepareStatementCount(), "searched again after a write");
+		
+		assertStatements(2, "/movies/search-rating?query=" + rating.getSymbol());
+		mvc.perform(put("/directors/" + director.getId()).contentType(MediaType.APPLICATION_JSON)
+				.content("{\"name\": \"" + directorName + "_Renamed\"}"))
+			.andExpect(status().isOk());
+		mvc.perform(get("/movies/search-rating?query=" + rating.getSymbol()))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$[0].directorNames[0]").value(directorName + "_Renamed"));		//cached names dropped with the directors written
+	}
+
+	@Test
+	void testFindAllMoviesSuitableForAge() throws Exception {
+		assertStatements(2, "/movies/search-suitable-for-age?age=" + rating.getAgeLimit());
+		assertStatements(3, "/movies/search-suitable-for-age?age=" + rating.getAgeLimit() + "&director-id=" + director.getId());
+	}
+
+	@Test
+	void testQueryMovies() throws Exception {
+		assertStatements(2, "/movies/query?director-name=" + directorName + "&rating=" + rating.getSymbol() + "&min-age=1&title=Counted");
+		assertStatements(2, "/movies/query?director-id=" + director.getId() + "&director-name=" + directorName + "_Too&max-age=" + rating.getAgeLimit());
+		assertStatements(0, "/movies/query?director-name=" + directorName + "_None");
+	}
+	
+	@Test
+	void testSaveNewMovieWithManyDirectors() throws Exception {
+		StringBuilder directors = new StringBuilder();
+		for(int i = 0; i < 10; i++) {
+			Director existing = directorRepository.save(new Director(0, directorName + "_Existing_" + i));
+			directors.append("{\"id\": ").append(existing.getId()).append("}, ");
+			directors.append("{\"name\": \"").append(directorName).append("_New_").append(i).append("\"}, ");
+			directors.append("{\"name\": \"").append(directorName).append("_New_").append(i).append("\"}, ");
+		}
+		directors.append("{\"name\": \"").append(directorName).append("\"}");
+		statistics.clear();
+		
+		mvc.perform(post("/movies").contentType(MediaType.APPLICATION_JSON)
+				.content("{\"title\": \"counted\", \"directors\": [" + directors + "]}"))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.directors.length()").value(21));
+		
+		assertTrue(statistics.getPrepareStatementCount() <= 8, "2 lookups, at most 3 sequence calls and 3 batched inserts");
+		assertEquals(2, statistics.getQueryExecutionCount(), "directors by ID and by name");
+	}
+	
+	private void assertStatements(long expected, String uri) throws Exception {
+		sessionFactory.getCache().evictAllRegions();
+		assertCachedStatements(expected, uri);
+	}
+	
+	private void assertCachedStatements(long expected, String uri) throws Exception {
+		statistics.clear();
+		mvc.perform(get(uri)).andExpect(status().isOk());
+		assertEquals(expected, statistics.getPrepareStatementCount(), uri);
+	}
+
+}
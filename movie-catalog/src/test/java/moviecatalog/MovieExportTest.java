@@ -0,0 +1,151 @@
+package moviecatalog;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import moviecatalog.model.Director;
+import moviecatalog.model.Movie;
+import moviecatalog.model.Rating;
+import moviecatalog.repository.DirectorRepository;
+import moviecatalog.repository.MovieRepository;
+import moviecatalog.repository.RatingRepository;
+
+/**
+ * Asserts the export writes every movie once, in ID order, with its rating and directors, plain or gzip compressed.
+ * */
+@SpringBootTest(properties = "moviecatalog.export.clear-interval=3")
+@AutoConfigureMockMvc
+public class MovieExportTest {
+
+	private static int run = 0;
+
+	@Autowired
+	MockMvc mvc;
+
+	@Autowired
+	ObjectMapper objectMapper;
+
+	@Autowired
+	MovieRepository movieRepository;
+
+	@Autowired
+	DirectorRepository directorRepository;
+
+	@Autowired
+	RatingRepository ratingRepository;
+
+	@Autowired
+	EntityManagerFactory entityManagerFactory;
+
+	private final List<Movie> saved = new ArrayList<>();
+
+	@SuppressWarnings("serial")
+	@BeforeEach
+	void saveMovies() {
+		run++;
+		Rating rating = ratingRepository.save(new Rating(0, "EXP" + run, 11));
+		Director director = directorRepository.save(new Director(0, "Exported Director"));
+		for(int i = 0; i < 10; i++) {		//several chunks of three
+			saved.add(movieRepository.save(new Movie(0, "exported " + i, i % 2 == 0 ? rating : null, new HashSet<Director>(){{add(director);}})));
+		}
+	}
+
+	@Test
+	void testNdjson() throws Exception {
+		MvcResult result = export(null);
+
+		assertExported(new StringReader(result.getResponse().getContentAsString(StandardCharsets.UTF_8)));
+	}
+
+	@Test
+	void testGzip() throws Exception {
+		MvcResult result = export("gzip, deflate");
+
+		assertEquals("gzip", result.getResponse().getHeader(HttpHeaders.CONTENT_ENCODING));
+		assertExported(new InputStreamReader(new GZIPInputStream(new ByteArrayInputStream(result.getResponse().getContentAsByteArray())), StandardCharsets.UTF_8));
+	}
+
+	@Test
+	void testSecondLevelCacheIgnored() throws Exception {
+		SessionFactory sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+		sessionFactory.getCache().evictAllRegions();
+		Statistics statistics = sessionFactory.getStatistics();
+		statistics.clear();
+		export(null);
+
+		assertEquals(0, statistics.getSecondLevelCachePutCount(), "nothing exported is put into the cache");
+		assertEquals(0, statistics.getSecondLevelCacheHitCount() + statistics.getSecondLevelCacheMissCount(), "nor looked up in it");
+	}
+
+	private MvcResult export(String acceptEncoding) throws Exception {
+		MvcResult started = mvc.perform(acceptEncoding == null ? get("/movies/export") : get("/movies/export").header(HttpHeaders.ACCEPT_ENCODING, acceptEncoding))
+				.andExpect(request().asyncStarted())
+				.andReturn();
+		return mvc.perform(asyncDispatch(started))
+				.andExpect(status().isOk())
+				.andExpect(header().string(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_NDJSON_VALUE))
+				.andReturn();
+	}
+
+	private void assertExported(Reader ndjson) throws IOException {
+		List<String> lines;
+		try(BufferedReader reader = new BufferedReader(ndjson)) {
+			lines = reader.lines().collect(Collectors.toList());
+		}
+		assertEquals(movieRepository.count(), lines.size(), "one line per movie");
+		List<Integer> ids = new ArrayList<>();
+		Map<Integer, JsonNode> movies = new HashMap<>();
+		for(String line: lines) {
+			JsonNode movie = objectMapper.readTree(line);
+			ids.add(movie.get("id").asInt());
+			movies.put(movie.get("id").asInt(), movie);
+		}
+		List<Integer> sorted = new ArrayList<>(ids);
+		sorted.sort(null);
+		assertEquals(sorted, ids, "ordered by ID, each movie once");
+		assertEquals(ids.size(), movies.size(), "each movie once");
+		for(int i = 0; i < saved.size(); i++) {
+			JsonNode movie = movies.get(saved.get(i).getId());
+			assertEquals("exported " + i, movie.get("title").asText());
+			assertEquals(i % 2 == 0 ? "EXP" + run : null, movie.get("rating").isNull() ? null : movie.get("rating").get("symbol").asText());
+			assertEquals("Exported Director", movie.get("directors").get(0).get("name").asText());
+		}
+	}
+
+}
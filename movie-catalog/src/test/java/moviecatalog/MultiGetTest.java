@@ -0,0 +1,106 @@
+package moviecatalog;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import moviecatalog.cache.RatingCache;
+import moviecatalog.model.Director;
+import moviecatalog.model.Movie;
+import moviecatalog.model.Rating;
+import moviecatalog.repository.DirectorRepository;
+import moviecatalog.repository.MovieRepository;
+import moviecatalog.repository.RatingRepository;
+
+/**
+ * Asserts multi-gets answer in the order requested, skip IDs not found and span several chunks.
+ * */
+@SpringBootTest
+@AutoConfigureMockMvc
+public class MultiGetTest {
+
+	@Autowired
+	MockMvc mvc;
+
+	@Autowired
+	MovieRepository movieRepository;
+
+	@Autowired
+	DirectorRepository directorRepository;
+
+	@Autowired
+	RatingRepository ratingRepository;
+
+	@Autowired
+	RatingCache ratingCache;
+
+	@SuppressWarnings("serial")
+	@Test
+	void testMoviesInRequestedOrder() throws Exception {
+		Director director = directorRepository.save(new Director(0, "Multi"));
+		Rating rating = ratingRepository.save(new Rating(0, "MG", 4));
+		Movie first = movieRepository.save(new Movie(0, "multi first", rating, new HashSet<Director>(){{add(director);}}));
+		Movie second = movieRepository.save(new Movie(0, "multi second", null, Collections.emptySet()));
+
+		mvc.perform(get("/movies?ids=" + second.getId() + ",-1," + first.getId() + "," + second.getId()))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.length()").value(2))
+			.andExpect(jsonPath("$[0].title").value("multi second"))
+			.andExpect(jsonPath("$[1].title").value("multi first"))
+			.andExpect(jsonPath("$[1].rating.symbol").value("MG"))
+			.andExpect(jsonPath("$[1].directors[0].name").value("Multi"));
+		mvc.perform(post("/movies/by-ids").contentType(MediaType.APPLICATION_JSON).content("[" + first.getId() + ", " + second.getId() + "]"))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$[0].title").value("multi first"))
+			.andExpect(jsonPath("$[1].title").value("multi second"));
+	}
+
+	@Test
+	void testDirectorsAcrossChunks() throws Exception {
+		List<Integer> ids = new ArrayList<>();
+		for(int i = 0; i < MultiGet.CHUNK_SIZE + 10; i++) {
+			ids.add(directorRepository.save(new Director(0, "Chunked " + i)).getId());
+		}
+		Collections.reverse(ids);
+
+		mvc.perform(post("/directors/by-ids").contentType(MediaType.APPLICATION_JSON).content(ids.toString()))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.length()").value(ids.size()))
+			.andExpect(jsonPath("$[0].name").value("Chunked " + (ids.size() - 1)))
+			.andExpect(jsonPath("$[" + (ids.size() - 1) + "].name").value("Chunked 0"));
+	}
+
+	@Test
+	void testRatingsAndLimit() throws Exception {
+		Rating low = ratingRepository.save(new Rating(0, "MG_LOW", 1));
+		Rating high = ratingRepository.save(new Rating(0, "MG_HIGH", 2));
+		ratingCache.reload();
+
+		mvc.perform(get("/ratings?ids=" + high.getId() + "," + low.getId() + "&fields=symbol"))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$[0].symbol").value("MG_HIGH"))
+			.andExpect(jsonPath("$[1].symbol").value("MG_LOW"))
+			.andExpect(jsonPath("$[1].ageLimit").doesNotExist());
+
+		List<Integer> tooMany = new ArrayList<>();
+		for(int i = 1; i <= MultiGet.MAX_IDS + 1; i++) {
+			tooMany.add(i);
+		}
+		mvc.perform(post("/ratings/by-ids").contentType(MediaType.APPLICATION_JSON).content(tooMany.toString()))
+			.andExpect(status().isBadRequest());
+	}
+
+}
@@ -0,0 +1,94 @@
+package moviecatalog;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+
+import moviecatalog.model.MovieSummary;
+
+/**
+ * Compares JSON, Smile and CBOR for a 100k movie result: serialisation CPU time and bytes on the wire, plain and gzip compressed.
+ * Not part of the default test run (the name does not match the Surefire includes), run with
+ *
+ * 		mvn test -Dtest=SerializationFormatBenchmark
+ *
+ * */
+public class SerializationFormatBenchmark {
+
+	private static final int MOVIES = 100_000;
+	private static final int WARMUP_ROUNDS = 5;
+	private static final int ROUNDS = 10;
+
+	@Test
+	void compareFormats() throws IOException {
+		List<MovieSummary> movies = new ArrayList<>(MOVIES);
+		for(int i = 1; i <= MOVIES; i++) {
+			movies.add(new MovieSummary(i, "Movie, number " + i, "R" + (i % 10), i % 3 == 0
+					? Arrays.asList("Director " + (i % 5000), "Director " + ((i * 7) % 5000))
+					: Arrays.asList("Director " + (i % 5000))));
+		}
+		Map<String, ObjectMapper> formats = new LinkedHashMap<>();
+		formats.put("application/json", configured(Jackson2ObjectMapperBuilder.json()));
+		formats.put("application/x-jackson-smile", configured(Jackson2ObjectMapperBuilder.smile()));
+		formats.put("application/cbor", configured(Jackson2ObjectMapperBuilder.cbor()));
+
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		Map<String, Integer> sizes = new LinkedHashMap<>();
+		System.out.printf("%-28s %12s %12s %12s %12s%n", "format", "cpu ms", "bytes", "gzip ms", "gzip bytes");
+		for(Map.Entry<String, ObjectMapper> format: formats.entrySet()) {
+			byte[] bytes = null;
+			byte[] gzipped = null;
+			for(int i = 0; i < WARMUP_ROUNDS; i++) {
+				gzip(format.getValue().writeValueAsBytes(movies));
+			}
+			long serialising = 0;
+			long compressing = 0;
+			for(int i = 0; i < ROUNDS; i++) {
+				long start = threads.getCurrentThreadCpuTime();
+				bytes = format.getValue().writeValueAsBytes(movies);
+				long serialised = threads.getCurrentThreadCpuTime();
+				gzipped = gzip(bytes);
+				serialising += serialised - start;
+				compressing += threads.getCurrentThreadCpuTime() - serialised;
+			}
+			sizes.put(format.getKey(), bytes.length);
+			System.out.printf("%-28s %12.1f %12d %12.1f %12d%n", format.getKey(),
+					serialising / 1e6 / ROUNDS, bytes.length, compressing / 1e6 / ROUNDS, gzipped.length);
+		}
+
+		assertTrue(sizes.get("application/x-jackson-smile") < sizes.get("application/json"));
+		assertTrue(sizes.get("application/cbor") < sizes.get("application/json"));
+	}
+
+	/**
+	 * @return the mapper configured as the application's, serialising every property of filtered classes
+	 * */
+	private static ObjectMapper configured(Jackson2ObjectMapperBuilder builder) {
+		return builder.filters(new SimpleFilterProvider().setDefaultFilter(SimpleBeanPropertyFilter.serializeAll())).build();
+	}
+
+	private static byte[] gzip(byte[] bytes) throws IOException {
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream(bytes.length / 4);
+		try(GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+			gzip.write(bytes);
+		}
+		return compressed.toByteArray();
+	}
+
+}
@@ -0,0 +1,96 @@
+package moviecatalog;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.HashSet;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import moviecatalog.cache.RatingCache;
+import moviecatalog.model.Director;
+import moviecatalog.model.Movie;
+import moviecatalog.model.Rating;
+import moviecatalog.repository.DirectorRepository;
+import moviecatalog.repository.MovieRepository;
+import moviecatalog.repository.RatingRepository;
+
+/**
+ * Asserts "fields=" responses hold the requested properties and the ID only, and responses without it every property.
+ * */
+@SpringBootTest
+@AutoConfigureMockMvc
+public class SparseFieldsetsTest {
+
+	private static int run = 0;
+
+	@Autowired
+	MockMvc mvc;
+
+	@Autowired
+	MovieRepository movieRepository;
+
+	@Autowired
+	DirectorRepository directorRepository;
+
+	@Autowired
+	RatingRepository ratingRepository;
+
+	@Autowired
+	RatingCache ratingCache;
+
+	private Director director;
+	private Rating rating;
+	private Movie movie;
+
+	@SuppressWarnings("serial")
+	@BeforeEach
+	void saveMovie() {
+		run++;
+		director = directorRepository.save(new Director(0, "Sparse_" + run));
+		rating = ratingRepository.save(new Rating(0, "SF" + run, 12));
+		movie = movieRepository.save(new Movie(0, "sparse", rating, new HashSet<Director>(){{add(director);}}));
+		ratingCache.reload();
+	}
+
+	@Test
+	void testMovieFields() throws Exception {
+		mvc.perform(get("/movies/search-director-id?query=" + director.getId() + "&fields=title"))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$[0].id").value(movie.getId()))
+			.andExpect(jsonPath("$[0].title").value("sparse"))
+			.andExpect(jsonPath("$[0].ratingSymbol").doesNotExist())
+			.andExpect(jsonPath("$[0].directorNames").doesNotExist());
+		mvc.perform(get("/movies/search-director-id?query=" + director.getId() + "&fields=rating.symbol&fields=directors.name"))
+			.andExpect(jsonPath("$[0].title").doesNotExist())
+			.andExpect(jsonPath("$[0].ratingSymbol").value(rating.getSymbol()))
+			.andExpect(jsonPath("$[0].directorNames[0]").value(director.getName()));
+		mvc.perform(get("/movies/search-director-id?query=" + director.getId()))
+			.andExpect(jsonPath("$[0].title").value("sparse"))
+			.andExpect(jsonPath("$[0].ratingSymbol").value(rating.getSymbol()))
+			.andExpect(jsonPath("$[0].directorNames[0]").value(director.getName()));
+	}
+
+	@Test
+	void testEntityFields() throws Exception {
+		mvc.perform(get("/directors/" + director.getId() + "?fields=name"))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.id").value(director.getId()))
+			.andExpect(jsonPath("$.name").value(director.getName()))
+			.andExpect(jsonPath("$.updatedAt").doesNotExist());
+		mvc.perform(get("/ratings/" + rating.getId() + "?fields=ageLimit"))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.ageLimit").value(12))
+			.andExpect(jsonPath("$.symbol").doesNotExist());
+		mvc.perform(get("/movies/" + movie.getId()))		//full entities nest every property
+			.andExpect(jsonPath("$.rating.updatedAt").exists())
+			.andExpect(jsonPath("$.directors[0].updatedAt").exists());
+	}
+
+}
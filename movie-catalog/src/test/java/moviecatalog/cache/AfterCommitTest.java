@@ -0,0 +1,54 @@
+package moviecatalog.cache;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Asserts in-memory changes are deferred to the commit of the writing transaction and dropped on rollback,
+ * which every index and cache updated through {@link AfterCommit} relies on.
+ * */
+@SpringBootTest
+public class AfterCommitTest {
+
+	@Autowired
+	PlatformTransactionManager transactionManager;
+
+	@Test
+	void testRunsOnCommit() {
+		AtomicBoolean ran = new AtomicBoolean();
+		new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+			AfterCommit.execute(() -> ran.set(true));
+			assertFalse(ran.get(), "not before commit");
+		});
+
+		assertTrue(ran.get());
+	}
+
+	@Test
+	void testNeverRunsOnRollback() {
+		AtomicBoolean ran = new AtomicBoolean();
+		new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+			AfterCommit.execute(() -> ran.set(true));
+			status.setRollbackOnly();
+		});
+
+		assertFalse(ran.get());
+	}
+
+	@Test
+	void testRunsImmediatelyOutsideTransaction() {
+		AtomicBoolean ran = new AtomicBoolean();
+		AfterCommit.execute(() -> ran.set(true));
+
+		assertTrue(ran.get());
+	}
+
+}
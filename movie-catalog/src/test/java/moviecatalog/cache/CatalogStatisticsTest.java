@@ -0,0 +1,135 @@
+package moviecatalog.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.jayway.jsonpath.JsonPath;
+
+import moviecatalog.ConcurrentReloads;
+import moviecatalog.model.CatalogStats;
+import moviecatalog.model.Movie;
+import moviecatalog.repository.MovieRepository;
+
+/**
+ * Asserts the counters kept up to date by the write endpoints match a recount from the database.
+ * */
+@SpringBootTest
+@AutoConfigureMockMvc
+public class CatalogStatisticsTest {
+
+	@Autowired
+	MockMvc mvc;
+
+	@Autowired
+	CatalogStatistics statistics;
+
+	@Autowired
+	MovieRepository movieRepository;
+
+	@Autowired
+	PlatformTransactionManager transactionManager;
+
+	@Test
+	void testWritesCountedSameAsRecount() throws Exception {
+		statistics.reload();
+		CatalogStats before = statistics.getStats(100);
+
+		int rating = id(post("/ratings"), "{\"symbol\": \"STATS\", \"ageLimit\": 7}");
+		int movie = id(post("/movies"), "{\"title\": \"Counted\", \"rating\": {\"id\": " + rating + "}, \"directors\": [{\"name\": \"Counted First\"}, {\"name\": \"Counted Second\"}]}");
+		int first = JsonPath.read(mvc.perform(get("/directors/search-name-equals?query=Counted First")).andReturn().getResponse().getContentAsString(), "$[0].id");
+		int second = JsonPath.read(mvc.perform(get("/directors/search-name-equals?query=Counted Second")).andReturn().getResponse().getContentAsString(), "$[0].id");
+		int other = id(post("/movies"), "{\"title\": \"Counted Other\", \"rating\": {\"id\": " + rating + "}, \"directors\": [{\"id\": " + first + "}]}");
+
+		mvc.perform(get("/stats/directors/" + first))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.movies").value(2));
+		CatalogStats added = statistics.getStats(100);
+		assertEquals(before.getMovies() + 2, added.getMovies());
+		assertEquals(before.getDirectors() + 2, added.getDirectors());
+		assertEquals(before.getRatings() + 1, added.getRatings());
+
+		mvc.perform(put("/movies/" + other).contentType(MediaType.APPLICATION_JSON).content("{\"title\": \"Counted Other\", \"directors\": [{\"id\": " + second + "}]}"))
+			.andExpect(status().isOk());
+		mvc.perform(delete("/directors/" + first)).andExpect(status().isOk());
+		mvc.perform(delete("/ratings/" + rating)).andExpect(status().isOk());
+		mvc.perform(delete("/movies/" + movie)).andExpect(status().isOk());
+
+		mvc.perform(get("/stats/directors/" + second))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.movies").value(1));
+		mvc.perform(get("/stats/directors/" + first))
+			.andExpect(status().isNotFound());
+		CatalogStats counted = statistics.getStats(100);
+		assertEquals(before.getMovies() + 1, counted.getMovies());
+		assertEquals(before.getUnratedMovies() + 1, counted.getUnratedMovies());
+		statistics.reload();
+		CatalogStats recounted = statistics.getStats(100);
+		counted.setReconciledAt(null);
+		recounted.setReconciledAt(null);
+		assertEquals(recounted, counted);
+	}
+
+	@Test
+	void testTopDirectors() throws Exception {
+		mvc.perform(get("/stats?top=1"))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.topDirectors.length()").value(1))
+			.andExpect(jsonPath("$.reconciledAt").isNotEmpty());
+
+		CatalogStats stats = statistics.getStats(100);
+		for(int i = 1; i < stats.getTopDirectors().size(); i++) {
+			CatalogStats.DirectorCount previous = stats.getTopDirectors().get(i - 1);
+			CatalogStats.DirectorCount next = stats.getTopDirectors().get(i);
+			assertEquals(true, previous.getMovies() > next.getMovies()
+					|| (previous.getMovies() == next.getMovies() && previous.getDirectorId() < next.getDirectorId()), "most movies first, then by ID");
+		}
+	}
+
+	@Test
+	void testWritesDuringRecountsCountedOnce() throws Exception {
+		//every other write deletes the movie saved before it, so a write counted twice or not at all shows in the total
+		List<Movie> saved = new ArrayList<>();
+		ConcurrentReloads.run(statistics::reload, 100, i -> new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+			if(i % 2 == 1) {
+				Movie previous = saved.get(saved.size() - 1);
+				movieRepository.delete(previous);
+				statistics.movieDeleted(CatalogStatistics.Counted.of(previous));
+			}
+			Movie movie = movieRepository.save(new Movie(0, "Recounted " + i, null, Collections.emptySet()));
+			statistics.movieSaved(null, movie);
+			saved.add(movie);
+		}));
+
+		CatalogStats counted = statistics.getStats(0);
+		assertEquals(movieRepository.count(), counted.getMovies());
+		assertEquals(movieRepository.countAllGroupByRatingId().stream().filter(rated -> rated[0] == null)
+				.mapToLong(rated -> ((Number) rated[1]).longValue()).sum(), counted.getUnratedMovies());
+	}
+
+	private int id(MockHttpServletRequestBuilder request, String body) throws Exception {
+		String created = mvc.perform(request.contentType(MediaType.APPLICATION_JSON).content(body))
+				.andExpect(status().isOk())
+				.andReturn().getResponse().getContentAsString();
+		return JsonPath.read(created, "$.id");
+	}
+
+}
@@ -0,0 +1,98 @@
+package moviecatalog.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import moviecatalog.ConcurrentReloads;
+import moviecatalog.model.Director;
+import moviecatalog.repository.DirectorRepository;
+
+@SpringBootTest
+public class DirectorNameIndexTest {
+	
+	@Autowired
+	DirectorNameIndex index;
+	
+	@Autowired
+	DirectorRepository repository;
+	
+	@Autowired
+	PlatformTransactionManager transactionManager;
+	
+	@Test
+	void testSearchModes() {
+		Director first = save("Indexed Qwerty Zxcvb");
+		Director second = save("Zxcvb Indexed Qwerty");
+		
+		assertEquals(Arrays.asList(first.getId(), second.getId()), index.findIdsByNameContaining("Qwerty"));
+		assertEquals(Arrays.asList(first.getId(), second.getId()), index.findIdsByNameContaining("Qwe"));
+		assertEquals(Collections.singletonList(second.getId()), index.findIdsByNameContaining("b Ind"));
+		assertEquals(Collections.emptyList(), index.findIdsByNameContaining("qwerty"));
+		assertEquals(Collections.singletonList(first.getId()), index.findIdsByNameStartingWith("Indexed Qw"));
+		assertEquals(Collections.singletonList(second.getId()), index.findIdsByNameEndingWith("ed Qwerty"));
+		assertEquals(Collections.singletonList(first.getId()), index.findIdsByName("Indexed Qwerty Zxcvb"));
+		assertEquals(Collections.emptyList(), index.findIdsByName("Indexed Qwerty"));
+	}
+	
+	@Test
+	void testShortQueries() {
+		Director director = save("Xy");
+		
+		assertTrue(index.findIdsByNameContaining("y").contains(director.getId()));
+		assertTrue(index.findIdsByNameContaining("").contains(director.getId()));
+		assertTrue(index.findIdsByNameStartingWith("X").contains(director.getId()));
+		assertTrue(index.findIdsByNameEndingWith("y").contains(director.getId()));
+	}
+	
+	@Test
+	void testRenamedAndDeleted() {
+		Director director = save("Renamed Asdfgh");
+		director.setName("Renamed Hjklmn");
+		index.saved(repository.save(director));
+		
+		assertEquals(Collections.emptyList(), index.findIdsByNameContaining("Asdfgh"));
+		assertEquals(Collections.singletonList(director.getId()), index.findIdsByNameContaining("Hjklmn"));
+		
+		index.deleted(director.getId());
+		
+		assertEquals(Collections.emptyList(), index.findIdsByNameContaining("Hjklmn"));
+		assertEquals(Collections.emptyList(), index.findIdsByNameStartingWith("Renamed H"));
+	}
+	
+	@Test
+	void testRenamesDuringReloadsKept() throws Exception {
+		List<Director> directors = new ArrayList<>();
+		List<Integer> ids = new ArrayList<>();
+		for(int i = 0; i < 100; i++) {
+			directors.add(save("Prerename Wq" + i));
+			ids.add(directors.get(i).getId());
+		}
+		ConcurrentReloads.run(index::reload, directors.size(), i -> new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+			Director director = directors.get(i);
+			director.setName("Postrename Wq" + i);
+			index.saved(repository.save(director));
+		}));
+		
+		assertEquals(Collections.emptyList(), index.findIdsByNameContaining("Prerename Wq"), "no trigram of an old name left");
+		assertEquals(ids, index.findIdsByNameStartingWith("Postrename Wq"));
+		assertEquals(Collections.singletonList(ids.get(42)), index.findIdsByName("Postrename Wq42"));
+	}
+	
+	private Director save(String name) {
+		Director director = repository.save(new Director(0, name));
+		index.saved(director);
+		return director;
+	}
+	
+}
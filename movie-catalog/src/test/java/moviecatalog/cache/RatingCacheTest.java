@@ -0,0 +1,89 @@
+package moviecatalog.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import moviecatalog.ConcurrentReloads;
+import moviecatalog.model.Rating;
+import moviecatalog.repository.RatingRepository;
+
+@SpringBootTest
+public class RatingCacheTest {
+	
+	@Autowired
+	RatingCache cache;
+	
+	@Autowired
+	RatingRepository repository;
+	
+	@Autowired
+	PlatformTransactionManager transactionManager;
+	
+	@Test
+	void testSavedAndDeleted() {
+		Rating rating = repository.save(new Rating(0, "Cached", 3));
+		cache.saved(rating);
+		
+		assertEquals(cache.findById(rating.getId()).get(), rating);
+		assertEquals(cache.findBySymbol("Cached").get(), rating);
+		assertTrue(cache.findAllOrderByAgeLimit().contains(rating));
+		
+		cache.deleted(rating.getId());
+		
+		assertFalse(cache.findById(rating.getId()).isPresent());
+		assertFalse(cache.findBySymbol("Cached").isPresent());
+	}
+	
+	@Test
+	void testReturnsCopies() {
+		Rating rating = repository.save(new Rating(0, "Copied", 4));
+		cache.saved(rating);
+		
+		cache.findById(rating.getId()).get().setSymbol("Changed");
+		
+		assertEquals(cache.findById(rating.getId()).get().getSymbol(), "Copied");
+	}
+	
+	@Test
+	void testSavedBeforeFlushHasModificationTime() {
+		Rating rating = new TransactionTemplate(transactionManager).execute(status -> {
+			Rating saved = repository.save(new Rating(0, "Unflushed", 6));
+			cache.saved(saved);
+			return saved;
+		});
+		
+		assertNotNull(cache.findById(rating.getId()).get().getUpdatedAt());
+	}
+	
+	@Test
+	void testDeletesDuringReloadsKept() throws Exception {
+		List<Rating> ratings = new ArrayList<>();
+		for(int i = 0; i < 100; i++) {
+			Rating rating = repository.save(new Rating(0, "RCD" + i, 6));
+			cache.saved(rating);
+			ratings.add(rating);
+		}
+		ConcurrentReloads.run(cache::reload, ratings.size(), i -> new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+			repository.deleteById(ratings.get(i).getId());
+			cache.deleted(ratings.get(i).getId());
+		}));
+		
+		for(Rating rating: ratings) {
+			assertFalse(cache.findById(rating.getId()).isPresent(), rating.getSymbol());
+			assertFalse(cache.findBySymbol(rating.getSymbol()).isPresent(), rating.getSymbol());
+		}
+		assertTrue(cache.findAllOrderByAgeLimit().stream().noneMatch(ratings::contains));
+	}
+	
+}
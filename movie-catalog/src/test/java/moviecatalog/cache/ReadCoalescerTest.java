@@ -0,0 +1,195 @@
+package moviecatalog.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.persistence.EntityManager;
+
+import org.hibernate.Hibernate;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import moviecatalog.DirectorController;
+import moviecatalog.MovieController;
+import moviecatalog.model.CoalescedReadStats;
+import moviecatalog.model.Director;
+import moviecatalog.model.Movie;
+import moviecatalog.model.Rating;
+import moviecatalog.repository.DirectorRepository;
+import moviecatalog.repository.MovieRepository;
+import moviecatalog.repository.RatingRepository;
+
+@SpringBootTest
+public class ReadCoalescerTest {
+
+	private static final int CALLERS = 8;
+
+	@Autowired
+	ReadCoalescer coalescer;
+
+	@Autowired
+	CatalogVersion catalogVersion;
+
+	@Autowired
+	MovieController movieController;
+
+	@Autowired
+	DirectorController directorController;
+
+	@Autowired
+	MovieRepository movieRepository;
+
+	@Autowired
+	DirectorRepository directorRepository;
+
+	@Autowired
+	RatingRepository ratingRepository;
+
+	@Autowired
+	EntityManager entityManager;
+
+	@Autowired
+	PlatformTransactionManager transactionManager;
+
+	private final ExecutorService callers = Executors.newFixedThreadPool(CALLERS);
+	private final CountDownLatch release = new CountDownLatch(1);
+	private final AtomicInteger executions = new AtomicInteger();
+
+	@AfterEach
+	void shutdown() {
+		release.countDown();
+		callers.shutdownNow();
+	}
+
+	@Test
+	void testConcurrentCallersShareOneExecution() throws Exception {
+		List<Future<Object>> results = new ArrayList<>();
+		for(int i = 0; i < CALLERS; i++) {
+			results.add(callers.submit(() -> coalescer.read("shared", Collections.singletonList(1), this::blockedRead)));
+		}
+		awaitCallersSaved("shared", CALLERS - 1);
+		release.countDown();
+
+		Object first = results.get(0).get(10, TimeUnit.SECONDS);
+		for(Future<Object> result: results) {
+			assertSame(first, result.get(10, TimeUnit.SECONDS));
+		}
+		assertEquals(1, executions.get());
+		CoalescedReadStats stats = stats("shared");
+		assertEquals(1, stats.getExecutions());
+		assertEquals(1, stats.getSharedExecutions());
+		assertEquals(CALLERS - 1, stats.getCallersSaved());
+		assertEquals(CALLERS - 1, stats.getMaxCallersSaved());
+	}
+
+	@Test
+	void testFailureShared() throws Exception {
+		List<Future<Object>> results = new ArrayList<>();
+		for(int i = 0; i < 2; i++) {
+			results.add(callers.submit(() -> coalescer.read("failed", Collections.singletonList(1), () -> {
+				blockedRead();
+				throw new IllegalStateException("Read failed.");
+			})));
+		}
+		awaitCallersSaved("failed", 1);
+		release.countDown();
+
+		for(Future<Object> result: results) {
+			ExecutionException failed = assertThrows(ExecutionException.class, () -> result.get(10, TimeUnit.SECONDS));
+			assertEquals(IllegalStateException.class, failed.getCause().getClass());
+		}
+		assertEquals(1, executions.get());
+	}
+
+	@Test
+	void testDifferentArgumentsOrCatalogVersionsNotShared() throws Exception {
+		Future<Object> blocked = callers.submit(() -> coalescer.read("versioned", Collections.singletonList(1), this::blockedRead));
+		while(executions.get() == 0) {
+			Thread.sleep(1);
+		}
+
+		assertEquals("other", coalescer.read("versioned", Collections.singletonList(2), () -> "other"));
+		catalogVersion.modified();
+		assertEquals("modified", coalescer.read("versioned", Collections.singletonList(1), () -> "modified"));		//not joining the read started before
+		release.countDown();
+		blocked.get(10, TimeUnit.SECONDS);
+
+		CoalescedReadStats stats = stats("versioned");
+		assertEquals(3, stats.getExecutions());
+		assertEquals(0, stats.getCallersSaved());
+	}
+
+	@SuppressWarnings("serial")
+	@Test
+	void testEntitiesSharedDetached() {
+		Rating rating = ratingRepository.save(new Rating(0, "RC", 12));
+		Director director = directorRepository.save(new Director(0, "Coalesced Director"));
+		Movie saved = movieRepository.save(new Movie(0, "Coalesced", rating, new HashSet<Director>(){{add(director);}}));
+
+		new TransactionTemplate(transactionManager).executeWithoutResult(status -> {		//the session of a request reading them
+			Movie movie = movieController.findMovieById(saved.getId()).getBody();
+			assertDetached(movie);
+			assertDetached(movieController.findMoviesByIds(Arrays.asList(saved.getId())).get(0));
+			assertFalse(entityManager.contains(directorController.findDirectorById(director.getId()).getBody()));
+			for(Director found: directorController.findAllDirectorsByName("Coalesced Director", 0, 10).getBody()) {
+				assertFalse(entityManager.contains(found));
+			}
+		});
+	}
+
+	private void assertDetached(Movie movie) {
+		assertTrue(Hibernate.isInitialized(movie.getDirectors()), "loaded before sharing");
+		assertFalse(entityManager.contains(movie));
+		assertFalse(entityManager.contains(movie.getRating()));
+		for(Director director: movie.getDirectors()) {
+			assertFalse(entityManager.contains(director));
+		}
+	}
+
+	private Object blockedRead() {
+		executions.incrementAndGet();
+		try {
+			release.await(10, TimeUnit.SECONDS);
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		return new Object();
+	}
+
+	private void awaitCallersSaved(String name, long callersSaved) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		while(stats(name).getCallersSaved() < callersSaved && System.nanoTime() < deadline) {
+			Thread.sleep(1);
+		}
+	}
+
+	private CoalescedReadStats stats(String name) {
+		for(CoalescedReadStats stats: coalescer.getStats()) {
+			if(stats.getName().equals(name)) {
+				return stats;
+			}
+		}
+		return new CoalescedReadStats(name, 0, 0, 0, 0);
+	}
+
+}
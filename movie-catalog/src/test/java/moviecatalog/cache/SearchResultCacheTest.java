@@ -0,0 +1,79 @@
+package moviecatalog.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+public class SearchResultCacheTest {
+
+	private static final Set<SearchResultCache.Table> BY_RATING = EnumSet.of(SearchResultCache.Table.MOVIES, SearchResultCache.Table.RATINGS);
+
+	private final AtomicInteger searches = new AtomicInteger();
+
+	@Test
+	void testHitUntilReadTableModified() {
+		SearchResultCache cache = new SearchResultCache(10);
+		List<Object> key = Arrays.asList("rating", "PG", 0, 100);
+
+		assertEquals(Arrays.asList(1, 2, 3), find(cache, key, 1, 2, 3));
+		assertEquals(Arrays.asList(1, 2, 3), find(cache, key, 4));
+		assertEquals(1, searches.get());
+
+		cache.modified(SearchResultCache.Table.DIRECTORS);		//not read by the search
+		assertEquals(Arrays.asList(1, 2, 3), find(cache, key, 4));
+		assertEquals(1, searches.get());
+
+		cache.modified(SearchResultCache.Table.RATINGS);
+		assertEquals(Arrays.asList(4), find(cache, key, 4));
+		assertEquals(Arrays.asList(4), find(cache, key, 5));
+		assertEquals(2, searches.get());
+
+		cache.modified(SearchResultCache.Table.values());
+		assertEquals(Arrays.asList(5), find(cache, key, 5));
+		assertEquals(3, searches.get());
+	}
+
+	@Test
+	void testLeastRecentlyUsedEvicted() {
+		SearchResultCache cache = new SearchResultCache(2);
+		List<Object> first = Arrays.asList("rating", "PG", 0, 100);
+		List<Object> second = Arrays.asList("rating", "15", 0, 100);
+		List<Object> third = Arrays.asList("rating", "18", 0, 100);
+
+		find(cache, first, 1);
+		find(cache, second, 2);
+		find(cache, first, 1);		//used more recently than the second
+		find(cache, third, 3);
+		assertEquals(3, searches.get());
+
+		assertEquals(Arrays.asList(1), find(cache, first, 0));
+		assertEquals(Arrays.asList(3), find(cache, third, 0));
+		assertEquals(3, searches.get());
+		assertEquals(Arrays.asList(0), find(cache, second, 0));
+		assertEquals(4, searches.get());
+	}
+
+	@Test
+	void testDisabled() {
+		SearchResultCache cache = new SearchResultCache(0);
+		List<Object> key = Arrays.asList("rating", "PG", 0, 100);
+
+		find(cache, key, 1);
+		assertEquals(Arrays.asList(2), find(cache, key, 2));
+		assertEquals(2, searches.get());
+	}
+
+	private List<Integer> find(SearchResultCache cache, List<Object> key, Integer... searched) {
+		return cache.find(BY_RATING, key, () -> {
+			searches.incrementAndGet();
+			return Arrays.asList(searched);
+		});
+	}
+
+}
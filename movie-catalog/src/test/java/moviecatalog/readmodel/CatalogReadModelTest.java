@@ -0,0 +1,148 @@
+package moviecatalog.readmodel;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import moviecatalog.ConcurrentReloads;
+import moviecatalog.model.Director;
+import moviecatalog.model.Movie;
+import moviecatalog.model.MovieSummary;
+import moviecatalog.model.Rating;
+import moviecatalog.repository.DirectorRepository;
+import moviecatalog.repository.MovieRepository;
+import moviecatalog.repository.RatingRepository;
+
+@SpringBootTest(properties = "moviecatalog.read-model.enabled=true")
+public class CatalogReadModelTest {
+
+	@Autowired
+	CatalogReadModel readModel;
+
+	@Autowired
+	MovieRepository movieRepository;
+
+	@Autowired
+	DirectorRepository directorRepository;
+
+	@Autowired
+	RatingRepository ratingRepository;
+
+	@Autowired
+	PlatformTransactionManager transactionManager;
+
+	@Test
+	void testWritesPatchSameAsReload() {
+		Director first = directorRepository.save(new Director(0, "Patched First"));
+		Director second = directorRepository.save(new Director(0, "Patched Second"));
+		Rating rating = ratingRepository.save(new Rating(0, "PATCHED", 12));
+		Movie kept = movieRepository.save(new Movie(0, "Patched Kept", rating, new HashSet<>(Arrays.asList(first))));
+		Movie deleted = movieRepository.save(new Movie(0, "Patched Deleted", null, new HashSet<>(Arrays.asList(first, second))));
+		readModel.reload();
+
+		Director third = directorRepository.save(new Director(0, "Patched Third"));
+		readModel.directorSaved(third);
+		Rating added = ratingRepository.save(new Rating(0, "PATCHED2", 14));
+		readModel.ratingSaved(added);
+		Movie created = movieRepository.save(new Movie(0, "Patched Kept", added, new HashSet<>(Arrays.asList(second, third))));
+		readModel.saved(created);
+		kept.setTitle("Patched Retitled");
+		kept.setDirectors(new HashSet<>(Arrays.asList(second, third)));
+		kept = movieRepository.save(kept);
+		readModel.saved(kept);
+		movieRepository.deleteById(deleted.getId());
+		readModel.deleted(deleted.getId());
+		second.setName("Patched Renamed");
+		second = directorRepository.save(second);
+		readModel.directorSaved(second);
+		movieRepository.deleteDirectorJoins(third.getId());
+		directorRepository.deleteByIdInBulk(third.getId());
+		readModel.directorDeleted(third.getId());
+		movieRepository.clearRating(rating.getId());
+		ratingRepository.deleteByIdInBulk(rating.getId());
+		readModel.ratingDeleted(rating.getId());
+
+		List<Integer> movieIds = Arrays.asList(kept.getId(), deleted.getId(), created.getId());
+		List<Integer> directorIds = Arrays.asList(first.getId(), second.getId(), third.getId());
+		List<MovieSummary> patchedMovies = readModel.findMovies(Collections.emptyList(), null, Arrays.asList("patched"), kept.getId() - 1, 100, null);
+		List<MovieSummary> patchedByIds = readModel.findMoviesByIds(movieIds, null);
+		BitSet patchedByDirectors = readModel.findMovieIdsByDirectorIds(directorIds);
+		List<Director> patchedDirectors = readModel.findDirectorsByIds(directorIds);
+		readModel.reload();
+
+		assertEquals(readModel.findMovies(Collections.emptyList(), null, Arrays.asList("patched"), kept.getId() - 1, 100, null), patchedMovies);
+		assertEquals(readModel.findMoviesByIds(movieIds, null), patchedByIds);
+		assertEquals(readModel.findMovieIdsByDirectorIds(directorIds), patchedByDirectors);
+		assertEquals(readModel.findDirectorsByIds(directorIds), patchedDirectors);
+		assertEquals(Arrays.asList(
+				new MovieSummary(kept.getId(), "Patched Retitled", null, Arrays.asList("Patched Renamed")),
+				new MovieSummary(created.getId(), "Patched Kept", "PATCHED2", Arrays.asList("Patched Renamed"))), patchedByIds);
+	}
+
+	@Test
+	void testDirectorSlices() {
+		Director first = directorRepository.save(new Director(0, "Sliced First"));
+		Director second = directorRepository.save(new Director(0, "Sliced Second"));
+		readModel.reload();
+
+		Slice<Director> slice = readModel.findDirectors(first.getId() - 1, PageRequest.of(0, 1));
+		assertEquals(Arrays.asList(first), slice.getContent());
+		assertTrue(slice.hasNext());
+		assertEquals(second, readModel.findDirectorById(second.getId()).get());
+		assertEquals(second.getUpdatedAt().truncatedTo(ChronoUnit.MILLIS), readModel.findDirectorById(second.getId()).get().getUpdatedAt().truncatedTo(ChronoUnit.MILLIS));
+		assertFalse(readModel.findDirectorById(-1).isPresent());
+	}
+
+	@Test
+	void testSparseFieldsets() {
+		Director director = directorRepository.save(new Director(0, "Sparse Director"));
+		Movie movie = movieRepository.save(new Movie(0, "Sparse Movie", null, new HashSet<>(Arrays.asList(director))));
+		readModel.reload();
+
+		MovieSummary summary = readModel.findMoviesByIds(Arrays.asList(movie.getId()), new HashSet<>(Arrays.asList("id", MovieSummary.TITLE))).get(0);
+		assertEquals("Sparse Movie", summary.getTitle());
+		assertNull(summary.getDirectorNames());
+	}
+
+	@Test
+	void testRetitlesDuringReloadsKept() throws Exception {
+		//new titles are new dictionary codes, which a replay must add to the loaded dictionary
+		List<Movie> movies = new ArrayList<>();
+		List<Integer> ids = new ArrayList<>();
+		for(int i = 0; i < 100; i++) {
+			movies.add(movieRepository.save(new Movie(0, "Untitled " + i, null, Collections.emptySet())));
+			ids.add(movies.get(i).getId());
+		}
+		readModel.reload();
+		ConcurrentReloads.run(readModel::reload, movies.size(), i -> new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+			Movie movie = movies.get(i);
+			movie.setTitle("Retitled " + i);
+			readModel.saved(movieRepository.save(movie));
+		}));
+
+		List<MovieSummary> retitled = readModel.findMoviesByIds(ids, new HashSet<>(Arrays.asList("id", MovieSummary.TITLE)));
+		assertEquals(movies.size(), retitled.size());
+		for(int i = 0; i < movies.size(); i++) {
+			assertEquals("Retitled " + i, retitled.get(i).getTitle());
+		}
+		assertEquals(Collections.emptyList(), readModel.findMovies(Collections.emptyList(), null, Arrays.asList("untitled"), ids.get(0) - 1, 100, null));
+	}
+
+}
@@ -1,8 +1,11 @@
 package moviecatalog.repository;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertIterableEquals;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
 
+import java.util.Arrays;
+
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
@@ -36,4 +39,13 @@ public class DirectorRepositoryTest {
 		assertEquals(repository.findById(savedDirector.getId()).get(), savedDirector);
 	}
 	
+	@Test
+	void testFindAllByNameIn() {
+		Director director = repository.save(new Director(0, "In Name 1"));
+		Director namesake = repository.save(new Director(0, "In Name 1"));
+		Director other = repository.save(new Director(0, "In Name 2"));
+		
+		assertIterableEquals(repository.findAllByNameInOrderById(Arrays.asList("In Name 1", "In Name 2")), Arrays.asList(director, namesake, other));
+	}
+	
 }
@@ -4,12 +4,17 @@ import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.hasItem;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.util.HashSet;
 
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import moviecatalog.model.Director;
 import moviecatalog.model.Movie;
@@ -30,6 +35,9 @@ public class MovieRepositoryTest {
 	@Autowired
 	DirectorRepository directorRepository;
 	
+	@Autowired
+	PlatformTransactionManager transactionManager;
+	
 	@Test
 	void testSaveNewMovie() {
 	    Movie movie = movieRepository.save(new Movie(0, NEW_TITLE, null, null));
@@ -84,4 +92,37 @@ public class MovieRepositoryTest {
 		assertThat(movie.getDirectors(), hasItem(directorRepository.findById(director2.getId()).get()));
 	}
 	
+	@Test
+	void testFindSliceAfterCursor() {
+		Movie first = movieRepository.save(new Movie(0, NEW_TITLE, null, null));
+		Movie second = movieRepository.save(new Movie(0, NEW_TITLE, null, null));
+		movieRepository.save(new Movie(0, NEW_TITLE, null, null));
+		
+		Slice<Movie> slice = movieRepository.findAllByIdGreaterThanOrderById(first.getId(), PageRequest.of(0, 1));
+		
+		assertEquals(slice.getContent().get(0), second);
+		assertTrue(slice.hasNext());
+	}
+	
+	@SuppressWarnings("serial")
+	@Test
+	void testDeleteDirectorJoins() {
+		Director director = directorRepository.save(new Director(0, "Joined"));
+		Director other = directorRepository.save(new Director(0, "Not Joined"));
+		Movie movie = movieRepository.save(new Movie(0, "", null, new HashSet<Director>(){{add(director); add(other);}}));
+		
+		assertEquals(1, movieRepository.deleteDirectorJoins(director.getId()));
+		new TransactionTemplate(transactionManager).executeWithoutResult(status ->		//directors of a cached movie are loaded lazily
+			assertEquals(movieRepository.findById(movie.getId()).get().getDirectors(), new HashSet<Director>(){{add(other);}}));
+	}
+	
+	@Test
+	void testClearRating() {
+		Rating rating = ratingRepository.save(new Rating(0, "Cleared", 0));
+		Movie movie = movieRepository.save(new Movie(0, "", rating, null));
+		
+		assertEquals(1, movieRepository.clearRating(rating.getId()));
+		assertEquals(movieRepository.findById(movie.getId()).get().getRating(), null);
+	}
+	
 }
@@ -0,0 +1,140 @@
+package moviecatalog.search;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import moviecatalog.ConcurrentReloads;
+import moviecatalog.model.Director;
+import moviecatalog.model.Movie;
+import moviecatalog.repository.DirectorRepository;
+import moviecatalog.repository.MovieRepository;
+import moviecatalog.search.AutocompleteIndex.Type;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+public class AutocompleteIndexTest {
+
+	@Autowired
+	AutocompleteIndex index;
+
+	@Autowired
+	MovieRepository movieRepository;
+
+	@Autowired
+	DirectorRepository directorRepository;
+
+	@Autowired
+	PlatformTransactionManager transactionManager;
+
+	@Autowired
+	MockMvc mvc;
+
+	@Test
+	void testDirectorsByMoviesDirected() {
+		Director few = saveDirector("Zebulon Few");
+		Director many = saveDirector("Zebulon Many");
+		saveDirector("Zebulon None");
+		saveMovie("Zebulon One", few, many);
+		saveMovie("Zebulon Two", many);
+
+		assertEquals(Arrays.asList("Zebulon Many", "Zebulon Few", "Zebulon None"), index.complete(Type.DIRECTOR, "zebulon", 10));
+		assertEquals(Arrays.asList("Zebulon One", "Zebulon Two"), index.complete(Type.MOVIE, "zeb", 10));
+	}
+
+	@Test
+	void testWeightsFollowWrites() {
+		Director director = saveDirector("Xanthe Renamed");
+		saveDirector("Xanthe Other");
+		Movie movie = saveMovie("Xanthe Film", director);
+		Movie remake = saveMovie("Xanthe Film", director);
+
+		assertEquals(Arrays.asList("Xanthe Renamed", "Xanthe Other"), index.complete(Type.DIRECTOR, "xan", 10));
+
+		director.setName("Xanthe Director");
+		index.directorSaved(directorRepository.save(director));
+		index.deleted(remake.getId());
+		movie.setTitle("Xanthe Picture");
+		movie.setDirectors(Collections.emptySet());
+		index.saved(movie);
+
+		assertEquals(Arrays.asList("Xanthe Director", "Xanthe Other"), index.complete(Type.DIRECTOR, "xan", 10));
+		assertEquals(Collections.singletonList("Xanthe Picture"), index.complete(Type.MOVIE, "xan", 10));
+
+		index.directorDeleted(director.getId());
+
+		assertEquals(Collections.singletonList("Xanthe Other"), index.complete(Type.DIRECTOR, "xan", 10));
+	}
+
+	@Test
+	void testReload() {
+		Director director = saveDirector("Yolanda Reloaded");
+		saveMovie("Yolanda Film", director);
+		saveMovie("Yolanda Film", director);
+		index.reload();
+
+		assertEquals(Collections.singletonList("Yolanda Reloaded"), index.complete(Type.DIRECTOR, "yolanda", 10));
+		assertEquals(Collections.singletonList("Yolanda Film"), index.complete(Type.MOVIE, "yolanda", 10));
+	}
+
+	@Test
+	void testDeletesDuringReloadsKept() throws Exception {
+		//titles are shared by two movies each, so a title is only gone once a replay has removed both
+		List<Movie> movies = new ArrayList<>();
+		for(int i = 0; i < 100; i++) {
+			movies.add(saveMovie("Ysolde Twin " + (10 + i / 2)));
+		}
+		ConcurrentReloads.run(index::reload, 75, i -> new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+			int deleted = i < 50 ? 2 * i : 2 * (i - 50) + 1;
+			movieRepository.deleteById(movies.get(deleted).getId());
+			index.deleted(movies.get(deleted).getId());
+		}));
+
+		List<String> kept = new ArrayList<>();
+		for(int i = 35; i < 60; i++) {
+			kept.add("Ysolde Twin " + i);
+		}
+		assertEquals(kept, index.complete(Type.MOVIE, "ysolde twin", 1000));
+	}
+
+	@Test
+	void testEndpoint() throws Exception {
+		saveDirector("Quentin Endpoint");
+
+		mvc.perform(get("/autocomplete?prefix=quentin e&type=director"))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$[0]").value("Quentin Endpoint"));
+		mvc.perform(get("/autocomplete?prefix=quentin e&type=movie"))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.length()").value(0));
+	}
+
+	private Director saveDirector(String name) {
+		Director director = directorRepository.save(new Director(0, name));
+		index.directorSaved(director);
+		return director;
+	}
+
+	@SuppressWarnings("serial")
+	private Movie saveMovie(String title, Director... directors) {
+		Movie movie = movieRepository.save(new Movie(0, title, null, new HashSet<Director>() {{addAll(Arrays.asList(directors));}}));
+		index.saved(movie);
+		return movie;
+	}
+
+}
@@ -0,0 +1,90 @@
+package moviecatalog.search;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class CompletionTrieTest {
+
+	@Test
+	void testMostPopularFirst() {
+		CompletionTrie trie = new CompletionTrie();
+		trie.adjust("Star Wars", 3);
+		trie.adjust("Stardust", 1);
+		trie.adjust("Star Trek", 5);
+		trie.adjust("Star", 1);
+		trie.adjust("Starship Troopers", 1);
+
+		assertEquals(Arrays.asList("Star Trek", "Star Wars", "Star", "Stardust", "Starship Troopers"), trie.complete("st", 10));
+		assertEquals(Arrays.asList("Star Trek", "Star Wars"), trie.complete("STAR", 2));
+		assertEquals(Collections.singletonList("Stardust"), trie.complete("stard", 10));
+		assertEquals(Collections.singletonList("Starship Troopers"), trie.complete("starsh", 10));
+		assertEquals(Collections.emptyList(), trie.complete("starx", 10));
+		assertEquals(Collections.emptyList(), trie.complete("a", 10));
+	}
+
+	@Test
+	void testCaseAndAccentsIgnored() {
+		CompletionTrie trie = new CompletionTrie();
+		trie.adjust("Am\u00e9lie", 1);
+		trie.adjust("AMELIE", 2);
+
+		assertEquals(Arrays.asList("AMELIE", "Am\u00e9lie"), trie.complete("ame", 10));
+		assertEquals(Arrays.asList("AMELIE", "Am\u00e9lie"), trie.complete("\u00c1m\u00e9", 10));
+	}
+
+	@Test
+	void testRemovedTextsAndBranches() {
+		CompletionTrie trie = new CompletionTrie();
+		trie.adjust("Alien", 1);
+		trie.adjust("Aliens", 1);
+		trie.adjust("Alien", -1);
+		trie.adjust("Alias", -1);		//never added
+
+		assertEquals(Collections.singletonList("Aliens"), trie.complete("ali", 10));
+
+		trie.adjust("Aliens", -1);
+
+		assertEquals(Collections.emptyList(), trie.complete("", 10));
+	}
+
+	@Test
+	void testSameAsSortingEveryText() {
+		Random random = new Random(14);
+		CompletionTrie trie = new CompletionTrie();
+		Map<String, Integer> weights = new HashMap<>();
+		for(int i = 0; i < 3000; i++) {
+			StringBuilder text = new StringBuilder();
+			for(int c = 0; c < 1 + random.nextInt(6); c++) {
+				text.append((char) ('a' + random.nextInt(3)));
+			}
+			int delta = random.nextInt(5) - 1;
+			int weight = weights.getOrDefault(text.toString(), 0) + delta;
+			if(weight > 0) {
+				weights.put(text.toString(), weight);
+			} else {
+				weights.remove(text.toString());
+			}
+			trie.adjust(text.toString(), delta);
+		}
+		for(String prefix: Arrays.asList("", "a", "ab", "cab", "bbb", "aaaa")) {
+			List<String> expected = new ArrayList<>();
+			for(String text: weights.keySet()) {
+				if(text.startsWith(prefix)) {
+					expected.add(text);
+				}
+			}
+			expected.sort((a, b) -> weights.get(a).equals(weights.get(b)) ? a.compareTo(b) : Integer.compare(weights.get(b), weights.get(a)));
+			assertEquals(expected.subList(0, Math.min(15, expected.size())), trie.complete(prefix, 15), prefix);
+		}
+	}
+
+}
@@ -0,0 +1,119 @@
+package moviecatalog.search;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import moviecatalog.ConcurrentReloads;
+import moviecatalog.model.Director;
+import moviecatalog.repository.DirectorRepository;
+
+@SpringBootTest
+public class DirectorFuzzyIndexTest {
+
+	@Autowired
+	DirectorFuzzyIndex index;
+
+	@Autowired
+	DirectorRepository repository;
+
+	@Autowired
+	PlatformTransactionManager transactionManager;
+
+	@Test
+	void testDistance() {
+		assertEquals(0, DirectorFuzzyIndex.distance("kubrick", "kubrick"));
+		assertEquals(1, DirectorFuzzyIndex.distance("kubrick", "kubrik"));
+		assertEquals(2, DirectorFuzzyIndex.distance("kubrick", "kubirck"));
+		assertEquals(3, DirectorFuzzyIndex.distance("kitten", "sitting"));
+		assertEquals(5, DirectorFuzzyIndex.distance("", "fives"));
+	}
+
+	@Test
+	void testNearestFirst() {
+		Director exact = save("Wolfgang Vexmuller");
+		Director oneOff = save("Wolfgang Vexm\u00fcller");
+		Director twoOff = save("wolfgan Vexmueller");
+
+		assertEquals(Arrays.asList(exact.getId(), oneOff.getId(), twoOff.getId()), index.search("WOLFGANG VEXMULLER", 2, 10));
+		assertEquals(Arrays.asList(exact.getId(), oneOff.getId()), index.search("Wolfgang Vexmuller", 1, 10));
+		assertEquals(Collections.singletonList(exact.getId()), index.search("Wolfgang Vexmuller", 2, 1));
+		assertEquals(Collections.singletonList(oneOff.getId()), index.search("Wolfgang Vexm\u00fcller", -1, 10), "clamped to exact matches");
+	}
+
+	@Test
+	void testSameAsComparingEveryName() {
+		Random random = new Random(13);
+		List<Director> directors = new ArrayList<>();
+		for(int i = 0; i < 300; i++) {
+			StringBuilder name = new StringBuilder("Brute ");
+			for(int c = 0; c < 4 + random.nextInt(4); c++) {
+				name.append((char) ('a' + random.nextInt(4)));
+			}
+			directors.add(save(name.toString()));
+		}
+		for(int q = 0; q < 20; q++) {
+			String query = directors.get(random.nextInt(directors.size())).getName() + (q % 2 == 0 ? "" : "b");
+			for(int distance = 0; distance <= DirectorFuzzyIndex.MAX_DISTANCE; distance++) {
+				List<Integer> expected = new ArrayList<>();
+				for(int d = 0; d <= distance; d++) {
+					for(Director director: directors) {
+						if(DirectorFuzzyIndex.distance(query.toLowerCase(), director.getName().toLowerCase()) == d) {
+							expected.add(director.getId());
+						}
+					}
+				}
+				List<Integer> found = new ArrayList<>(index.search(query, distance, 1000));
+				found.retainAll(expected);		//ignore directors saved by other tests
+				assertEquals(expected, found, query + " within " + distance);
+			}
+		}
+	}
+
+	@Test
+	void testRenamedAndDeleted() {
+		Director director = save("Renamed Qoppa");
+		director.setName("Renamed Sampi");
+		index.saved(repository.save(director));
+
+		assertEquals(Collections.emptyList(), index.search("Renamed Qoppa", 0, 10));
+		assertEquals(Collections.singletonList(director.getId()), index.search("Renamed Sampy", 1, 10));
+
+		index.deleted(director.getId());
+
+		assertEquals(Collections.emptyList(), index.search("Renamed Sampi", 1, 10));
+	}
+
+	@Test
+	void testDeletesDuringReloadsKept() throws Exception {
+		List<Director> directors = new ArrayList<>();
+		for(int i = 0; i < 100; i++) {
+			directors.add(save("Deleted Koppa " + i));
+		}
+		ConcurrentReloads.run(index::reload, directors.size(), i -> new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+			repository.deleteById(directors.get(i).getId());
+			index.deleted(directors.get(i).getId());
+		}));
+
+		for(Director director: directors) {
+			assertEquals(Collections.emptyList(), index.search(director.getName(), 0, 10), "deleted " + director.getName());
+		}
+	}
+
+	private Director save(String name) {
+		Director director = repository.save(new Director(0, name));
+		index.saved(director);
+		return director;
+	}
+
+}
@@ -0,0 +1,149 @@
+package moviecatalog.search;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import moviecatalog.ConcurrentReloads;
+import moviecatalog.model.Movie;
+import moviecatalog.model.Rating;
+import moviecatalog.repository.MovieRepository;
+import moviecatalog.repository.RatingRepository;
+
+@SpringBootTest
+public class RatingBitmapIndexTest {
+
+	@Autowired
+	RatingBitmapIndex index;
+
+	@Autowired
+	MovieRepository movieRepository;
+
+	@Autowired
+	RatingRepository ratingRepository;
+
+	@Autowired
+	PlatformTransactionManager transactionManager;
+
+	@Test
+	void testSameAsScanningMovies() {
+		Rating low = ratingRepository.save(new Rating(0, "BM_LOW", 3));
+		Rating high = ratingRepository.save(new Rating(0, "BM_HIGH", 16));
+		for(int i = 0; i < 20; i++) {
+			movieRepository.save(new Movie(0, "bitmap " + i, i % 3 == 0 ? null : i % 3 == 1 ? low : high, Collections.emptySet()));
+		}
+		index.reload();
+
+		for(int age: new int[] {-1, 2, 3, 10, 16, 100}) {
+			List<Integer> above = new ArrayList<>();
+			List<Integer> suitable = new ArrayList<>();
+			for(Movie movie: movieRepository.findAll()) {
+				if(movie.getRating() != null) {
+					(movie.getRating().getAgeLimit() > age ? above : suitable).add(movie.getId());
+				}
+			}
+			Collections.sort(above);
+			Collections.sort(suitable);
+
+			assertEquals(above, index.findIdsRatedAbove(age, null, 0, Integer.MAX_VALUE), "above " + age);
+			assertEquals(suitable, index.findIdsSuitableForAge(age, null, 0, Integer.MAX_VALUE), "suitable for " + age);
+		}
+	}
+
+	@Test
+	void testWritesKeepBitmapsInSync() {
+		Rating first = ratingRepository.save(new Rating(0, "BM_FIRST", 121));
+		Rating second = ratingRepository.save(new Rating(0, "BM_SECOND", 122));
+		index.ratingSaved(first);
+		index.ratingSaved(second);
+		Movie movie = movieRepository.save(new Movie(0, "rerated", first, Collections.emptySet()));
+		index.saved(movie);
+
+		assertTrue(index.findIdsSuitableForAge(121, null, 0, Integer.MAX_VALUE).contains(movie.getId()));
+		assertFalse(index.findIdsRatedAbove(120, null, 0, Integer.MAX_VALUE).isEmpty());
+		assertFalse(index.findIdsRatedAbove(121, null, 0, Integer.MAX_VALUE).contains(movie.getId()));
+
+		movie.setRating(second);
+		index.saved(movieRepository.save(movie));
+
+		assertFalse(index.findIdsSuitableForAge(121, null, 0, Integer.MAX_VALUE).contains(movie.getId()));
+		assertTrue(index.findIdsRatedAbove(121, null, 0, Integer.MAX_VALUE).contains(movie.getId()));
+
+		second.setAgeLimit(120);
+		index.ratingSaved(ratingRepository.save(second));
+
+		assertTrue(index.findIdsSuitableForAge(120, null, 0, Integer.MAX_VALUE).contains(movie.getId()));
+		assertFalse(index.findIdsRatedAbove(120, null, 0, Integer.MAX_VALUE).contains(movie.getId()));
+
+		index.ratingDeleted(second.getId());
+
+		assertFalse(index.findIdsSuitableForAge(Integer.MAX_VALUE, null, 0, Integer.MAX_VALUE).contains(movie.getId()));
+		assertFalse(index.findIdsRatedAbove(Integer.MIN_VALUE, null, 0, Integer.MAX_VALUE).contains(movie.getId()));
+
+		movie.setRating(first);
+		index.saved(movie);
+		index.deleted(movie.getId());
+
+		assertFalse(index.findIdsSuitableForAge(Integer.MAX_VALUE, null, 0, Integer.MAX_VALUE).contains(movie.getId()));
+	}
+
+	@Test
+	void testWithinAndPaging() {
+		Rating rating = ratingRepository.save(new Rating(0, "BM_PAGED", 125));
+		index.ratingSaved(rating);
+		List<Integer> ids = new ArrayList<>();
+		for(int i = 0; i < 5; i++) {
+			Movie movie = movieRepository.save(new Movie(0, "paged " + i, rating, Collections.emptySet()));
+			index.saved(movie);
+			ids.add(movie.getId());
+		}
+		BitSet within = new BitSet();
+		within.set(ids.get(1));
+		within.set(ids.get(3));
+		within.set(ids.get(4));
+
+		assertEquals(ids.subList(1, 4), index.findIdsRatedAbove(124, null, ids.get(0), 3).subList(0, 3));
+		assertEquals(ids.subList(3, 5), index.findIdsRatedAbove(124, within, ids.get(1), 10));
+		assertEquals(Collections.singletonList(ids.get(1)), index.findIdsSuitableForAge(125, within, 0, 1));
+	}
+
+	@Test
+	void testRatingsCreatedDuringReloadsKept() throws Exception {
+		//each write creates a rating and rates a new movie and the previous one with it, so replaying movie writes needs the new age limit
+		List<Movie> movies = new ArrayList<>();
+		ConcurrentReloads.run(index::reload, 100, i -> new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+			Rating rating = ratingRepository.save(new Rating(0, "BMR" + i, 20 + i));
+			index.ratingSaved(rating);
+			if(i > 0) {
+				Movie previous = movies.get(i - 1);
+				previous.setRating(rating);
+				index.saved(movieRepository.save(previous));
+			}
+			Movie movie = movieRepository.save(new Movie(0, "rerated " + i, rating, Collections.emptySet()));
+			index.saved(movie);
+			movies.add(movie);
+		}));
+
+		for(int i = 0; i < movies.size(); i++) {
+			int ageLimit = 20 + Math.min(i + 1, movies.size() - 1);
+			BitSet within = new BitSet();
+			within.set(movies.get(i).getId());
+
+			assertEquals(1, index.findIdsSuitableForAge(ageLimit, within, 0, Integer.MAX_VALUE).size(), "suitable for " + ageLimit);
+			assertTrue(index.findIdsSuitableForAge(ageLimit - 1, within, 0, Integer.MAX_VALUE).isEmpty(), "suitable for " + (ageLimit - 1));
+			assertEquals(1, index.findIdsRatedAbove(ageLimit - 1, within, 0, Integer.MAX_VALUE).size(), "above " + (ageLimit - 1));
+		}
+	}
+
+}
@@ -0,0 +1,122 @@
+package moviecatalog.search;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import moviecatalog.ConcurrentReloads;
+import moviecatalog.model.Director;
+import moviecatalog.model.Movie;
+import moviecatalog.model.Rating;
+import moviecatalog.repository.DirectorRepository;
+import moviecatalog.repository.MovieRepository;
+import moviecatalog.repository.RatingRepository;
+
+@SpringBootTest
+public class RelatedMoviesIndexTest {
+
+	@Autowired
+	RelatedMoviesIndex index;
+
+	@Autowired
+	MovieRepository movieRepository;
+
+	@Autowired
+	DirectorRepository directorRepository;
+
+	@Autowired
+	RatingRepository ratingRepository;
+
+	@Autowired
+	PlatformTransactionManager transactionManager;
+
+	@Test
+	void testRanking() {
+		Director first = directorRepository.save(new Director(0, "Related First"));
+		Director second = directorRepository.save(new Director(0, "Related Second"));
+		Director third = directorRepository.save(new Director(0, "Related Third"));
+		Rating rating = ratingRepository.save(new Rating(0, "REL", 7));
+		Movie movie = movieRepository.save(new Movie(0, "Related Source", rating, new HashSet<>(Arrays.asList(first, second))));
+		Movie both = movieRepository.save(new Movie(0, "Related Both", null, new HashSet<>(Arrays.asList(first, second))));
+		Movie crowded = movieRepository.save(new Movie(0, "Related Crowded", null, new HashSet<>(Arrays.asList(first, second, third))));
+		Movie sameRating = movieRepository.save(new Movie(0, "Related Same Rating", rating, new HashSet<>(Arrays.asList(first))));
+		Movie other = movieRepository.save(new Movie(0, "Related Other", null, new HashSet<>(Arrays.asList(second))));
+		Movie unrelated = movieRepository.save(new Movie(0, "Related None", rating, new HashSet<>(Arrays.asList(third))));
+		index.reload();
+
+		assertEquals(Arrays.asList(both.getId(), sameRating.getId(), crowded.getId(), other.getId()), index.findRelatedIds(movie.getId(), 10),
+				"all directors shared, one of two shared with the same rating, two of three shared, one of two shared");
+		assertEquals(Arrays.asList(both.getId(), sameRating.getId()), index.findRelatedIds(movie.getId(), 2));
+		assertEquals(Collections.singletonList(crowded.getId()), index.findRelatedIds(unrelated.getId(), 10));
+		assertNull(index.findRelatedIds(-1, 10));
+	}
+
+	@Test
+	void testWritesKeepGraphInSync() {
+		Director first = directorRepository.save(new Director(0, "Updated First"));
+		Director second = directorRepository.save(new Director(0, "Updated Second"));
+		Movie movie = movieRepository.save(new Movie(0, "Updated Source", null, new HashSet<>(Arrays.asList(first))));
+		index.saved(movie);
+		Movie related = movieRepository.save(new Movie(0, "Updated Related", null, new HashSet<>(Arrays.asList(first))));
+		index.saved(related);
+
+		assertEquals(Collections.singletonList(related.getId()), index.findRelatedIds(movie.getId(), 10));
+
+		related.setDirectors(new HashSet<>(Arrays.asList(second)));
+		index.saved(movieRepository.save(related));
+		assertEquals(Collections.emptyList(), index.findRelatedIds(movie.getId(), 10));
+
+		movie.setDirectors(new HashSet<>(Arrays.asList(first, second)));
+		index.saved(movieRepository.save(movie));
+		assertEquals(Collections.singletonList(related.getId()), index.findRelatedIds(movie.getId(), 10));
+
+		index.directorDeleted(second.getId());
+		assertEquals(Collections.emptyList(), index.findRelatedIds(movie.getId(), 10));
+
+		index.deleted(movie.getId());
+		assertNull(index.findRelatedIds(movie.getId(), 10));
+	}
+
+	@Test
+	void testEdgesRemovedDuringReloadsKept() throws Exception {
+		//a third of the related movies are deleted and a third moved to another director, both removing edges of the source
+		Director shared = directorRepository.save(new Director(0, "Reloaded Shared"));
+		Director elsewhere = directorRepository.save(new Director(0, "Reloaded Elsewhere"));
+		Movie movie = movieRepository.save(new Movie(0, "Reloaded Source", null, new HashSet<>(Arrays.asList(shared))));
+		index.saved(movie);
+		List<Movie> related = new ArrayList<>();
+		for(int i = 0; i < 99; i++) {
+			related.add(movieRepository.save(new Movie(0, "Reloaded Related " + i, null, new HashSet<>(Arrays.asList(shared)))));
+			index.saved(related.get(i));
+		}
+		Set<Integer> kept = new HashSet<>();
+		ConcurrentReloads.run(index::reload, related.size(), i -> new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+			Movie written = related.get(i);
+			if(i % 3 == 0) {
+				movieRepository.deleteById(written.getId());
+				index.deleted(written.getId());
+			} else {
+				written.setDirectors(new HashSet<>(Arrays.asList(i % 3 == 1 ? elsewhere : shared)));
+				index.saved(movieRepository.save(written));
+				if(i % 3 == 2) {
+					kept.add(written.getId());
+				}
+			}
+		}));
+
+		assertEquals(kept, new HashSet<>(index.findRelatedIds(movie.getId(), 1000)));
+	}
+
+}
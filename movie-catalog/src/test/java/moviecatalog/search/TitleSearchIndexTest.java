@@ -0,0 +1,105 @@
+package moviecatalog.search;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import moviecatalog.ConcurrentReloads;
+import moviecatalog.model.Movie;
+import moviecatalog.repository.MovieRepository;
+
+@SpringBootTest
+public class TitleSearchIndexTest {
+
+	@Autowired
+	TitleSearchIndex index;
+
+	@Autowired
+	MovieRepository repository;
+
+	@Autowired
+	PlatformTransactionManager transactionManager;
+
+	@Test
+	void testTokenizer() {
+		assertEquals(Arrays.asList("amelie", "2001", "a", "strasse"), TitleTokenizer.tokenize("Am\u00e9lie (2001): A Stra\u00dfe!"));
+		assertEquals(Collections.emptyList(), TitleTokenizer.tokenize(" - "));
+	}
+
+	@Test
+	void testRanking() {
+		Movie longer = save("Plover Quetzal and Other Birds");
+		Movie shorter = save("Plover Quetzal");
+		save("Gannet Alpha");
+		save("Gannet Beta");
+		Movie rare = save("Ibis Gamma");
+
+		assertEquals(Arrays.asList(shorter.getId(), longer.getId()), index.search("quetzal plover", 10));
+		assertEquals(rare.getId(), index.search("gannet ibis", 10).get(0), "rarer term scores higher");
+		assertEquals(3, index.search("gannet ibis", 10).size());
+		assertEquals(1, index.search("gannet ibis", 1).size());
+	}
+
+	@Test
+	void testCaseAndAccentsIgnored() {
+		Movie movie = save("Le Fabuleux Destin d'Am\u00e9lie Poulain");
+
+		assertEquals(Collections.singletonList(movie.getId()), index.search("AMELIE poulain", 10));
+		assertEquals(Collections.singletonList(movie.getId()), index.search("fabuleux", 10));
+	}
+
+	@Test
+	void testRetitledAndDeleted() {
+		Movie movie = save("Retitled Kestrel");
+		movie.setTitle("Retitled Merlin");
+		index.saved(repository.save(movie));
+
+		assertEquals(Collections.emptyList(), index.search("kestrel", 10));
+		assertEquals(Collections.singletonList(movie.getId()), index.search("merlin", 10));
+
+		index.deleted(movie.getId());
+
+		assertEquals(Collections.emptyList(), index.search("merlin", 10));
+	}
+
+	@Test
+	void testReloadKeepsTitles() {
+		Movie movie = save("Reloaded Puffin");
+		index.reload();
+
+		assertEquals(Collections.singletonList(movie.getId()), index.search("puffin", 10));
+	}
+
+	@Test
+	void testRetitlesDuringReloadsKept() throws Exception {
+		List<Movie> movies = new ArrayList<>();
+		for(int i = 0; i < 100; i++) {
+			movies.add(save("Shearwater " + i));
+		}
+		ConcurrentReloads.run(index::reload, movies.size(), i -> new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+			Movie movie = movies.get(i);
+			movie.setTitle("Petrel " + i);
+			index.saved(repository.save(movie));
+		}));
+
+		assertEquals(Collections.emptyList(), index.search("shearwater", 1000), "no posting of an old title left");
+		assertEquals(movies.stream().map(Movie::getId).collect(HashSet::new, HashSet::add, HashSet::addAll), new HashSet<>(index.search("petrel", 1000)));
+	}
+
+	private Movie save(String title) {
+		Movie movie = repository.save(new Movie(0, title, null, Collections.emptySet()));
+		index.saved(movie);
+		return movie;
+	}
+
+}
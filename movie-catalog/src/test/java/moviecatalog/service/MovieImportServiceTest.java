@@ -0,0 +1,84 @@
+package moviecatalog.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import moviecatalog.repository.DirectorRepository;
+
+@SpringBootTest
+public class MovieImportServiceTest {
+	
+	private static final String CSV = "title,rating,age_limit,directors\n"
+			+ "\"Import, the \"\"First\"\"\",IMP,12,Import Director;Import Co-Director\n"
+			+ "Import Second,IMP,,Import Director\n"
+			+ "Import Unrated,,,\n"
+			+ "Import Unknown Rating,IMP-NEW,,Import Director\n"
+			+ "not enough fields\n";
+	
+	private static final String NDJSON = "{\"title\": \"Import JSON\", \"rating\": {\"symbol\": \"IMP-JSON\", \"ageLimit\": 15}, \"directors\": [{\"name\": \"Import JSON Director\"}]}\n"
+			+ "{not json\n";
+	
+	@Autowired
+	MovieImportService service;
+	
+	@Autowired
+	DirectorRepository directorRepository;
+	
+	@Test
+	void testImportCsv() throws IOException {
+		ImportReport report = service.importMovies(new StringReader(CSV), ImportFormat.CSV);
+		
+		assertEquals(5, report.getRows());
+		assertEquals(3, report.getImported());
+		assertEquals(2, report.getRejected());
+		assertEquals(1, report.getNewRatings());
+		assertEquals(1, directorRepository.findAllByName("Import Director").spliterator().getExactSizeIfKnown());
+	}
+	
+	@Test
+	void testImportCsvHeaderAfterBlankLines() throws IOException {
+		ImportReport report = service.importMovies(new StringReader("\n \ntitle,rating,age_limit,directors\nImport After Blank Lines,,,\n"), ImportFormat.CSV);
+		
+		assertEquals(1, report.getRows(), "header skipped");
+		assertEquals(1, report.getImported());
+		assertEquals(0, report.getRejected());
+	}
+	
+	@Test
+	void testImportValuesNotFittingColumnsRejected() throws IOException {
+		String csv = "title,rating,age_limit,directors\n"
+				+ characters(ImportFormat.TITLE_LENGTH + 1) + ",IMP,12,Import Director\n"
+				+ "Import Long Director,IMP,12," + characters(ImportFormat.DIRECTOR_NAME_LENGTH + 1) + "\n"
+				+ "Import Long Symbol," + characters(ImportFormat.RATING_SYMBOL_LENGTH + 1) + ",12,\n"
+				+ "Import Old Rating,IMP-OLD,200,\n"
+				+ "Import Fitting," + characters(ImportFormat.RATING_SYMBOL_LENGTH) + ",127," + characters(ImportFormat.DIRECTOR_NAME_LENGTH) + "\n";
+		ImportReport report = service.importMovies(new StringReader(csv), ImportFormat.CSV);
+		
+		assertEquals(5, report.getRows());
+		assertEquals(1, report.getImported(), "the transaction of the rejected rows still committed");
+		assertEquals(4, report.getRejected());
+	}
+	
+	@Test
+	void testImportNdjson() throws IOException {
+		ImportReport report = service.importMovies(new StringReader(NDJSON), ImportFormat.NDJSON);
+		
+		assertEquals(2, report.getRows());
+		assertEquals(1, report.getImported());
+		assertEquals(1, report.getNewDirectors());
+	}
+	
+	private static String characters(int length) {
+		char[] characters = new char[length];
+		Arrays.fill(characters, 'x');
+		return new String(characters);
+	}
+	
+}
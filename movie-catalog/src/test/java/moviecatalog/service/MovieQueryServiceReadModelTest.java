@@ -0,0 +1,26 @@
+package moviecatalog.service;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import moviecatalog.readmodel.CatalogReadModel;
+
+/**
+ * Runs every {@link MovieQueryServiceTest} against the in-memory {@link CatalogReadModel} instead of the database.
+ * */
+@SpringBootTest(properties = "moviecatalog.read-model.enabled=true")
+public class MovieQueryServiceReadModelTest extends MovieQueryServiceTest {
+
+	@Autowired
+	CatalogReadModel readModel;
+
+	@BeforeEach
+	void loadReadModel() {
+		readModel.reload();
+		assertTrue(readModel.isEnabled());
+	}
+
+}
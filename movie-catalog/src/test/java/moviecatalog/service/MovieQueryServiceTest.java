@@ -0,0 +1,135 @@
+package moviecatalog.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+
+import moviecatalog.cache.DirectorNameIndex;
+import moviecatalog.cache.RatingCache;
+import moviecatalog.model.Director;
+import moviecatalog.model.Movie;
+import moviecatalog.model.MovieSummary;
+import moviecatalog.model.Rating;
+import moviecatalog.repository.DirectorRepository;
+import moviecatalog.repository.MovieRepository;
+import moviecatalog.repository.RatingRepository;
+
+@SpringBootTest
+public class MovieQueryServiceTest {
+
+	private static int run = 0;
+
+	@Autowired
+	MovieQueryService service;
+
+	@Autowired
+	MovieRepository movieRepository;
+
+	@Autowired
+	DirectorRepository directorRepository;
+
+	@Autowired
+	RatingRepository ratingRepository;
+
+	@Autowired
+	RatingCache ratingCache;
+
+	@Autowired
+	DirectorNameIndex directorNameIndex;
+
+	private String prefix;
+	private Director first;
+	private Director second;
+	private Rating young;
+	private Rating old;
+	private Movie both;
+	private Movie firstOnly;
+	private Movie secondOnly;
+
+	@BeforeEach
+	void saveMovies() {
+		run++;
+		prefix = "Queried_" + run;
+		first = directorRepository.save(new Director(0, prefix + "_First"));
+		second = directorRepository.save(new Director(0, prefix + "_Second"));
+		young = ratingRepository.save(new Rating(0, "QY" + run, 40));
+		old = ratingRepository.save(new Rating(0, "QO" + run, 50));
+		both = movieRepository.save(new Movie(0, prefix + " Both 100%", young, new HashSet<>(Arrays.asList(first, second))));
+		firstOnly = movieRepository.save(new Movie(0, prefix + " First Only", old, new HashSet<>(Arrays.asList(first))));
+		secondOnly = movieRepository.save(new Movie(0, prefix + " Second Only", null, new HashSet<>(Arrays.asList(second))));
+		ratingCache.reload();
+		directorNameIndex.reload();
+	}
+
+	@Test
+	void testDirectorFilters() {
+		assertEquals(ids(both, firstOnly, secondOnly), query(new MovieQuery(null, prefix, null, null, null, null, null)));
+		assertEquals(ids(both, firstOnly), query(new MovieQuery(Arrays.asList(first.getId()), null, null, null, null, null, null)));
+		assertEquals(ids(both), query(new MovieQuery(Arrays.asList(first.getId()), prefix + "_Second", null, null, null, null, null)));
+		assertEquals(ids(), query(new MovieQuery(null, prefix + "_None", null, null, null, null, null)));
+	}
+
+	@Test
+	void testRatingFilters() {
+		assertEquals(ids(both), query(new MovieQuery(null, prefix, young.getId(), null, null, null, null)));
+		assertEquals(ids(firstOnly), query(new MovieQuery(null, prefix, null, old.getSymbol(), null, null, null)));
+		assertEquals(ids(both, firstOnly), query(new MovieQuery(null, prefix, null, null, 40, 50, null)));
+		assertEquals(ids(firstOnly), query(new MovieQuery(null, prefix, null, null, 41, null, null)));
+		assertEquals(ids(), query(new MovieQuery(null, prefix, young.getId(), old.getSymbol(), null, null, null)));
+	}
+
+	@Test
+	void testTitleWords() {
+		assertEquals(ids(firstOnly, secondOnly), query(new MovieQuery(null, null, null, null, null, null, prefix.toUpperCase() + "  only")));
+		assertEquals(ids(both), query(new MovieQuery(null, prefix, null, null, null, null, "100%")));
+		assertEquals(ids(), query(new MovieQuery(null, prefix, null, null, null, null, "10_%")));
+	}
+
+	@Test
+	void testSlices() {
+		MovieQuery query = new MovieQuery(null, prefix, null, null, null, null, null);
+		Slice<MovieSummary> slice = service.query(query, 0, PageRequest.of(0, 2), null);
+
+		assertTrue(slice.hasNext());
+		assertEquals(2, slice.getNumberOfElements());
+		assertFalse(service.query(query, slice.getContent().get(1).getId(), PageRequest.of(0, 2), null).hasNext());
+	}
+
+	@Test
+	void testSummariesByIds() {
+		List<MovieSummary> movies = service.findAllByIds(Arrays.asList(secondOnly.getId(), -1, both.getId()), null);
+
+		assertEquals(2, movies.size(), "IDs not found are skipped");
+		assertEquals(new MovieSummary(secondOnly.getId(), secondOnly.getTitle(), null, Arrays.asList(prefix + "_Second")), movies.get(0));
+		assertEquals(new MovieSummary(both.getId(), both.getTitle(), young.getSymbol(), Arrays.asList(prefix + "_First", prefix + "_Second")), movies.get(1));
+	}
+
+	private List<Integer> query(MovieQuery query) {
+		List<Integer> ids = new ArrayList<>();
+		service.query(query, 0, PageRequest.of(0, 100), null).forEach(movie -> ids.add(movie.getId()));
+		return ids;
+	}
+
+	private static List<Integer> ids(Movie... movies) {
+		List<Integer> ids = new ArrayList<>();
+		for(Movie movie: movies) {
+			ids.add(movie.getId());
+		}
+		Collections.sort(ids);
+		return ids;
+	}
+
+}
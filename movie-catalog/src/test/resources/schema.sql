@@ -1,23 +1,30 @@
 CREATE SCHEMA  IF NOT EXISTS movie_catalog;
 USE movie_catalog;
 
+CREATE SEQUENCE IF NOT EXISTS director_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS rating_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS movie_seq START WITH 1 INCREMENT BY 50;
+
 CREATE TABLE IF NOT EXISTS director (
-  id int NOT NULL AUTO_INCREMENT,
+  id int NOT NULL,
   name varchar(70) DEFAULT NULL,
+  updated_at timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP,
   PRIMARY KEY (id)
 );
 
 CREATE TABLE IF NOT EXISTS rating (
-  id int NOT NULL AUTO_INCREMENT,
+  id int NOT NULL,
   symbol varchar(10) NOT NULL,
   age_limit tinyint NOT NULL,
+  updated_at timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP,
   PRIMARY KEY (id)
 );
 
 CREATE TABLE IF NOT EXISTS movie (
-  id int NOT NULL AUTO_INCREMENT,
+  id int NOT NULL,
   title varchar(255) DEFAULT NULL,
   rating_id int DEFAULT NULL,
+  updated_at timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP,
   PRIMARY KEY (id),
   FOREIGN KEY (rating_id) REFERENCES rating(id)
 );
@@ -29,4 +36,14 @@ CREATE TABLE IF NOT EXISTS movie_director (
   PRIMARY KEY (id),
   FOREIGN KEY (director_id) REFERENCES director(id),
   FOREIGN KEY (movie_id) REFERENCES movie(id)
-);
\ No newline at end of file
+);
+
+-- move sequences past IDs stored before they existed (AUTO_INCREMENT rows), never backwards as Hibernate holds blocks of 50 IDs starting at the sequence value (pooled-lo)
+ALTER SEQUENCE director_seq RESTART WITH (SELECT GREATEST(COALESCE(MAX(id), 0) + 1, (SELECT current_value + increment FROM information_schema.sequences WHERE sequence_schema = SCHEMA() AND sequence_name = 'DIRECTOR_SEQ')) FROM director);
+ALTER SEQUENCE rating_seq RESTART WITH (SELECT GREATEST(COALESCE(MAX(id), 0) + 1, (SELECT current_value + increment FROM information_schema.sequences WHERE sequence_schema = SCHEMA() AND sequence_name = 'RATING_SEQ')) FROM rating);
+ALTER SEQUENCE movie_seq RESTART WITH (SELECT GREATEST(COALESCE(MAX(id), 0) + 1, (SELECT current_value + increment FROM information_schema.sequences WHERE sequence_schema = SCHEMA() AND sequence_name = 'MOVIE_SEQ')) FROM movie);
+
+-- add modification times to tables created before they existed
+ALTER TABLE director ADD COLUMN IF NOT EXISTS updated_at timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP;
+ALTER TABLE rating ADD COLUMN IF NOT EXISTS updated_at timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP;
+ALTER TABLE movie ADD COLUMN IF NOT EXISTS updated_at timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP;
\ No newline at end of file